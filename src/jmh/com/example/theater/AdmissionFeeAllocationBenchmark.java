@@ -0,0 +1,102 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation per call of {@link Logic#calculateAdmissionFee(VisitorGroup)} for a group mixing
+ * every kind of discount, on the benchmark thread and on a new virtual thread per group as with a
+ * virtual-thread-per-task executor. Run with {@code -prof gc} and compare {@code
+ * gc.alloc.rate.norm}; starting the virtual thread alone allocates what {@link #virtualThread()}
+ * does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class AdmissionFeeAllocationBenchmark {
+
+  @Param({"4", "40"})
+  int visitors;
+
+  Logic logic;
+  VisitorGroup visitorGroup;
+
+  @Setup
+  public void setUp() {
+    // 2023-01-04 is a Wednesday, so female and elderly discounts apply as well
+    logic =
+        new Logic(
+            new PriceConfiguration() {
+              @Override
+              public Price getBasePrice() {
+                return new Price(1800);
+              }
+
+              @Override
+              public LocalDate getToday() {
+                return LocalDate.of(2023, 1, 4);
+              }
+            },
+            _ -> false,
+            _ -> true,
+            _ -> true);
+    List<Visitor> members = new ArrayList<>(visitors);
+    for (int i = 0; i < visitors; i++) {
+      DiscountType type =
+          switch (i % 5) {
+            case 1 -> DiscountType.CHILD;
+            case 2 -> DiscountType.DISABILITIES;
+            case 3 -> DiscountType.FEMALES;
+            default -> null;
+          };
+      List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+      optionalDiscounts.add(new PersonalStamp(i % 11));
+      if (i % 4 == 0) {
+        optionalDiscounts.add(new ShoppingReceipt(6000));
+      }
+      if (i % 3 == 0) {
+        optionalDiscounts.add(
+            new DiscountTicket(UUID.randomUUID(), i, LocalDate.of(2023, 1, 1), new Price(100)));
+      }
+      if (i == 1) {
+        optionalDiscounts.add(new InternetPremiumMember(UUID.randomUUID()));
+      }
+      members.add(new Visitor(UUID.randomUUID(), type, optionalDiscounts, null));
+    }
+    visitorGroup = new VisitorGroup(members);
+  }
+
+  @Benchmark
+  public List<Audience> calculateAdmissionFee() {
+    return logic.calculateAdmissionFee(visitorGroup);
+  }
+
+  @Benchmark
+  public List<Audience> calculateAdmissionFeeOnVirtualThread() throws Exception {
+    return AsyncLookups.VIRTUAL_THREADS
+        .submit(() -> logic.calculateAdmissionFee(visitorGroup))
+        .get();
+  }
+
+  @Benchmark
+  public VisitorGroup virtualThread() throws Exception {
+    return AsyncLookups.VIRTUAL_THREADS.submit(() -> visitorGroup).get();
+  }
+}
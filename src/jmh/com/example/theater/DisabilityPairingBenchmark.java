@@ -0,0 +1,71 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Care-facility style bookings: children first, then residents with disabilities and their
+ * carers. Every disability visitor looks for a full-price companion behind all the children, so
+ * any per-visitor scan of the group shows up as time growing with the square of the group size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class DisabilityPairingBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int visitors;
+
+  Logic logic;
+  VisitorGroup visitorGroup;
+
+  @Setup
+  public void setUp() {
+    logic =
+        new Logic(
+            new PriceConfiguration() {
+              @Override
+              public Price getBasePrice() {
+                return new Price(1800);
+              }
+
+              @Override
+              public LocalDate getToday() {
+                return LocalDate.of(2023, 1, 5);
+              }
+            },
+            _ -> false,
+            _ -> false,
+            _ -> false);
+    List<Visitor> members = new ArrayList<>(visitors);
+    for (int i = 0; i < visitors / 2; i++) {
+      members.add(new Visitor(UUID.randomUUID(), DiscountType.CHILD));
+    }
+    for (int i = visitors / 2; i < visitors; i++) {
+      members.add(new Visitor(UUID.randomUUID(), i % 2 == 0 ? DiscountType.DISABILITIES : null));
+    }
+    visitorGroup = new VisitorGroup(members);
+  }
+
+  @Benchmark
+  public List<Audience> calculateAdmissionFee() {
+    return logic.calculateAdmissionFee(visitorGroup);
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.theater;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * In-memory stand-in for the three databases that waits a fixed time per call, as a round trip to
+ * a remote database would. A bulk lookup costs one round trip, a single lookup costs one each.
+ */
+final class LatencyStubDatabases
+    implements PublishedShareHolderTicketsDatabase,
+        InternetPremiumMembersDatabase,
+        EventDatabase {
+
+  final @NotNull Set<@NotNull UUID> publishedShareHolderTickets;
+  final @NotNull Set<@NotNull UUID> validMemberIds;
+  final @NotNull Set<@NotNull DiscountTicket> validDiscountTickets;
+  final long latencyNanos;
+
+  LatencyStubDatabases(
+      @NotNull Set<@NotNull UUID> publishedShareHolderTickets,
+      @NotNull Set<@NotNull UUID> validMemberIds,
+      @NotNull Set<@NotNull DiscountTicket> validDiscountTickets,
+      long latency,
+      @NotNull TimeUnit unit) {
+    this.publishedShareHolderTickets = Set.copyOf(publishedShareHolderTickets);
+    this.validMemberIds = Set.copyOf(validMemberIds);
+    this.validDiscountTickets = Set.copyOf(validDiscountTickets);
+    this.latencyNanos = unit.toNanos(latency);
+  }
+
+  private void roundTrip() {
+    if (0 < latencyNanos) {
+      LockSupport.parkNanos(latencyNanos);
+    }
+  }
+
+  private static <T> @NotNull Set<T> filter(
+      @NotNull Collection<@NotNull T> candidates, @NotNull Set<@NotNull T> known) {
+    Set<T> found = new HashSet<>();
+    for (T candidate : candidates) {
+      if (known.contains(candidate)) {
+        found.add(candidate);
+      }
+    }
+    return Set.copyOf(found);
+  }
+
+  @Override
+  public boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+    roundTrip();
+    return publishedShareHolderTickets.contains(ticketId);
+  }
+
+  @Override
+  public @NotNull Set<@NotNull UUID> publishedShareHolderTickets(
+      @NotNull Collection<@NotNull UUID> ticketIds) {
+    roundTrip();
+    return filter(ticketIds, publishedShareHolderTickets);
+  }
+
+  @Override
+  public boolean isValidMemberId(@NotNull UUID memberId) {
+    roundTrip();
+    return validMemberIds.contains(memberId);
+  }
+
+  @Override
+  public @NotNull Set<@NotNull UUID> validMemberIds(@NotNull Collection<@NotNull UUID> memberIds) {
+    roundTrip();
+    return filter(memberIds, validMemberIds);
+  }
+
+  @Override
+  public boolean isValidDiscountTicket(@NotNull DiscountTicket discountTicket) {
+    roundTrip();
+    return validDiscountTickets.contains(discountTicket);
+  }
+
+  @Override
+  public @NotNull Set<@NotNull DiscountTicket> validDiscountTickets(
+      @NotNull Collection<@NotNull DiscountTicket> discountTickets) {
+    roundTrip();
+    return filter(discountTickets, validDiscountTickets);
+  }
+}
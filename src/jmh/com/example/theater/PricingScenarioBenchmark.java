@@ -0,0 +1,162 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Logic#calculateAdmissionFee(VisitorGroup)} and {@link
+ * Logic#calculateAdmissionFeeAsync(VisitorGroup)} over typical bookings, against databases that
+ * take {@code latencyMicros} per round trip. Run with {@code -prof gc} for the allocation rates;
+ * {@code -p scenario=STACKED_DISCOUNTS -p latencyMicros=0} narrows the matrix.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class PricingScenarioBenchmark {
+
+  static final @NotNull LocalDate WEDNESDAY = LocalDate.of(2023, 1, 4);
+  static final @NotNull LocalDate THURSDAY = LocalDate.of(2023, 1, 5);
+
+  /** Bookings seen at the box office. {@link #SINGLE} ignores the group size. */
+  public enum Scenario {
+    SINGLE,
+    FAMILY,
+    DISABILITY_PAIRS,
+    SHARE_HOLDERS,
+    WEDNESDAY_FEMALES_AND_ELDERLIES,
+    STACKED_DISCOUNTS;
+
+    @NotNull
+    LocalDate today() {
+      return this == WEDNESDAY_FEMALES_AND_ELDERLIES ? WEDNESDAY : THURSDAY;
+    }
+  }
+
+  @Param({
+    "SINGLE",
+    "FAMILY",
+    "DISABILITY_PAIRS",
+    "SHARE_HOLDERS",
+    "WEDNESDAY_FEMALES_AND_ELDERLIES",
+    "STACKED_DISCOUNTS"
+  })
+  Scenario scenario;
+
+  @Param({"4", "40", "2000"})
+  int visitors;
+
+  @Param({"0", "200"})
+  long latencyMicros;
+
+  Logic logic;
+  VisitorGroup visitorGroup;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    Set<UUID> publishedShareHolderTickets = new HashSet<>();
+    Set<UUID> validMemberIds = new HashSet<>();
+    Set<DiscountTicket> validDiscountTickets = new HashSet<>();
+    int size = scenario == Scenario.SINGLE ? 1 : visitors;
+    List<Visitor> members = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      UUID id = new UUID(random.nextLong(), random.nextLong());
+      List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+      optionalDiscounts.add(new PersonalStamp(random.nextInt(11)));
+      DiscountType type =
+          switch (scenario) {
+            case SINGLE -> null;
+            case FAMILY -> i % 4 < 2 ? DiscountType.CHILD : null;
+            case DISABILITY_PAIRS -> i % 2 == 0 ? DiscountType.DISABILITIES : null;
+            case SHARE_HOLDERS -> {
+              if (i != 0) {
+                yield null;
+              }
+              UUID ticketId = new UUID(random.nextLong(), random.nextLong());
+              publishedShareHolderTickets.add(ticketId);
+              yield new ShareHolderTicket(ticketId, id);
+            }
+            case WEDNESDAY_FEMALES_AND_ELDERLIES ->
+                switch (i % 3) {
+                  case 0 -> DiscountType.FEMALES;
+                  case 1 -> DiscountType.SENIOR_CITIZENS;
+                  default -> null;
+                };
+            case STACKED_DISCOUNTS -> {
+              optionalDiscounts.add(new ShoppingReceipt(random.nextInt(3000, 8000)));
+              UUID memberId = new UUID(random.nextLong(), random.nextLong());
+              if (random.nextBoolean()) {
+                validMemberIds.add(memberId);
+              }
+              optionalDiscounts.add(new InternetPremiumMember(memberId));
+              DiscountTicket ticket =
+                  new DiscountTicket(
+                      new UUID(0, random.nextInt(4)),
+                      i,
+                      THURSDAY.minusDays(7),
+                      new Price(100 * random.nextInt(1, 10)));
+              validDiscountTickets.add(ticket);
+              optionalDiscounts.add(ticket);
+              yield i % 5 == 0 ? DiscountType.CHILD : null;
+            }
+          };
+      members.add(new Visitor(id, type, optionalDiscounts, null));
+    }
+    visitorGroup = new VisitorGroup(members);
+    LatencyStubDatabases databases =
+        new LatencyStubDatabases(
+            publishedShareHolderTickets,
+            validMemberIds,
+            validDiscountTickets,
+            latencyMicros,
+            TimeUnit.MICROSECONDS);
+    LocalDate today = scenario.today();
+    logic =
+        new Logic(
+            new PriceConfiguration() {
+              @Override
+              public Price getBasePrice() {
+                return new Price(1800);
+              }
+
+              @Override
+              public LocalDate getToday() {
+                return today;
+              }
+            },
+            databases,
+            databases,
+            databases);
+  }
+
+  @Benchmark
+  public List<Audience> calculateAdmissionFee() {
+    return logic.calculateAdmissionFee(visitorGroup);
+  }
+
+  @Benchmark
+  public List<Audience> calculateAdmissionFeeAsync() {
+    return logic.calculateAdmissionFeeAsync(visitorGroup).join();
+  }
+}
@@ -0,0 +1,113 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Logic#calculateAdmissionFee(VisitorGroup)} with and without a {@link QuoteCache} over
+ * families of two to four visitors, each with visitor ids of their own. {@code stampCounts} is the
+ * number of stamp counts seen, of which only the tenth makes a shape of its own; the hit rate is
+ * printed after each iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class QuoteCacheBenchmark {
+
+  static final int GROUPS = 1 << 14;
+
+  @Param({"false", "true"})
+  boolean cached;
+
+  @Param({"1", "11"})
+  int stampCounts;
+
+  Logic logic;
+  QuoteCache quoteCache;
+  VisitorGroup[] groups;
+  int next;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    groups = new VisitorGroup[GROUPS];
+    for (int g = 0; g < GROUPS; g++) {
+      int size = random.nextInt(2, 5);
+      List<Visitor> visitors = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+        optionalDiscounts.add(new PersonalStamp(random.nextInt(stampCounts)));
+        if (i == 0 && random.nextInt(4) == 0) {
+          optionalDiscounts.add(new ShoppingReceipt(random.nextInt(3000, 8000)));
+        }
+        visitors.add(
+            new Visitor(
+                new UUID(random.nextLong(), random.nextLong()),
+                i < 2 ? null : DiscountType.CHILD,
+                optionalDiscounts,
+                null));
+      }
+      groups[g] = new VisitorGroup(visitors);
+    }
+    quoteCache = cached ? new QuoteCache(4096) : null;
+    LocalDate today = PricingScenarioBenchmark.THURSDAY;
+    Logic.Builder builder =
+        Logic.builder(
+            new PriceConfiguration() {
+              @Override
+              public Price getBasePrice() {
+                return new Price(1800);
+              }
+
+              @Override
+              public LocalDate getToday() {
+                return today;
+              }
+            },
+            _ -> false,
+            _ -> false,
+            _ -> false);
+    if (quoteCache != null) {
+      builder.quoteCache(quoteCache);
+    }
+    logic = builder.build();
+  }
+
+  @TearDown(Level.Iteration)
+  public void printHitRate() {
+    if (quoteCache != null) {
+      QuoteCache.Stats stats = quoteCache.stats();
+      System.out.printf(
+          " hit rate %.3f, %d cached%n",
+          (double) stats.hits() / (stats.hits() + stats.misses()), stats.size());
+    }
+  }
+
+  @Benchmark
+  public @NotNull List<Audience> calculateAdmissionFee() {
+    VisitorGroup visitorGroup = groups[next];
+    next = (next + 1) & (GROUPS - 1);
+    return logic.calculateAdmissionFee(visitorGroup);
+  }
+}
@@ -0,0 +1,56 @@
+package com.example.theater;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Prints the retained heap of a {@code Set<UUID>} and the off-heap bytes of {@link
+ * OffHeapPublishedShareHolderTicketsDatabase} for the same tickets.
+ *
+ * <p>Usage: {@code java --enable-preview ShareHolderTicketFootprint [tickets]}
+ */
+public class ShareHolderTicketFootprint {
+
+  public static void main(String[] args) {
+    int count = args.length == 0 ? 5_000_000 : Integer.parseInt(args[0]);
+    List<UUID> published = ShareHolderTicketLookupBenchmark.randomTickets(count);
+    long[] pairs = new long[count * 2];
+    for (int i = 0; i < count; i++) {
+      pairs[2 * i] = published.get(i).getMostSignificantBits();
+      pairs[2 * i + 1] = published.get(i).getLeastSignificantBits();
+    }
+    published = null;
+
+    long before = usedHeap();
+    Set<UUID> heap = Set.copyOf(rebuild(pairs));
+    long heapBytes = usedHeap() - before;
+
+    long beforeOffHeap = usedHeap();
+    try (OffHeapPublishedShareHolderTicketsDatabase offHeap =
+        new OffHeapPublishedShareHolderTicketsDatabase(rebuild(pairs))) {
+      long offHeapHeapBytes = usedHeap() - beforeOffHeap;
+      System.out.printf(
+          "tickets=%d set: heap=%,d bytes | off-heap table: native=%,d bytes heap=%,d bytes%n",
+          heap.size(), heapBytes, offHeap.byteSize(), offHeapHeapBytes);
+    }
+  }
+
+  private static List<UUID> rebuild(long[] pairs) {
+    UUID[] tickets = new UUID[pairs.length / 2];
+    for (int i = 0; i < tickets.length; i++) {
+      tickets[i] = new UUID(pairs[2 * i], pairs[2 * i + 1]);
+    }
+    return List.of(tickets);
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
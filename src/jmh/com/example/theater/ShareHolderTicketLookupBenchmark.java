@@ -0,0 +1,100 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup latency of the heap {@code Set<UUID>} used by {@link
+ * PublishedShareHolderTicketsDatabaseImpl} against {@link
+ * OffHeapPublishedShareHolderTicketsDatabase}. Run with {@code -prof gc} to see that the off-heap
+ * lookup does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ShareHolderTicketLookupBenchmark {
+
+  static final int PROBES = 1 << 16;
+
+  @Param({"10000", "1000000", "5000000"})
+  int tickets;
+
+  PublishedShareHolderTicketsDatabase heap;
+  OffHeapPublishedShareHolderTicketsDatabase offHeap;
+  UUID[] hits;
+  UUID[] misses;
+  int cursor;
+
+  static @NotNull List<UUID> randomTickets(int count) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    List<UUID> tickets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tickets.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return tickets;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<UUID> published = randomTickets(tickets);
+    Set<UUID> publishedSet = Set.copyOf(published);
+    heap = publishedSet::contains;
+    offHeap = new OffHeapPublishedShareHolderTicketsDatabase(published);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    hits = new UUID[PROBES];
+    for (int i = 0; i < PROBES; i++) {
+      hits[i] = published.get(random.nextInt(published.size()));
+    }
+    misses = randomTickets(PROBES).toArray(UUID[]::new);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    offHeap.close();
+  }
+
+  private int next() {
+    return cursor = (cursor + 1) & (PROBES - 1);
+  }
+
+  @Benchmark
+  public boolean heapHit() {
+    return heap.isPublishedShareHolderTicket(hits[next()]);
+  }
+
+  @Benchmark
+  public boolean heapMiss() {
+    return heap.isPublishedShareHolderTicket(misses[next()]);
+  }
+
+  @Benchmark
+  public boolean offHeapHit() {
+    return offHeap.isPublishedShareHolderTicket(hits[next()]);
+  }
+
+  @Benchmark
+  public boolean offHeapMiss() {
+    return offHeap.isPublishedShareHolderTicket(misses[next()]);
+  }
+}
@@ -0,0 +1,386 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encode and decode throughput of {@link TheaterCodec} against a JSON baseline, for groups with
+ * every kind of discount and the audiences {@link Logic} prices them to. The sizes of both
+ * encodings are printed at setup.
+ *
+ * <p>The tree has no JSON library, so the baseline is written by hand in the way such a library
+ * would map the records: UUIDs and titles as strings, sources as objects with a type name, and
+ * decoding through a generic tree of maps and lists.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class TheaterCodecBenchmark {
+
+  @Param({"4", "40", "400"})
+  int visitors;
+
+  VisitorGroup visitorGroup;
+  List<Audience> audiences;
+
+  ByteBuffer buffer;
+  ByteBuffer binaryVisitorGroup;
+  ByteBuffer binaryAudiences;
+  byte[] jsonVisitorGroup;
+  byte[] jsonAudiences;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(visitors);
+    DiscountType[] discountTypes = {
+      null, DiscountTypes.CHILD, DiscountTypes.DISABILITIES, DiscountTypes.ELDERLIES,
+      DiscountTypes.FEMALES
+    };
+    LocalDate today = LocalDate.of(2023, 1, 4);
+    List<Visitor> members = new ArrayList<>(visitors);
+    for (int i = 0; i < visitors; i++) {
+      List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+      optionalDiscounts.add(new PersonalStamp(random.nextInt(11)));
+      switch (i % 4) {
+        case 0 -> optionalDiscounts.add(new ShoppingReceipt(random.nextInt(10_000)));
+        case 1 -> optionalDiscounts.add(new InternetPremiumMember(UUID.randomUUID()));
+        case 2 ->
+            optionalDiscounts.add(
+                new DiscountTicket(
+                    UUID.randomUUID(), random.nextInt(100_000), today, new Price(300)));
+        default -> {}
+      }
+      members.add(
+          new Visitor(
+              UUID.randomUUID(),
+              discountTypes[random.nextInt(discountTypes.length)],
+              List.copyOf(optionalDiscounts),
+              null));
+    }
+    visitorGroup = new VisitorGroup(List.copyOf(members));
+    audiences =
+        new Logic(
+                new PriceConfiguration() {
+                  @Override
+                  public Price getBasePrice() {
+                    return new Price(1800);
+                  }
+
+                  @Override
+                  public LocalDate getToday() {
+                    return today;
+                  }
+                },
+                _ -> false,
+                _ -> true,
+                _ -> true)
+            .calculateAdmissionFee(visitorGroup);
+
+    buffer = ByteBuffer.allocate(1 << 20);
+    TheaterCodec.writeVisitorGroup(buffer, visitorGroup);
+    binaryVisitorGroup = copyOf(buffer.flip());
+    TheaterCodec.writeAudiences(buffer.clear(), audiences);
+    binaryAudiences = copyOf(buffer.flip());
+    jsonVisitorGroup = Json.visitorGroup(visitorGroup);
+    jsonAudiences = Json.audiences(audiences);
+    System.out.println(
+        STR."\nvisitor group: \{binaryVisitorGroup.remaining()} bytes binary, \{
+            jsonVisitorGroup.length} bytes json; audiences: \{
+            binaryAudiences.remaining()} bytes binary, \{jsonAudiences.length} bytes json");
+  }
+
+  private static @NotNull ByteBuffer copyOf(@NotNull ByteBuffer buffer) {
+    return ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeVisitorGroupBinary() {
+    TheaterCodec.writeVisitorGroup(buffer.clear(), visitorGroup);
+    return buffer;
+  }
+
+  @Benchmark
+  public byte[] encodeVisitorGroupJson() {
+    return Json.visitorGroup(visitorGroup);
+  }
+
+  @Benchmark
+  public VisitorGroup decodeVisitorGroupBinary() {
+    return TheaterCodec.readVisitorGroup(binaryVisitorGroup.duplicate());
+  }
+
+  @Benchmark
+  public VisitorGroup decodeVisitorGroupJson() {
+    return Json.readVisitorGroup(jsonVisitorGroup);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeAudiencesBinary() {
+    TheaterCodec.writeAudiences(buffer.clear(), audiences);
+    return buffer;
+  }
+
+  @Benchmark
+  public byte[] encodeAudiencesJson() {
+    return Json.audiences(audiences);
+  }
+
+  @Benchmark
+  public List<Audience> decodeAudiencesBinary() {
+    return TheaterCodec.readAudiences(binaryAudiences.duplicate());
+  }
+
+  @Benchmark
+  public List<Audience> decodeAudiencesJson() {
+    return Json.readAudiences(jsonAudiences);
+  }
+
+  /** JSON mapping of the records, as a reflection-free JSON library would write and read it. */
+  static final class Json {
+
+    static byte @NotNull [] visitorGroup(@NotNull VisitorGroup visitorGroup) {
+      StringBuilder json = new StringBuilder("{\"visitors\":[");
+      boolean first = true;
+      for (Visitor visitor : visitorGroup) {
+        json.append(first ? "" : ",").append("{\"id\":\"").append(visitor.id()).append('"');
+        json.append(",\"discount\":");
+        if (visitor.discount() == null) {
+          json.append("null");
+        } else {
+          source(json, visitor.discount());
+        }
+        json.append(",\"optionalDiscounts\":[");
+        for (int i = 0; i < visitor.optionalDiscounts().size(); i++) {
+          source(json.append(i == 0 ? "" : ","), visitor.optionalDiscounts().get(i));
+        }
+        json.append("]}");
+        first = false;
+      }
+      return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte @NotNull [] audiences(@NotNull List<Audience> audiences) {
+      StringBuilder json = new StringBuilder("[");
+      for (int i = 0; i < audiences.size(); i++) {
+        Audience audience = audiences.get(i);
+        json.append(i == 0 ? "" : ",").append("{\"id\":\"").append(audience.id()).append('"');
+        json.append(",\"newPersonalStamp\":").append(audience.newPersonalStamp().count());
+        json.append(",\"price\":").append(audience.price().value());
+        json.append(",\"appliedDiscountKinds\":").append(audience.appliedDiscountKinds());
+        json.append(",\"discountDetails\":[");
+        for (int d = 0; d < audience.discountDetails().size(); d++) {
+          Discount discount = audience.discountDetails().get(d);
+          json.append(d == 0 ? "" : ",").append("{\"price\":").append(discount.price().value());
+          json.append(",\"text\":\"").append(discount.description().getText()).append('"');
+          source(json.append(",\"source\":"), discount.description().getSource());
+          json.append('}');
+        }
+        json.append("]}");
+      }
+      return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void source(@NotNull StringBuilder json, @NotNull Object source) {
+      switch (source) {
+        case DiscountTypes type -> json.append("{\"type\":\"").append(type.name()).append("\"}");
+        case ShareHolderTicket s ->
+            json.append("{\"type\":\"ShareHolderTicket\",\"id\":\"")
+                .append(s.id())
+                .append("\",\"owner\":\"")
+                .append(s.owner())
+                .append("\"}");
+        case PersonalStamp p ->
+            json.append("{\"type\":\"PersonalStamp\",\"count\":").append(p.count()).append('}');
+        case ShoppingReceipt r ->
+            json.append("{\"type\":\"ShoppingReceipt\",\"totalPayment\":")
+                .append(r.totalPayment())
+                .append('}');
+        case InternetPremiumMember m ->
+            json.append("{\"type\":\"InternetPremiumMember\",\"userId\":\"")
+                .append(m.userId())
+                .append("\"}");
+        case DiscountTicket t ->
+            json.append("{\"type\":\"DiscountTicket\",\"eventId\":\"")
+                .append(t.eventId())
+                .append("\",\"ticketSeqId\":")
+                .append(t.ticketSeqId())
+                .append(",\"distributionDate\":\"")
+                .append(t.distributionDate())
+                .append("\",\"price\":")
+                .append(t.price().value())
+                .append('}');
+        default -> throw new IllegalArgumentException(source.toString());
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    static @NotNull VisitorGroup readVisitorGroup(byte @NotNull [] json) {
+      Map<String, Object> tree = (Map<String, Object>) new Parser(json).value();
+      List<Object> visitors = (List<Object>) tree.get("visitors");
+      List<Visitor> members = new ArrayList<>(visitors.size());
+      for (Object v : visitors) {
+        Map<String, Object> visitor = (Map<String, Object>) v;
+        List<Object> optionals = (List<Object>) visitor.get("optionalDiscounts");
+        List<OptionalDiscount> optionalDiscounts = new ArrayList<>(optionals.size());
+        for (Object optional : optionals) {
+          optionalDiscounts.add((OptionalDiscount) source((Map<String, Object>) optional));
+        }
+        Object discount = visitor.get("discount");
+        members.add(
+            new Visitor(
+                UUID.fromString((String) visitor.get("id")),
+                discount == null ? null : (DiscountType) source((Map<String, Object>) discount),
+                List.copyOf(optionalDiscounts),
+                null));
+      }
+      return new VisitorGroup(List.copyOf(members));
+    }
+
+    @SuppressWarnings("unchecked")
+    static @NotNull List<Audience> readAudiences(byte @NotNull [] json) {
+      List<Object> tree = (List<Object>) new Parser(json).value();
+      List<Audience> audiences = new ArrayList<>(tree.size());
+      for (Object a : tree) {
+        Map<String, Object> audience = (Map<String, Object>) a;
+        List<Object> details = (List<Object>) audience.get("discountDetails");
+        List<Discount> discounts = new ArrayList<>(details.size());
+        for (Object d : details) {
+          Map<String, Object> discount = (Map<String, Object>) d;
+          discounts.add(
+              new Discount(
+                  new Price(((Long) discount.get("price")).intValue()),
+                  DiscountDescription.of(
+                      (String) discount.get("text"),
+                      source((Map<String, Object>) discount.get("source")))));
+        }
+        audiences.add(
+            new Audience(
+                UUID.fromString((String) audience.get("id")),
+                new PersonalStamp(((Long) audience.get("newPersonalStamp")).intValue()),
+                new Price(((Long) audience.get("price")).intValue()),
+                List.copyOf(discounts)));
+      }
+      return List.copyOf(audiences);
+    }
+
+    private static @NotNull Object source(@NotNull Map<String, Object> source) {
+      return switch ((String) source.get("type")) {
+        case "ShareHolderTicket" ->
+            new ShareHolderTicket(uuid(source, "id"), uuid(source, "owner"));
+        case "PersonalStamp" -> new PersonalStamp(integer(source, "count"));
+        case "ShoppingReceipt" -> new ShoppingReceipt(integer(source, "totalPayment"));
+        case "InternetPremiumMember" -> new InternetPremiumMember(uuid(source, "userId"));
+        case "DiscountTicket" ->
+            new DiscountTicket(
+                uuid(source, "eventId"),
+                integer(source, "ticketSeqId"),
+                LocalDate.parse((String) source.get("distributionDate")),
+                new Price(integer(source, "price")));
+        case String type -> DiscountTypes.valueOf(type);
+      };
+    }
+
+    private static @NotNull UUID uuid(@NotNull Map<String, Object> object, @NotNull String key) {
+      return UUID.fromString((String) object.get(key));
+    }
+
+    private static int integer(@NotNull Map<String, Object> object, @NotNull String key) {
+      return ((Long) object.get(key)).intValue();
+    }
+
+    /** Parses the subset of JSON written above: objects, arrays, strings, integers and null. */
+    private static final class Parser {
+      final @NotNull String json;
+      int position;
+
+      Parser(byte @NotNull [] json) {
+        this.json = new String(json, StandardCharsets.UTF_8);
+      }
+
+      Object value() {
+        char c = json.charAt(position);
+        return switch (c) {
+          case '{' -> object();
+          case '[' -> array();
+          case '"' -> string();
+          case 'n' -> {
+            position += 4;
+            yield null;
+          }
+          default -> number();
+        };
+      }
+
+      private @NotNull Map<String, Object> object() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        while (json.charAt(position) != '}') {
+          String key = string();
+          position++; // ':'
+          object.put(key, value());
+          if (json.charAt(position) == ',') {
+            position++;
+          }
+        }
+        position++;
+        return object;
+      }
+
+      private @NotNull List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        while (json.charAt(position) != ']') {
+          array.add(value());
+          if (json.charAt(position) == ',') {
+            position++;
+          }
+        }
+        position++;
+        return array;
+      }
+
+      private @NotNull String string() {
+        int end = json.indexOf('"', position + 1);
+        String string = json.substring(position + 1, end);
+        position = end + 1;
+        return string;
+      }
+
+      private @NotNull Long number() {
+        int start = position;
+        if (json.charAt(position) == '-') {
+          position++;
+        }
+        while (position < json.length() && Character.isDigit(json.charAt(position))) {
+          position++;
+        }
+        return Long.parseLong(json, start, position, 10);
+      }
+    }
+  }
+}
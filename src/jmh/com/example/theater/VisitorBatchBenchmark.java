@@ -0,0 +1,120 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Visitors priced per microsecond by {@link Logic#calculateAdmissionFee(VisitorGroup)} group by
+ * group, and by {@link VisitorBatchPricing} over a {@link VisitorBatch} of the same bookings, with
+ * and without building the batch from the groups. Bookings are corporate and school groups of 10
+ * to 40 visitors with stamps, receipts and memberships.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VisitorBatchBenchmark {
+
+  static final int VISITORS = 100_000;
+
+  Logic logic;
+  VisitorBatchPricing pricing;
+  List<VisitorGroup> groups;
+  VisitorBatch batch;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    List<UUID> memberIds = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      memberIds.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    groups = new ArrayList<>();
+    int visitors = 0;
+    while (visitors < VISITORS) {
+      int size = Math.min(random.nextInt(10, 41), VISITORS - visitors);
+      List<Visitor> members = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+        optionalDiscounts.add(new PersonalStamp(random.nextInt(11)));
+        if (random.nextInt(8) == 0) {
+          optionalDiscounts.add(new ShoppingReceipt(random.nextInt(3000, 8000)));
+        }
+        if (random.nextInt(8) == 0) {
+          optionalDiscounts.add(new InternetPremiumMember(memberIds.get(random.nextInt(64))));
+        }
+        DiscountType type =
+            switch (random.nextInt(10)) {
+              case 0, 1, 2, 3 -> DiscountType.CHILD;
+              case 4 -> DiscountType.DISABILITIES;
+              case 5 -> DiscountType.SENIOR_CITIZENS;
+              default -> null;
+            };
+        members.add(
+            new Visitor(
+                new UUID(random.nextLong(), random.nextLong()), type, optionalDiscounts, null));
+      }
+      groups.add(new VisitorGroup(members));
+      visitors += size;
+    }
+    List<UUID> validMemberIds = memberIds.subList(0, 32);
+    LocalDate today = PricingScenarioBenchmark.WEDNESDAY;
+    logic =
+        new Logic(
+            new PriceConfiguration() {
+              @Override
+              public Price getBasePrice() {
+                return new Price(1800);
+              }
+
+              @Override
+              public LocalDate getToday() {
+                return today;
+              }
+            },
+            _ -> false,
+            validMemberIds::contains,
+            _ -> false);
+    pricing = new VisitorBatchPricing(logic);
+    batch = pricing.batchOf(groups);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VISITORS)
+  public void logic(@NotNull Blackhole blackhole) {
+    for (VisitorGroup visitorGroup : groups) {
+      blackhole.consume(logic.calculateAdmissionFee(visitorGroup));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VISITORS)
+  public VisitorBatchPricing.Prices batch() {
+    return pricing.price(batch);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VISITORS)
+  public VisitorBatchPricing.Prices batchFromGroups() {
+    return pricing.price(pricing.batchOf(groups));
+  }
+}
@@ -0,0 +1,55 @@
+package com.example.theater;
+
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+/** Flight recorder event spanning the pricing of one group, lookups included. */
+@Name("com.example.theater.AdmissionFeeCalculation")
+@Label("Admission Fee Calculation")
+@Category({"Theater", "Pricing"})
+@StackTrace(false)
+final class AdmissionFeeCalculationEvent extends Event {
+
+  @Label("Visitors")
+  int visitors;
+
+  @Label("Discounts")
+  @Description("Discounts applied over all visitors")
+  int discounts;
+
+  @Label("Total Price")
+  long totalPrice;
+
+  @Label("Share Holder")
+  @Description("Whether a published shareholder ticket made the whole group free")
+  boolean shareHolder;
+
+  @Label("Async")
+  boolean async;
+
+  /** {@link System#nanoTime()} at the start for the {@link PricingListener}, not recorded. */
+  transient long startedAt;
+
+  void commit(@NotNull List<Audience> audiences, boolean async) {
+    end();
+    if (!shouldCommit()) {
+      return;
+    }
+    this.visitors = audiences.size();
+    for (Audience audience : audiences) {
+      this.discounts += audience.discountDetails().size();
+      this.totalPrice += audience.price().value();
+    }
+    this.shareHolder =
+        !audiences.isEmpty()
+            && DiscountKind.SHARE_HOLDER_TICKET.isIn(audiences.getFirst().appliedDiscountKinds());
+    this.async = async;
+    commit();
+  }
+}
@@ -0,0 +1,17 @@
+package com.example.theater;
+
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/** Outcome of pricing one {@link VisitorGroup} in a batch. */
+public sealed interface AdmissionFeeResult {
+
+  @NotNull
+  VisitorGroup visitorGroup();
+
+  record Calculated(@NotNull VisitorGroup visitorGroup, @NotNull List<@NotNull Audience> audiences)
+      implements AdmissionFeeResult {}
+
+  record Failed(@NotNull VisitorGroup visitorGroup, @NotNull Throwable cause)
+      implements AdmissionFeeResult {}
+}
@@ -0,0 +1,45 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+
+/** Shared plumbing for the default asynchronous lookups of the database interfaces. */
+final class AsyncLookups {
+
+  static final @NotNull ExecutorService VIRTUAL_THREADS =
+      Executors.newVirtualThreadPerTaskExecutor();
+
+  private AsyncLookups() {}
+
+  /** Issues all lookups at once and completes with the items found to be valid. */
+  static <T> @NotNull CompletableFuture<Set<T>> filter(
+      @NotNull Collection<T> items, @NotNull Function<T, CompletableFuture<Boolean>> lookup) {
+    if (items.isEmpty()) {
+      return CompletableFuture.completedFuture(Set.of());
+    }
+    List<T> candidates = List.copyOf(items);
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>(candidates.size());
+    for (T candidate : candidates) {
+      futures.add(lookup.apply(candidate));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .thenApply(
+            _ -> {
+              Set<T> valid = new HashSet<>();
+              for (int index = 0; index < candidates.size(); index++) {
+                if (futures.get(index).join()) {
+                  valid.add(candidates.get(index));
+                }
+              }
+              return Set.copyOf(valid);
+            });
+  }
+}
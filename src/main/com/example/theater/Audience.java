@@ -1,6 +1,7 @@
 package com.example.theater;
 
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import org.jetbrains.annotations.NotNull;
 
@@ -8,4 +9,14 @@ public record Audience(
     @NotNull UUID id,
     @NotNull PersonalStamp newPersonalStamp,
     @NotNull Price price,
-    @NotNull List<Discount> discountDetails) {}
+    @NotNull List<Discount> discountDetails) {
+
+  /** Bitmask of the {@link DiscountKind}s in {@code discountDetails}. */
+  public int appliedDiscountKinds() {
+    return DiscountKind.kindsOf(discountDetails);
+  }
+
+  public @NotNull Set<DiscountKind> appliedDiscountKindSet() {
+    return DiscountKind.setOf(appliedDiscountKinds());
+  }
+}
@@ -0,0 +1,470 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Append-only journal of priced groups in memory-mapped segment files, for auditing every issued
+ * price. Writers encode their entry with {@link TheaterCodec} on their own thread and hand it to a
+ * single committer thread, which copies whatever has queued up meanwhile into the current segment
+ * and makes the whole batch durable at once according to the {@link FsyncPolicy}.
+ *
+ * <p>As a {@link PricingListener} it journals every group {@link Logic} finishes, before the
+ * audiences are returned to the caller. With {@link FsyncPolicy.EveryCommit} the pricing thread
+ * therefore waits for the group commit its entry is part of.
+ *
+ * <p>A segment is named after the sequence number of its first entry and starts with a 16 byte
+ * header of a magic number, a format version and that sequence number. Each entry is a 16 byte
+ * header of the payload length, the CRC32C of the payload and the sequence number, followed by the
+ * payload and padded to 8 bytes. A zero length ends the segment. On {@link #open} the last segment
+ * is scanned and everything after the last intact entry, e.g. an entry torn by a crash, is cleared.
+ */
+public final class AuditJournal implements PricingListener, AutoCloseable {
+
+  /** When the committer forces the mapped segment to the storage device. */
+  public sealed interface FsyncPolicy {
+
+    /** Forces every group commit before its writers return. */
+    record EveryCommit() implements FsyncPolicy {}
+
+    /**
+     * Forces at most once per {@code interval}. Writers return once their entry is in the mapped
+     * segment, so a crash of the machine may lose the entries of the last interval.
+     */
+    record Periodic(@NotNull Duration interval) implements FsyncPolicy {}
+
+    /** Forces segments only when rolling over and on close, leaving the rest to the OS. */
+    record OnRoll() implements FsyncPolicy {}
+  }
+
+  /**
+   * @param sequence - position in the journal, counted from {@code 0} without gaps.
+   * @param recordedAt - when the entry was appended, to the millisecond.
+   */
+  public record Entry(
+      long sequence,
+      @NotNull Instant recordedAt,
+      @NotNull VisitorGroup visitorGroup,
+      @NotNull List<Audience> audiences) {}
+
+  static final int MAGIC = 0x41554454; // "AUDT"
+  static final int VERSION = 1;
+  static final long SEGMENT_HEADER_BYTES = 16;
+  static final long ENTRY_HEADER_BYTES = 16;
+  static final String SUFFIX = ".journal";
+  static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.BIG_ENDIAN);
+  static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.BIG_ENDIAN);
+
+  /** Entries copied into the segment between two commits at most. */
+  static final int MAX_BATCH = 1024;
+
+  private record Pending(
+      byte @NotNull [] payload, int crc, @NotNull CompletableFuture<Long> committed) {}
+
+  /** Queued by {@link #close()} after the last entry. */
+  private static final @NotNull Pending CLOSE =
+      new Pending(new byte[0], 0, CompletableFuture.completedFuture(-1L));
+
+  final @NotNull Path directory;
+  final long segmentBytes;
+  final @NotNull FsyncPolicy fsyncPolicy;
+  private final @NotNull BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+  private final @NotNull Thread committer;
+  private volatile boolean closed;
+
+  // owned by the committer thread once started
+  private @NotNull MemorySegment segment;
+  private long position;
+  private long nextSequence;
+  private boolean dirty;
+  private long forcedAt;
+
+  // written by the committer thread only
+  private volatile @Nullable IOException failure;
+
+  private AuditJournal(
+      @NotNull Path directory,
+      long segmentBytes,
+      @NotNull FsyncPolicy fsyncPolicy,
+      @NotNull MemorySegment segment,
+      long position,
+      long nextSequence) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.fsyncPolicy = fsyncPolicy;
+    this.segment = segment;
+    this.position = position;
+    this.nextSequence = nextSequence;
+    this.forcedAt = System.nanoTime();
+    this.committer = Thread.ofPlatform().name("audit-journal").daemon().unstarted(this::commit);
+  }
+
+  /**
+   * Opens the journal in {@code directory}, creating it if missing and recovering the tail of the
+   * last segment. New segments are created with {@code segmentBytes} bytes.
+   */
+  public static @NotNull AuditJournal open(
+      @NotNull Path directory, long segmentBytes, @NotNull FsyncPolicy fsyncPolicy)
+      throws IOException {
+    if (segmentBytes < SEGMENT_HEADER_BYTES + ENTRY_HEADER_BYTES || segmentBytes % 8 != 0) {
+      throw new IllegalArgumentException(
+          STR."segments must be a multiple of 8 and larger than 32 bytes: \{segmentBytes}");
+    }
+    Files.createDirectories(directory);
+    List<Path> segments = segments(directory);
+    Path last = segments.isEmpty() ? createSegment(directory, segmentBytes, 0) : segments.getLast();
+    // unmapped by the GC, as segments derived from shared arenas cannot be checksummed
+    MemorySegment segment = map(last, FileChannel.MapMode.READ_WRITE, Arena.ofAuto());
+    long sequence = segment.get(LONG, 8);
+    long position = SEGMENT_HEADER_BYTES;
+    long length;
+    while ((length = intactLength(segment, position, sequence)) != -1) {
+      position += entryBytes(length);
+      sequence++;
+    }
+    for (long offset = position; offset < segment.byteSize(); offset += Long.BYTES) {
+      if (segment.get(LONG, offset) != 0) {
+        // torn tail, cleared so that new entries are never followed by its remains
+        segment.asSlice(position).fill((byte) 0);
+        segment.force();
+        break;
+      }
+    }
+    AuditJournal journal =
+        new AuditJournal(directory, segmentBytes, fsyncPolicy, segment, position, sequence);
+    journal.committer.start();
+    return journal;
+  }
+
+  @Override
+  public void groupFinished(
+      @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences, long elapsedNanos) {
+    append(visitorGroup, audiences);
+  }
+
+  /**
+   * Appends a priced group and waits until it is committed according to the {@link FsyncPolicy}.
+   *
+   * @return the sequence number of the entry.
+   */
+  public long append(@NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences) {
+    try {
+      return appendAsync(visitorGroup, audiences).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw new UncheckedIOException(io);
+      }
+      throw e;
+    }
+  }
+
+  /** Appends a priced group, completing with its sequence number once it is committed. */
+  public @NotNull CompletableFuture<Long> appendAsync(
+      @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences) {
+    byte[] payload = encode(System.currentTimeMillis(), visitorGroup, audiences);
+    if (segmentBytes < SEGMENT_HEADER_BYTES + entryBytes(payload.length)) {
+      throw new IllegalArgumentException(
+          STR."entry of \{payload.length} bytes does not fit in a segment");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(payload);
+    Pending pending = new Pending(payload, (int) crc.getValue(), new CompletableFuture<>());
+    synchronized (queue) {
+      // checked under the lock, so that nothing is queued after CLOSE
+      if (closed) {
+        throw new IllegalStateException("journal is closed");
+      }
+      queue.add(pending);
+    }
+    return pending.committed();
+  }
+
+  private static byte @NotNull [] encode(
+      long recordedAt, @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences) {
+    for (int capacity = 256 * (1 + visitorGroup.visitors().size()); ; capacity *= 2) {
+      ByteBuffer buffer = ByteBuffer.allocate(capacity);
+      try {
+        TheaterCodec.writeVarLong(buffer, recordedAt);
+        TheaterCodec.writeVisitorGroup(buffer, visitorGroup);
+        TheaterCodec.writeAudiences(buffer, audiences);
+      } catch (BufferOverflowException e) {
+        continue;
+      }
+      byte[] payload = new byte[buffer.position()];
+      buffer.flip().get(payload);
+      return payload;
+    }
+  }
+
+  /** Loop of the committer thread. */
+  private void commit() {
+    List<Pending> batch = new ArrayList<>(MAX_BATCH);
+    boolean closing = false;
+    while (!closing) {
+      try {
+        Pending first =
+            fsyncPolicy instanceof FsyncPolicy.Periodic periodic && dirty
+                ? queue.poll(periodic.interval().toNanos(), TimeUnit.NANOSECONDS)
+                : queue.take();
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, MAX_BATCH - 1);
+        }
+      } catch (InterruptedException e) {
+        // only close() stops the committer
+        continue;
+      }
+      List<Long> sequences = new ArrayList<>(batch.size());
+      for (Pending pending : batch) {
+        if (pending == CLOSE) {
+          closing = true;
+        } else {
+          sequences.add(failure == null ? write(pending) : -1L);
+        }
+      }
+      try {
+        if (failure == null && (closing || shouldForce())) {
+          force();
+        }
+      } catch (UncheckedIOException e) {
+        failure = e.getCause();
+      }
+      int i = 0;
+      for (Pending pending : batch) {
+        if (pending == CLOSE) {
+          continue;
+        }
+        if (failure != null) {
+          pending.committed().completeExceptionally(failure);
+        } else {
+          pending.committed().complete(sequences.get(i));
+        }
+        i++;
+      }
+      batch.clear();
+    }
+  }
+
+  private boolean shouldForce() {
+    return switch (fsyncPolicy) {
+      case FsyncPolicy.EveryCommit _ -> dirty;
+      case FsyncPolicy.Periodic periodic ->
+          dirty && periodic.interval().toNanos() <= System.nanoTime() - forcedAt;
+      case FsyncPolicy.OnRoll _ -> false;
+    };
+  }
+
+  private void force() {
+    segment.force();
+    dirty = false;
+    forcedAt = System.nanoTime();
+  }
+
+  /** Copies an entry into the current segment, rolling over first if it does not fit. */
+  private long write(@NotNull Pending pending) {
+    long length = pending.payload().length;
+    try {
+      if (segment.byteSize() < position + entryBytes(length)) {
+        roll();
+      }
+    } catch (IOException e) {
+      failure = e;
+      return -1;
+    } catch (UncheckedIOException e) {
+      failure = e.getCause();
+      return -1;
+    }
+    long sequence = nextSequence++;
+    MemorySegment.copy(
+        pending.payload(), 0, segment, ValueLayout.JAVA_BYTE, position + ENTRY_HEADER_BYTES,
+        pending.payload().length);
+    segment.set(LONG, position + 8, sequence);
+    segment.set(INT, position + 4, pending.crc());
+    // written last, so that a reader never sees a length before the rest of the entry
+    segment.set(INT, position, (int) length);
+    position += entryBytes(length);
+    dirty = true;
+    return sequence;
+  }
+
+  private void roll() throws IOException {
+    force();
+    Path next = createSegment(directory, segmentBytes, nextSequence);
+    segment = map(next, FileChannel.MapMode.READ_WRITE, Arena.ofAuto());
+    position = SEGMENT_HEADER_BYTES;
+  }
+
+  /**
+   * The error a force or roll over failed with, or {@code null}. A failed journal stays failed, as
+   * the entries after the failure could not be replayed in order: every later append and {@link
+   * #close()} fails with it.
+   */
+  public @Nullable IOException failure() {
+    return failure;
+  }
+
+  /**
+   * Commits everything appended so far and forces it whatever the policy.
+   *
+   * @throws UncheckedIOException if the journal has failed, see {@link #failure()}.
+   */
+  @Override
+  public void close() {
+    synchronized (queue) {
+      if (!closed) {
+        closed = true;
+        queue.add(CLOSE);
+      }
+    }
+    boolean interrupted = false;
+    while (committer.isAlive()) {
+      try {
+        committer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    IOException failure = this.failure;
+    if (failure != null) {
+      throw new UncheckedIOException("journal failed", failure);
+    }
+  }
+
+  /**
+   * Replays the entries of the journal in {@code directory} from {@code fromSequence} on, in order.
+   * Stops at the end of the last segment or at a torn entry at its tail.
+   *
+   * @throws IOException if a segment is unreadable, or entries are missing between two segments.
+   */
+  public static void replay(
+      @NotNull Path directory, long fromSequence, @NotNull Consumer<? super Entry> consumer)
+      throws IOException {
+    long expected = -1;
+    for (Path file : segments(directory)) {
+      try (Arena arena = Arena.ofConfined()) {
+        MemorySegment segment = map(file, FileChannel.MapMode.READ_ONLY, arena);
+        long sequence = segment.get(LONG, 8);
+        if (expected != -1 && sequence != expected) {
+          throw new IOException(
+              STR."\{file} starts at entry \{sequence}, entries from \{expected} are missing");
+        }
+        long position = SEGMENT_HEADER_BYTES;
+        long length;
+        while ((length = intactLength(segment, position, sequence)) != -1) {
+          if (fromSequence <= sequence) {
+            consumer.accept(
+                decode(
+                    sequence,
+                    segment.asSlice(position + ENTRY_HEADER_BYTES, length).asByteBuffer()));
+          }
+          position += entryBytes(length);
+          sequence++;
+        }
+        expected = sequence;
+      }
+    }
+  }
+
+  private static @NotNull Entry decode(long sequence, @NotNull ByteBuffer payload) {
+    Instant recordedAt = Instant.ofEpochMilli(TheaterCodec.readVarLong(payload));
+    VisitorGroup visitorGroup = TheaterCodec.readVisitorGroup(payload);
+    List<Audience> audiences = TheaterCodec.readAudiences(payload);
+    return new Entry(sequence, recordedAt, visitorGroup, audiences);
+  }
+
+  /** Payload length of the entry at {@code position}, or {@code -1} if there is no intact one. */
+  private static long intactLength(@NotNull MemorySegment segment, long position, long sequence) {
+    if (segment.byteSize() < position + ENTRY_HEADER_BYTES) {
+      return -1;
+    }
+    long length = segment.get(INT, position);
+    if (length <= 0
+        || segment.byteSize() < position + ENTRY_HEADER_BYTES + length
+        || segment.get(LONG, position + 8) != sequence) {
+      return -1;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(segment.asSlice(position + ENTRY_HEADER_BYTES, length).asByteBuffer());
+    return (int) crc.getValue() == segment.get(INT, position + 4) ? length : -1;
+  }
+
+  private static long entryBytes(long length) {
+    return (ENTRY_HEADER_BYTES + length + 7) & ~7L;
+  }
+
+  private static @NotNull List<Path> segments(@NotNull Path directory) throws IOException {
+    if (Files.notExists(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      // names are zero padded, so they sort by sequence number
+      return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+    }
+  }
+
+  private static @NotNull Path createSegment(
+      @NotNull Path directory, long segmentBytes, long firstSequence) throws IOException {
+    Path file = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+    try (FileChannel channel =
+            FileChannel.open(
+                file,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Arena arena = Arena.ofConfined()) {
+      MemorySegment segment =
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes, arena);
+      segment.set(INT, 0, MAGIC);
+      segment.set(INT, 4, VERSION);
+      segment.set(LONG, 8, firstSequence);
+      segment.force();
+    }
+    return file;
+  }
+
+  private static @NotNull MemorySegment map(
+      @NotNull Path file, FileChannel.MapMode mode, @NotNull Arena arena) throws IOException {
+    StandardOpenOption[] options =
+        mode == FileChannel.MapMode.READ_ONLY
+            ? new StandardOpenOption[] {StandardOpenOption.READ}
+            : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE};
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      MemorySegment segment = channel.map(mode, 0, channel.size(), arena);
+      if (segment.byteSize() < SEGMENT_HEADER_BYTES
+          || segment.get(INT, 0) != MAGIC
+          || segment.get(INT, 4) != VERSION) {
+        throw new IOException(STR."\{file} is not a journal segment");
+      }
+      return segment;
+    }
+  }
+}
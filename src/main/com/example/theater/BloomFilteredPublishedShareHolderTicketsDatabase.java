@@ -0,0 +1,165 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bloom filter in front of a {@link PublishedShareHolderTicketsDatabase}. Tickets the filter has
+ * never seen are rejected without asking the backing database; possible hits are forwarded to it.
+ *
+ * <p>Tickets published after construction have to be added with {@link #publish(UUID)}, otherwise
+ * they are rejected by the filter.
+ */
+public class BloomFilteredPublishedShareHolderTicketsDatabase
+    implements PublishedShareHolderTicketsDatabase {
+
+  public record Stats(long skipped, long forwarded, long falsePositives) {}
+
+  final @NotNull PublishedShareHolderTicketsDatabase delegate;
+  final @NotNull AtomicLongArray bits;
+  final long bitCount;
+  final int hashCount;
+  final @NotNull LongAdder skipped = new LongAdder();
+  final @NotNull LongAdder forwarded = new LongAdder();
+  final @NotNull LongAdder falsePositives = new LongAdder();
+
+  public BloomFilteredPublishedShareHolderTicketsDatabase(
+      @NotNull PublishedShareHolderTicketsDatabase delegate,
+      @NotNull Collection<@NotNull UUID> publishedTickets,
+      double falsePositiveRate) {
+    if (!(0 < falsePositiveRate && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+    }
+    int expected = Math.max(1, publishedTickets.size());
+    double ln2 = Math.log(2);
+    long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+    long words = Math.max(1, (bits + 63) >>> 6);
+    this.delegate = delegate;
+    this.bits = new AtomicLongArray(Math.toIntExact(words));
+    this.bitCount = words << 6;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * ln2));
+    for (UUID ticket : publishedTickets) {
+      add(ticket);
+    }
+  }
+
+  static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /** Adds a newly published ticket to the filter. */
+  public void publish(@NotNull UUID ticketId) {
+    add(ticketId);
+  }
+
+  private void add(@NotNull UUID ticketId) {
+    long h1 = mix(ticketId.getMostSignificantBits());
+    long h2 = mix(ticketId.getLeastSignificantBits()) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.unsignedMultiplyHigh(h1 + i * h2, bitCount);
+      bits.accumulateAndGet((int) (bit >>> 6), 1L << bit, (word, mask) -> word | mask);
+    }
+  }
+
+  /** {@code false} means the ticket is definitely not published. */
+  boolean mightBePublished(@NotNull UUID ticketId) {
+    long h1 = mix(ticketId.getMostSignificantBits());
+    long h2 = mix(ticketId.getLeastSignificantBits()) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.unsignedMultiplyHigh(h1 + i * h2, bitCount);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+    if (!mightBePublished(ticketId)) {
+      skipped.increment();
+      return false;
+    }
+    forwarded.increment();
+    boolean published = delegate.isPublishedShareHolderTicket(ticketId);
+    if (!published) {
+      falsePositives.increment();
+    }
+    return published;
+  }
+
+  @Override
+  public @NotNull Set<@NotNull UUID> publishedShareHolderTickets(
+      @NotNull Collection<@NotNull UUID> ticketIds) {
+    List<UUID> candidates = candidates(ticketIds);
+    if (candidates.isEmpty()) {
+      return Set.of();
+    }
+    Set<UUID> published = delegate.publishedShareHolderTickets(candidates);
+    falsePositives.add(candidates.size() - published.size());
+    return published;
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> isPublishedShareHolderTicketAsync(
+      @NotNull UUID ticketId) {
+    if (!mightBePublished(ticketId)) {
+      skipped.increment();
+      return CompletableFuture.completedFuture(false);
+    }
+    forwarded.increment();
+    return delegate
+        .isPublishedShareHolderTicketAsync(ticketId)
+        .whenComplete(
+            (published, _) -> {
+              if (Boolean.FALSE.equals(published)) {
+                falsePositives.increment();
+              }
+            });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Set<@NotNull UUID>> publishedShareHolderTicketsAsync(
+      @NotNull Collection<@NotNull UUID> ticketIds) {
+    List<UUID> candidates = candidates(ticketIds);
+    if (candidates.isEmpty()) {
+      return CompletableFuture.completedFuture(Set.of());
+    }
+    return delegate
+        .publishedShareHolderTicketsAsync(candidates)
+        .whenComplete(
+            (published, _) -> {
+              if (published != null) {
+                falsePositives.add(candidates.size() - published.size());
+              }
+            });
+  }
+
+  private @NotNull List<UUID> candidates(@NotNull Collection<@NotNull UUID> ticketIds) {
+    List<UUID> candidates = new ArrayList<>(ticketIds.size());
+    for (UUID ticketId : ticketIds) {
+      if (mightBePublished(ticketId)) {
+        candidates.add(ticketId);
+      }
+    }
+    skipped.add(ticketIds.size() - candidates.size());
+    forwarded.add(candidates.size());
+    return candidates;
+  }
+
+  public @NotNull Stats stats() {
+    return new Stats(skipped.sum(), forwarded.sum(), falsePositives.sum());
+  }
+}
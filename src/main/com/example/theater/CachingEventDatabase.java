@@ -0,0 +1,151 @@
+package com.example.theater;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link EventDatabase} which loads the valid sequence numbers of an event on its first miss and
+ * answers the following lookups from an in-memory {@link TicketBitmap}.
+ *
+ * <p>Bitmaps are cached per event and distribution date. They expire after {@code timeToLive},
+ * can be dropped per event or per distribution date, and the least recently used ones are evicted
+ * once the cached bitmaps exceed {@code maxBytes}. Loads run outside the lock of the cache, so
+ * concurrent misses of the same event may load it more than once.
+ */
+public class CachingEventDatabase implements EventDatabase {
+
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * @return valid sequence numbers of tickets distributed on the date, or {@code null} for an
+     *     unknown event.
+     */
+    @Nullable
+    TicketBitmap load(@NotNull UUID eventId, @NotNull LocalDate distributionDate);
+  }
+
+  public record Stats(long hits, long misses, long loadNanos, long evictions, long bytes) {}
+
+  record Key(@NotNull UUID eventId, @NotNull LocalDate distributionDate) {}
+
+  record Entry(@NotNull TicketBitmap bitmap, long loadedAt) {}
+
+  final @NotNull Loader loader;
+  final long maxBytes;
+  final long timeToLiveNanos;
+  final @NotNull LongSupplier nanoTime;
+
+  /** Cached bitmaps from the least to the most recently used, guarded by itself. */
+  final @NotNull LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** Bytes of the cached bitmaps, guarded by {@link #entries}. */
+  long bytes;
+
+  final @NotNull LongAdder hits = new LongAdder();
+  final @NotNull LongAdder misses = new LongAdder();
+  final @NotNull LongAdder loadNanos = new LongAdder();
+  final @NotNull LongAdder evictions = new LongAdder();
+
+  public CachingEventDatabase(
+      @NotNull Loader loader, long maxBytes, @NotNull Duration timeToLive) {
+    this(loader, maxBytes, timeToLive, System::nanoTime);
+  }
+
+  CachingEventDatabase(
+      @NotNull Loader loader,
+      long maxBytes,
+      @NotNull Duration timeToLive,
+      @NotNull LongSupplier nanoTime) {
+    this.loader = loader;
+    this.maxBytes = maxBytes;
+    this.timeToLiveNanos = nanosOf(timeToLive);
+    this.nanoTime = nanoTime;
+  }
+
+  /** Nanoseconds of the duration, saturating instead of overflowing for very long ones. */
+  static long nanosOf(@NotNull Duration duration) {
+    try {
+      return duration.toNanos();
+    } catch (ArithmeticException e) {
+      return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  @Override
+  public boolean isValidDiscountTicket(@NotNull DiscountTicket discountTicket) {
+    Key key = new Key(discountTicket.eventId(), discountTicket.distributionDate());
+    long now = nanoTime.getAsLong();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    if (entry != null && now - entry.loadedAt() < timeToLiveNanos) {
+      hits.increment();
+      return entry.bitmap().contains(discountTicket.ticketSeqId());
+    }
+    misses.increment();
+    long start = nanoTime.getAsLong();
+    TicketBitmap bitmap = loader.load(key.eventId(), key.distributionDate());
+    loadNanos.add(nanoTime.getAsLong() - start);
+    Entry loaded = new Entry(bitmap == null ? TicketBitmap.EMPTY : bitmap, now);
+    synchronized (entries) {
+      Entry current = entries.get(key);
+      if (current == null || current.loadedAt() < loaded.loadedAt()) {
+        entries.put(key, loaded);
+        bytes += loaded.bitmap().byteSize() - (current == null ? 0 : current.bitmap().byteSize());
+      }
+      evictIfNecessary();
+    }
+    return loaded.bitmap().contains(discountTicket.ticketSeqId());
+  }
+
+  /** Evicts the least recently used bitmaps, holding the lock of {@link #entries}. */
+  private void evictIfNecessary() {
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (maxBytes < bytes && eldest.hasNext()) {
+      bytes -= eldest.next().bitmap().byteSize();
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+
+  public void invalidate(@NotNull UUID eventId) {
+    synchronized (entries) {
+      removeIf(key -> key.eventId().equals(eventId));
+    }
+  }
+
+  public void invalidateDistributedBefore(@NotNull LocalDate distributionDate) {
+    synchronized (entries) {
+      removeIf(key -> key.distributionDate().isBefore(distributionDate));
+    }
+  }
+
+  private void removeIf(@NotNull Predicate<Key> predicate) {
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      if (predicate.test(entry.getKey())) {
+        bytes -= entry.getValue().bitmap().byteSize();
+        iterator.remove();
+      }
+    }
+  }
+
+  public @NotNull Stats stats() {
+    long cachedBytes;
+    synchronized (entries) {
+      cachedBytes = bytes;
+    }
+    return new Stats(hits.sum(), misses.sum(), loadNanos.sum(), evictions.sum(), cachedBytes);
+  }
+}
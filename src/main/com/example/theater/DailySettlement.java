@@ -0,0 +1,233 @@
+package com.example.theater;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Totals of the audiences priced in a day, fed from any number of threads. Counts go to one of
+ * several stripes picked by thread, so kiosks rarely touch the same stripe, and a group is always
+ * counted in one stripe as a whole. A {@link Settlement} therefore never holds half of a group.
+ *
+ * <p>Writers never wait for each other, as a writer finding its stripe busy moves on to the next
+ * one. Readers are not lock-free: {@link #snapshot()} and the completion of a day spin on a stripe
+ * while a writer is adding a group to it, which takes as long as counting that group's discounts.
+ *
+ * <p>The day is {@link PriceConfiguration#getToday()} when a group is recorded. When it changes,
+ * the settlement of the previous day is completed and handed to the {@code onClose} callback on
+ * the thread that noticed the change.
+ */
+public final class DailySettlement implements PricingListener {
+
+  /**
+   * @param revenue - sum of the prices of all audiences.
+   * @param discountAmounts - total amount taken off by each kind of discount.
+   */
+  public record Settlement(
+      @NotNull LocalDate date,
+      long groups,
+      long audiences,
+      long revenue,
+      @NotNull Map<DiscountKind, Long> discounts,
+      @NotNull Map<DiscountKind, Long> discountAmounts) {}
+
+  private static final @NotNull DiscountKind @NotNull [] KINDS = DiscountKind.values();
+
+  // counters of a stripe, padded on both sides against false sharing with the next stripe
+  private static final int PADDING = 8;
+  private static final int GROUPS = PADDING;
+  private static final int AUDIENCES = GROUPS + 1;
+  private static final int REVENUE = AUDIENCES + 1;
+  private static final int DISCOUNTS = REVENUE + 1;
+  private static final int DISCOUNT_AMOUNTS = DISCOUNTS + KINDS.length;
+  private static final int COUNTERS = DISCOUNT_AMOUNTS + KINDS.length + PADDING;
+
+  private static final @NotNull VarHandle VERSION;
+  private static final @NotNull VarHandle COUNTER =
+      MethodHandles.arrayElementVarHandle(long[].class);
+  private static final @NotNull VarHandle CURRENT;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      VERSION = lookup.findVarHandle(Stripe.class, "version", int.class);
+      CURRENT = lookup.findVarHandle(DailySettlement.class, "current", Day.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /** Counters guarded by a sequence lock: odd {@code version} while a group is being added. */
+  private static final class Stripe {
+    final long @NotNull [] counters = new long[COUNTERS];
+    volatile int version;
+  }
+
+  private static final class Day {
+    final @NotNull LocalDate date;
+    final @NotNull Stripe @NotNull [] stripes;
+    volatile boolean closed;
+
+    Day(@NotNull LocalDate date, int stripes) {
+      this.date = date;
+      this.stripes = new Stripe[stripes];
+      for (int i = 0; i < stripes; i++) {
+        this.stripes[i] = new Stripe();
+      }
+    }
+  }
+
+  final @NotNull PriceConfiguration priceConfiguration;
+  final @NotNull Consumer<@NotNull Settlement> onClose;
+  private final int stripes;
+
+  private volatile @NotNull Day current;
+
+  public DailySettlement(
+      @NotNull PriceConfiguration priceConfiguration,
+      @NotNull Consumer<@NotNull Settlement> onClose) {
+    this.priceConfiguration = priceConfiguration;
+    this.onClose = onClose;
+    this.stripes = stripesFor(Runtime.getRuntime().availableProcessors());
+    this.current = new Day(priceConfiguration.getToday(), stripes);
+  }
+
+  public DailySettlement(@NotNull PriceConfiguration priceConfiguration) {
+    this(priceConfiguration, _ -> {});
+  }
+
+  /** Power of two of at least twice the processors, up to 64. */
+  static int stripesFor(int processors) {
+    return Integer.highestOneBit(Math.min(64, 2 * processors) * 2 - 1);
+  }
+
+  @Override
+  public void groupFinished(
+      @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences, long elapsedNanos) {
+    record(audiences);
+  }
+
+  /** Adds the audiences of one group to the settlement of today. */
+  public void record(@NotNull List<Audience> audiences) {
+    int probe = Long.hashCode(Thread.currentThread().threadId() * 0x9e3779b97f4a7c15L);
+    while (true) {
+      Day day = today();
+      Stripe stripe = acquire(day, probe);
+      if (day.closed) {
+        // the day was completed while acquiring, count the group on the next one
+        VERSION.setRelease(stripe, stripe.version + 1);
+        continue;
+      }
+      long[] counters = stripe.counters;
+      add(counters, GROUPS, 1);
+      add(counters, AUDIENCES, audiences.size());
+      for (Audience audience : audiences) {
+        add(counters, REVENUE, audience.price().value());
+        for (Discount discount : audience.discountDetails()) {
+          DiscountKind kind = DiscountKind.ofSource(discount.description().getSource());
+          if (kind != null) {
+            add(counters, DISCOUNTS + kind.ordinal(), 1);
+            add(counters, DISCOUNT_AMOUNTS + kind.ordinal(), discount.price().value());
+          }
+        }
+      }
+      VERSION.setRelease(stripe, stripe.version + 1);
+      return;
+    }
+  }
+
+  /** Takes a free stripe of the day, moving on to the next stripe instead of waiting. */
+  private static @NotNull Stripe acquire(@NotNull Day day, int probe) {
+    Stripe[] stripes = day.stripes;
+    for (int i = probe; ; i++) {
+      Stripe stripe = stripes[i & (stripes.length - 1)];
+      int version = stripe.version;
+      if ((version & 1) == 0 && VERSION.compareAndSet(stripe, version, version + 1)) {
+        return stripe;
+      }
+      if (((i - probe) & (stripes.length - 1)) == stripes.length - 1) {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  private static void add(long @NotNull [] counters, int index, long value) {
+    COUNTER.setOpaque(counters, index, (long) COUNTER.getOpaque(counters, index) + value);
+  }
+
+  /** Current day, completing the previous one first if the day has changed. */
+  private @NotNull Day today() {
+    Day day = current;
+    LocalDate today = priceConfiguration.getToday();
+    while (!day.date.equals(today)) {
+      Day next = new Day(today, stripes);
+      if (CURRENT.compareAndSet(this, day, next)) {
+        onClose.accept(close(day));
+        return next;
+      }
+      day = current;
+    }
+    return day;
+  }
+
+  private static @NotNull Settlement close(@NotNull Day day) {
+    day.closed = true;
+    for (Stripe stripe : day.stripes) {
+      // a writer that took the stripe before the day was closed finishes its group
+      while ((stripe.version & 1) != 0) {
+        Thread.onSpinWait();
+      }
+    }
+    return settlementOf(day);
+  }
+
+  /**
+   * Settlement of today so far. Groups recorded meanwhile are either wholly in it or not, as it
+   * waits for a writer in the middle of a group to finish it.
+   */
+  public @NotNull Settlement snapshot() {
+    return settlementOf(today());
+  }
+
+  private static @NotNull Settlement settlementOf(@NotNull Day day) {
+    long[] totals = new long[COUNTERS];
+    long[] read = new long[COUNTERS];
+    for (Stripe stripe : day.stripes) {
+      while (true) {
+        int version = (int) VERSION.getAcquire(stripe);
+        if ((version & 1) != 0) {
+          Thread.onSpinWait();
+          continue;
+        }
+        for (int i = GROUPS; i < COUNTERS - PADDING; i++) {
+          read[i] = (long) COUNTER.getOpaque(stripe.counters, i);
+        }
+        VarHandle.loadLoadFence();
+        if (stripe.version == version) {
+          break;
+        }
+      }
+      for (int i = GROUPS; i < COUNTERS - PADDING; i++) {
+        totals[i] += read[i];
+      }
+    }
+    Map<DiscountKind, Long> discounts = new EnumMap<>(DiscountKind.class);
+    Map<DiscountKind, Long> discountAmounts = new EnumMap<>(DiscountKind.class);
+    for (DiscountKind kind : KINDS) {
+      discounts.put(kind, totals[DISCOUNTS + kind.ordinal()]);
+      discountAmounts.put(kind, totals[DISCOUNT_AMOUNTS + kind.ordinal()]);
+    }
+    return new Settlement(
+        day.date,
+        totals[GROUPS],
+        totals[AUDIENCES],
+        totals[REVENUE],
+        Map.copyOf(discounts),
+        Map.copyOf(discountAmounts));
+  }
+}
@@ -0,0 +1,48 @@
+package com.example.theater;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Flight recorder event spanning one lookup against a database. An asynchronous lookup is
+ * committed on the thread that completes it.
+ */
+@Name("com.example.theater.DatabaseLookup")
+@Label("Database Lookup")
+@Category({"Theater", "Database"})
+@StackTrace(false)
+final class DatabaseLookupEvent extends Event {
+
+  @Label("Lookup")
+  String lookup;
+
+  @Label("Keys")
+  int keys;
+
+  @Label("Found")
+  @Description("Keys the database reported as published or valid")
+  int found;
+
+  @Label("Async")
+  boolean async;
+
+  /** {@link System#nanoTime()} at the start for the {@link PricingListener}, not recorded. */
+  transient long startedAt;
+
+  void commit(@NotNull PricingListener.Lookup lookup, int keys, int found, boolean async) {
+    end();
+    if (!shouldCommit()) {
+      return;
+    }
+    this.lookup = lookup.name();
+    this.keys = keys;
+    this.found = found;
+    this.async = async;
+    commit();
+  }
+}
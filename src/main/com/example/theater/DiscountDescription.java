@@ -10,16 +10,19 @@ public interface DiscountDescription {
   Object getSource();
 
   static @NotNull DiscountDescription of(@NotNull String text, @NotNull Object source) {
-    return new DiscountDescription() {
-      @Override
-      public @NotNull String getText() {
-        return text;
-      }
+    return new Of(text, source);
+  }
+
+  /** Description compared by value, so that a decoded {@link Discount} equals the original. */
+  record Of(@NotNull String text, @NotNull Object source) implements DiscountDescription {
+    @Override
+    public @NotNull String getText() {
+      return text;
+    }
 
-      @Override
-      public @NotNull Object getSource() {
-        return source;
-      }
-    };
+    @Override
+    public @NotNull Object getSource() {
+      return source;
+    }
   }
 }
@@ -0,0 +1,82 @@
+package com.example.theater;
+
+import java.util.EnumSet;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Every kind of discount a visitor can get, at most one of each. A set of kinds is kept as a
+ * bitmask of {@link #bit()}, as in {@link Audience#appliedDiscountKinds()}.
+ */
+public enum DiscountKind {
+  CHILD,
+  DISABILITIES,
+  ELDERLIES,
+  FEMALES,
+  SHARE_HOLDER_TICKET,
+  PERSONAL_STAMP,
+  SHOPPING_RECEIPT,
+  INTERNET_PREMIUM_MEMBER,
+  DISCOUNT_TICKET;
+
+  private static final @NotNull DiscountKind @NotNull [] VALUES = values();
+
+  public int bit() {
+    return 1 << ordinal();
+  }
+
+  public boolean isIn(int kinds) {
+    return (kinds & bit()) != 0;
+  }
+
+  public static @NotNull DiscountKind of(@NotNull DiscountType discountType) {
+    return switch (discountType) {
+      case ShareHolderTicket _ -> SHARE_HOLDER_TICKET;
+      case DiscountTypes.CHILD -> CHILD;
+      case DiscountTypes.DISABILITIES -> DISABILITIES;
+      case DiscountTypes.ELDERLIES -> ELDERLIES;
+      case DiscountTypes.FEMALES -> FEMALES;
+    };
+  }
+
+  public static @NotNull DiscountKind of(@NotNull OptionalDiscount optionalDiscount) {
+    return switch (optionalDiscount) {
+      case PersonalStamp _ -> PERSONAL_STAMP;
+      case ShoppingReceipt _ -> SHOPPING_RECEIPT;
+      case InternetPremiumMember _ -> INTERNET_PREMIUM_MEMBER;
+      case DiscountTicket _ -> DISCOUNT_TICKET;
+    };
+  }
+
+  /** The kind of discount given for the source of a {@link DiscountDescription}, if any. */
+  public static @Nullable DiscountKind ofSource(@NotNull Object source) {
+    return switch (source) {
+      case DiscountType discountType -> of(discountType);
+      case OptionalDiscount optionalDiscount -> of(optionalDiscount);
+      default -> null;
+    };
+  }
+
+  /** Bitmask of the kinds of the given discounts. */
+  public static int kindsOf(@NotNull Iterable<@NotNull Discount> discounts) {
+    int kinds = 0;
+    for (Discount discount : discounts) {
+      DiscountKind kind = ofSource(discount.description().getSource());
+      if (kind != null) {
+        kinds |= kind.bit();
+      }
+    }
+    return kinds;
+  }
+
+  public static @NotNull Set<DiscountKind> setOf(int kinds) {
+    EnumSet<DiscountKind> set = EnumSet.noneOf(DiscountKind.class);
+    for (DiscountKind kind : VALUES) {
+      if (kind.isIn(kinds)) {
+        set.add(kind);
+      }
+    }
+    return set;
+  }
+}
@@ -1,8 +1,34 @@
 package com.example.theater;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.jetbrains.annotations.NotNull;
 
 public interface EventDatabase {
 
   boolean isValidDiscountTicket(@NotNull DiscountTicket discountTicket);
+
+  default @NotNull Set<@NotNull DiscountTicket> validDiscountTickets(
+      @NotNull Collection<@NotNull DiscountTicket> discountTickets) {
+    Set<DiscountTicket> validDiscountTickets = new HashSet<>();
+    for (DiscountTicket discountTicket : discountTickets) {
+      if (isValidDiscountTicket(discountTicket)) {
+        validDiscountTickets.add(discountTicket);
+      }
+    }
+    return Set.copyOf(validDiscountTickets);
+  }
+
+  default @NotNull CompletableFuture<Boolean> isValidDiscountTicketAsync(
+      @NotNull DiscountTicket discountTicket) {
+    return CompletableFuture.supplyAsync(
+        () -> isValidDiscountTicket(discountTicket), AsyncLookups.VIRTUAL_THREADS);
+  }
+
+  default @NotNull CompletableFuture<Set<@NotNull DiscountTicket>> validDiscountTicketsAsync(
+      @NotNull Collection<@NotNull DiscountTicket> discountTickets) {
+    return AsyncLookups.filter(discountTickets, this::isValidDiscountTicketAsync);
+  }
 }
@@ -1,8 +1,33 @@
 package com.example.theater;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.jetbrains.annotations.NotNull;
 
 public interface InternetPremiumMembersDatabase {
   boolean isValidMemberId(@NotNull UUID memberId);
+
+  default @NotNull Set<@NotNull UUID> validMemberIds(
+      @NotNull Collection<@NotNull UUID> memberIds) {
+    Set<UUID> validMemberIds = new HashSet<>();
+    for (UUID memberId : memberIds) {
+      if (isValidMemberId(memberId)) {
+        validMemberIds.add(memberId);
+      }
+    }
+    return Set.copyOf(validMemberIds);
+  }
+
+  default @NotNull CompletableFuture<Boolean> isValidMemberIdAsync(@NotNull UUID memberId) {
+    return CompletableFuture.supplyAsync(
+        () -> isValidMemberId(memberId), AsyncLookups.VIRTUAL_THREADS);
+  }
+
+  default @NotNull CompletableFuture<Set<@NotNull UUID>> validMemberIdsAsync(
+      @NotNull Collection<@NotNull UUID> memberIds) {
+    return AsyncLookups.filter(memberIds, this::isValidMemberIdAsync);
+  }
 }
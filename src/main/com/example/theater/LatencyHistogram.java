@@ -0,0 +1,71 @@
+package com.example.theater;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lock-free histogram of durations over fixed power-of-two buckets. Bucket {@code 0} counts
+ * durations under one microsecond, bucket {@code i} those under {@code 2^i} microseconds, and the
+ * last bucket everything longer.
+ */
+public final class LatencyHistogram {
+
+  public static final int BUCKETS = 32;
+
+  /**
+   * @param counts - number of durations in each bucket.
+   */
+  public record Snapshot(long @NotNull [] counts, long count, long totalNanos) {
+
+    public static long upperBoundNanos(int bucket) {
+      return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1000L << bucket;
+    }
+
+    /** Upper bound of the bucket holding the given percentile, or {@code 0} when empty. */
+    public long percentileNanos(double percentile) {
+      long rank = (long) Math.ceil(count * percentile / 100);
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        seen += counts[bucket];
+        if (0 < seen && rank <= seen) {
+          return upperBoundNanos(bucket);
+        }
+      }
+      return 0;
+    }
+
+    public long meanNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+  }
+
+  private final @NotNull LongAdder @NotNull [] counts = new LongAdder[BUCKETS];
+  private final @NotNull LongAdder totalNanos = new LongAdder();
+
+  public LatencyHistogram() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = new LongAdder();
+    }
+  }
+
+  static int bucketOf(long nanos) {
+    long micros = Math.max(0, nanos) / 1000;
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  public void record(long nanos) {
+    counts[bucketOf(nanos)].increment();
+    totalNanos.add(nanos);
+  }
+
+  /** Buckets are read one by one, so records made meanwhile may be partly included. */
+  public @NotNull Snapshot snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      snapshot[bucket] = counts[bucket].sum();
+      count += snapshot[bucket];
+    }
+    return new Snapshot(snapshot, count, totalNanos.sum());
+  }
+}
@@ -1,265 +1,838 @@
 package com.example.theater;
 
-import static java.lang.StringTemplate.STR;
-
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.Month;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class Logic {
 
+  /** Prices a group as often as it needs to, e.g. until its stamps are stored. */
+  @FunctionalInterface
+  interface Repricing {
+
+    /**
+     * Returns the audiences of the last group priced with {@code pricing}, which are the ones
+     * reported.
+     */
+    @NotNull
+    List<Audience> price(@NotNull Function<@NotNull VisitorGroup, @NotNull List<Audience>> pricing);
+  }
+
+  static final @NotNull String CHILD_TEXT = "子供割引";
+  static final @NotNull String DISABILITIES_TEXT = "障がい者割引";
+  static final @NotNull String FEMALES_TEXT = "女性割引";
+  static final @NotNull String ELDERLIES_TEXT = "シニア割引";
+  static final @NotNull String SHARE_HOLDER_TICKET_TEXT = "株主優待券";
+  static final @NotNull String PERSONAL_STAMP_TEXT = "スタンプ割引";
+  static final @NotNull String SHOPPING_RECEIPT_TEXT = "商品購入割引";
+  static final @NotNull String INTERNET_PREMIUM_MEMBER_TEXT = "インターネットプレミアム会員割引";
+  static final @NotNull String DISCOUNT_TICKET_TEXT = "割引チケット";
+
   final @NotNull PriceConfiguration priceConfiguration;
   final @NotNull PublishedShareHolderTicketsDatabase publishedShareHolderTicketsDatabase;
   final @NotNull InternetPremiumMembersDatabase internetPremiumMembersDatabase;
   final @NotNull EventDatabase eventDatabase;
+  final @NotNull PricingListener pricingListener;
+  final @Nullable TicketRedemptions ticketRedemptions;
+  final @Nullable ShareHolderTicketClaims shareHolderTicketClaims;
+  final @Nullable QuoteCache quoteCache;
+  volatile @Nullable PricingSnapshot pricingSnapshot;
+  volatile @Nullable PriceTable priceTable;
 
   public Logic(
       @NotNull PriceConfiguration priceConfiguration,
       @NotNull PublishedShareHolderTicketsDatabase publishedShareHolderTicketsDatabase,
       @NotNull InternetPremiumMembersDatabase internetPremiumMembersDatabase,
       @NotNull EventDatabase eventDatabase) {
-    this.priceConfiguration = priceConfiguration;
-    this.publishedShareHolderTicketsDatabase = publishedShareHolderTicketsDatabase;
-    this.internetPremiumMembersDatabase = internetPremiumMembersDatabase;
-    this.eventDatabase = eventDatabase;
+    this(
+        builder(
+            priceConfiguration,
+            publishedShareHolderTicketsDatabase,
+            internetPremiumMembersDatabase,
+            eventDatabase));
+  }
+
+  private Logic(@NotNull Builder builder) {
+    this.priceConfiguration = builder.priceConfiguration;
+    this.publishedShareHolderTicketsDatabase = builder.publishedShareHolderTicketsDatabase;
+    this.internetPremiumMembersDatabase = builder.internetPremiumMembersDatabase;
+    this.eventDatabase = builder.eventDatabase;
+    this.pricingListener = builder.pricingListener;
+    this.ticketRedemptions = builder.ticketRedemptions;
+    this.shareHolderTicketClaims = builder.shareHolderTicketClaims;
+    this.quoteCache = builder.quoteCache;
+  }
+
+  /** Starts a {@link Logic} with the options of {@link Builder} on top of the databases. */
+  public static @NotNull Builder builder(
+      @NotNull PriceConfiguration priceConfiguration,
+      @NotNull PublishedShareHolderTicketsDatabase publishedShareHolderTicketsDatabase,
+      @NotNull InternetPremiumMembersDatabase internetPremiumMembersDatabase,
+      @NotNull EventDatabase eventDatabase) {
+    return new Builder(
+        priceConfiguration,
+        publishedShareHolderTicketsDatabase,
+        internetPremiumMembersDatabase,
+        eventDatabase);
+  }
+
+  /** Options of a {@link Logic}, each of them off unless set. */
+  public static final class Builder {
+    private final @NotNull PriceConfiguration priceConfiguration;
+    private final @NotNull PublishedShareHolderTicketsDatabase publishedShareHolderTicketsDatabase;
+    private final @NotNull InternetPremiumMembersDatabase internetPremiumMembersDatabase;
+    private final @NotNull EventDatabase eventDatabase;
+    private @NotNull PricingListener pricingListener = PricingListener.NONE;
+    private @Nullable TicketRedemptions ticketRedemptions;
+    private @Nullable ShareHolderTicketClaims shareHolderTicketClaims;
+    private @Nullable QuoteCache quoteCache;
+
+    private Builder(
+        @NotNull PriceConfiguration priceConfiguration,
+        @NotNull PublishedShareHolderTicketsDatabase publishedShareHolderTicketsDatabase,
+        @NotNull InternetPremiumMembersDatabase internetPremiumMembersDatabase,
+        @NotNull EventDatabase eventDatabase) {
+      this.priceConfiguration = priceConfiguration;
+      this.publishedShareHolderTicketsDatabase = publishedShareHolderTicketsDatabase;
+      this.internetPremiumMembersDatabase = internetPremiumMembersDatabase;
+      this.eventDatabase = eventDatabase;
+    }
+
+    /** Receives what is priced. Several listeners are combined with {@link PricingListener#of}. */
+    public @NotNull Builder pricingListener(@NotNull PricingListener pricingListener) {
+      this.pricingListener = pricingListener;
+      return this;
+    }
+
+    /**
+     * A discount ticket is claimed before it is applied and discounts only the first visitor it
+     * can. Tickets claimed by an earlier group are not applied, and claimed tickets no visitor
+     * could use are released again.
+     */
+    public @NotNull Builder ticketRedemptions(@NotNull TicketRedemptions ticketRedemptions) {
+      this.ticketRedemptions = ticketRedemptions;
+      return this;
+    }
+
+    /** A published shareholder ticket makes a group free only if no other group has claimed it. */
+    public @NotNull Builder shareHolderTicketClaims(
+        @NotNull ShareHolderTicketClaims shareHolderTicketClaims) {
+      this.shareHolderTicketClaims = shareHolderTicketClaims;
+      return this;
+    }
+
+    /** Groups of a shape priced before are quoted from the cache once their lookups resolve. */
+    public @NotNull Builder quoteCache(@NotNull QuoteCache quoteCache) {
+      this.quoteCache = quoteCache;
+      return this;
+    }
+
+    public @NotNull Logic build() {
+      return new Logic(this);
+    }
   }
 
   public @NotNull List<Audience> calculateAdmissionFee(@NotNull VisitorGroup visitorGroup) {
-    Price basePrice = priceConfiguration.getBasePrice();
-    Map<UUID, Price> visitorToPrice = new HashMap<>();
-    Map<UUID, List<Discount>> visitorToDiscount = new HashMap<>();
-    boolean companionDiscountAvailable = false;
-    Price eightyPercentOfBasePrice = new Price(basePrice.value() * 4 / 5);
-    Price twentyPercentOfBasePrice =
-        new Price(basePrice.value() - eightyPercentOfBasePrice.value());
-    Price halfOfBasePrice = new Price(basePrice.value() / 2);
+    return calculateAdmissionFee(visitorGroup, pricing -> pricing.apply(visitorGroup));
+  }
 
-    for (Visitor visitor : visitorGroup) {
-      UUID visitorId = visitor.id();
-      DiscountType discountTypeByVisitorProperties = visitor.discount();
-      if (discountTypeByVisitorProperties == null) {
-        if (companionDiscountAvailable) {
-          visitorToPrice.put(visitorId, eightyPercentOfBasePrice);
-          visitorToDiscount.put(
-              visitorId,
-              new ArrayList<>(
-                  List.of(
-                      new Discount(
-                          twentyPercentOfBasePrice,
-                          DiscountDescription.of("障がい者割引", DiscountTypes.DISABILITIES)))));
-          companionDiscountAvailable = false;
-        } else {
-          visitorToPrice.put(visitorId, basePrice);
-          visitorToDiscount.put(visitorId, new ArrayList<>());
+  /**
+   * Prices the group as {@link #calculateAdmissionFee(VisitorGroup)} does, but lets {@code
+   * repricing} price it or a group of the same visitors with other stamps any number of times.
+   * The lookups, the claims of tickets and the reports to the listener happen once however often
+   * it is priced, and the last group priced is the one reported.
+   */
+  @NotNull
+  List<Audience> calculateAdmissionFee(
+      @NotNull VisitorGroup visitorGroup, @NotNull Repricing repricing) {
+    AdmissionFeeCalculationEvent event = groupStarted(visitorGroup);
+    VisitorGroup[] priced = {visitorGroup};
+    List<Audience> audiences =
+        calculateAdmissionFee(
+            validate(visitorGroup),
+            pricing ->
+                repricing.price(
+                    group -> {
+                      priced[0] = group;
+                      return pricing.apply(group);
+                    }));
+    groupFinished(event, priced[0], audiences, false);
+    return audiences;
+  }
+
+  private boolean isInstrumented() {
+    return pricingListener != PricingListener.NONE;
+  }
+
+  private @NotNull AdmissionFeeCalculationEvent groupStarted(@NotNull VisitorGroup visitorGroup) {
+    AdmissionFeeCalculationEvent event = new AdmissionFeeCalculationEvent();
+    event.begin();
+    if (isInstrumented()) {
+      pricingListener.groupStarted(visitorGroup);
+      event.startedAt = System.nanoTime();
+    }
+    return event;
+  }
+
+  private void groupFinished(
+      @NotNull AdmissionFeeCalculationEvent event,
+      @NotNull VisitorGroup visitorGroup,
+      @NotNull List<Audience> audiences,
+      boolean async) {
+    event.commit(audiences, async);
+    if (!isInstrumented()) {
+      return;
+    }
+    long elapsedNanos = System.nanoTime() - event.startedAt;
+    for (Audience audience : audiences) {
+      for (Discount discount : audience.discountDetails()) {
+        DiscountKind kind = DiscountKind.ofSource(discount.description().getSource());
+        if (kind != null) {
+          pricingListener.discountApplied(kind, discount.price());
         }
-      } else {
-        if (discountTypeByVisitorProperties instanceof ShareHolderTicket s) {
-          if (publishedShareHolderTicketsDatabase.isPublishedShareHolderTicket(s.id())) {
-            for (Visitor companionVisitor : visitorGroup) {
-              visitorToPrice.put(companionVisitor.id(), new Price(0));
-              visitorToDiscount.put(
-                  companionVisitor.id(),
-                  List.of(new Discount(basePrice, DiscountDescription.of("株主優待券", s))));
-            }
-            List<Audience> result = new ArrayList<>();
-            for (Visitor companionVisitor : visitorGroup) {
-              PersonalStamp personalStamp = companionVisitor.personalStamp();
-              List<Discount> discountDetails =
-                  visitorToDiscount.computeIfAbsent(companionVisitor.id(), _ -> new ArrayList<>());
-              Audience audience =
-                  new Audience(
-                      companionVisitor.id(),
-                      personalStamp == null ? new PersonalStamp(0) : personalStamp,
-                      new Price(0),
-                      List.copyOf(discountDetails));
-              result.add(audience);
-            }
-            return List.copyOf(result);
-          } else {
-            visitorToPrice.put(visitorId, basePrice);
-            visitorToDiscount.put(visitorId, new ArrayList<>());
-          }
-        } else if (discountTypeByVisitorProperties instanceof DiscountTypes discountType) {
-          switch (discountType) {
-            case CHILD -> {
-              visitorToPrice.put(visitorId, halfOfBasePrice);
-              visitorToDiscount.put(
-                  visitorId,
-                  new ArrayList<>(
-                      List.of(
-                          new Discount(
-                              halfOfBasePrice, DiscountDescription.of("子供割引", discountType)))));
-            }
-            case DISABILITIES -> {
-              visitorToPrice.put(visitorId, eightyPercentOfBasePrice);
-              visitorToDiscount.put(
-                  visitorId,
-                  new ArrayList<>(
-                      List.of(
-                          new Discount(
-                              twentyPercentOfBasePrice,
-                              DiscountDescription.of("障がい者割引", discountType)))));
-              boolean companionFound = false;
-              for (UUID companionVisitorId : Set.copyOf(visitorToPrice.keySet())) {
-                if (basePrice.equals(visitorToPrice.get(companionVisitorId))) {
-                  companionFound = true;
-                  visitorToPrice.put(companionVisitorId, eightyPercentOfBasePrice);
-                  visitorToDiscount.put(
-                      companionVisitorId,
-                      new ArrayList<>(
-                          List.of(
-                              new Discount(
-                                  twentyPercentOfBasePrice,
-                                  DiscountDescription.of("障がい者割引", discountType)))));
-                  break;
-                }
-              }
-              if (!companionFound) {
-                companionDiscountAvailable = true;
-              }
-            }
-            case FEMALES, ELDERLIES -> {
-              LocalDate today = priceConfiguration.getToday();
-              DayOfWeek todayDayOfWeek = today.getDayOfWeek();
-              String discountTitle = discountType == DiscountTypes.FEMALES ? "女性割引" : "シニア割引";
-              if (todayDayOfWeek == DayOfWeek.WEDNESDAY
-                  && (today.getMonth() != Month.JANUARY || 3 < today.getDayOfMonth())) {
-                visitorToPrice.put(visitorId, eightyPercentOfBasePrice);
-                visitorToDiscount.put(
-                    visitorId,
-                    new ArrayList<>(
-                        List.of(
-                            new Discount(
-                                twentyPercentOfBasePrice,
-                                DiscountDescription.of(discountTitle, discountType)))));
-              } else {
-                visitorToPrice.put(visitorId, basePrice);
-                visitorToDiscount.put(visitorId, new ArrayList<>());
-              }
-            }
+      }
+    }
+    pricingListener.groupFinished(visitorGroup, audiences, elapsedNanos);
+  }
+
+  private @NotNull DatabaseLookupEvent lookupStarted() {
+    DatabaseLookupEvent event = new DatabaseLookupEvent();
+    event.begin();
+    if (isInstrumented()) {
+      event.startedAt = System.nanoTime();
+    }
+    return event;
+  }
+
+  private void lookupCompleted(
+      @NotNull DatabaseLookupEvent event,
+      @NotNull PricingListener.Lookup lookup,
+      int keys,
+      int found,
+      boolean async) {
+    if (isInstrumented()) {
+      pricingListener.lookupCompleted(lookup, keys, System.nanoTime() - event.startedAt);
+    }
+    event.commit(lookup, keys, found, async);
+  }
+
+  private <T extends Collection<?>> @NotNull CompletableFuture<T> lookupCompleted(
+      @NotNull DatabaseLookupEvent event,
+      @NotNull PricingListener.Lookup lookup,
+      int keys,
+      @NotNull CompletableFuture<T> future) {
+    if (!isInstrumented() && !event.isEnabled()) {
+      return future;
+    }
+    return future.whenComplete(
+        (found, _) -> lookupCompleted(event, lookup, keys, found == null ? 0 : found.size(), true));
+  }
+
+  /**
+   * Calculates admission fees without blocking the caller. All lookups of the group are issued at
+   * once, so the slowest lookup rather than the sum of them determines the latency.
+   */
+  public @NotNull CompletableFuture<List<Audience>> calculateAdmissionFeeAsync(
+      @NotNull VisitorGroup visitorGroup) {
+    AdmissionFeeCalculationEvent event = groupStarted(visitorGroup);
+    LookupKeys keys = LookupKeys.of(visitorGroup);
+    CompletableFuture<Set<UUID>> publishedShareHolderTickets =
+        lookupCompleted(
+            lookupStarted(),
+            PricingListener.Lookup.PUBLISHED_SHARE_HOLDER_TICKETS,
+            keys.shareHolderTicketIds().size(),
+            publishedShareHolderTicketsDatabase.publishedShareHolderTicketsAsync(
+                keys.shareHolderTicketIds()));
+    CompletableFuture<Set<UUID>> validMemberIds =
+        lookupCompleted(
+            lookupStarted(),
+            PricingListener.Lookup.INTERNET_PREMIUM_MEMBERS,
+            keys.memberIds().size(),
+            internetPremiumMembersDatabase.validMemberIdsAsync(keys.memberIds()));
+    CompletableFuture<Set<DiscountTicket>> validDiscountTickets =
+        lookupCompleted(
+            lookupStarted(),
+            PricingListener.Lookup.DISCOUNT_TICKETS,
+            keys.discountTickets().size(),
+            eventDatabase.validDiscountTicketsAsync(keys.discountTickets()));
+    return CompletableFuture.allOf(
+            publishedShareHolderTickets, validMemberIds, validDiscountTickets)
+        .thenApply(
+            _ -> {
+              List<Audience> audiences =
+                  calculateAdmissionFee(
+                      visitorGroup,
+                      new ValidatedDiscounts(
+                          claimShareHolderTicket(visitorGroup, publishedShareHolderTickets.join()),
+                          validMemberIds.join(),
+                          validDiscountTickets.join()));
+              groupFinished(event, visitorGroup, audiences, true);
+              return audiences;
+            });
+  }
+
+  private record LookupKeys(
+      @NotNull Set<UUID> shareHolderTicketIds,
+      @NotNull Set<UUID> memberIds,
+      @NotNull Set<DiscountTicket> discountTickets) {
+
+    static @NotNull LookupKeys of(@NotNull VisitorGroup visitorGroup) {
+      Set<UUID> shareHolderTicketIds = new HashSet<>();
+      Set<UUID> memberIds = new HashSet<>();
+      Set<DiscountTicket> discountTickets = new HashSet<>();
+      for (Visitor visitor : visitorGroup) {
+        if (visitor.discount() instanceof ShareHolderTicket s) {
+          shareHolderTicketIds.add(s.id());
+        }
+        for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+          switch (optionalDiscount) {
+            case InternetPremiumMember internetPremiumMember ->
+                memberIds.add(internetPremiumMember.userId());
+            case DiscountTicket discountTicket -> discountTickets.add(discountTicket);
+            default -> {}
           }
         }
       }
+      return new LookupKeys(shareHolderTicketIds, memberIds, discountTickets);
     }
+  }
+
+  /**
+   * Resolves every shareholder ticket, member id and discount ticket in the group with at most one
+   * bulk lookup per database. The member and event databases are skipped when a published
+   * shareholder ticket makes the whole group free.
+   */
+  @NotNull
+  ValidatedDiscounts validate(@NotNull VisitorGroup visitorGroup) {
+    LookupKeys keys = LookupKeys.of(visitorGroup);
+    Set<UUID> publishedShareHolderTickets = Set.of();
+    if (!keys.shareHolderTicketIds().isEmpty()) {
+      DatabaseLookupEvent event = lookupStarted();
+      publishedShareHolderTickets =
+          publishedShareHolderTicketsDatabase.publishedShareHolderTickets(
+              keys.shareHolderTicketIds());
+      lookupCompleted(
+          event,
+          PricingListener.Lookup.PUBLISHED_SHARE_HOLDER_TICKETS,
+          keys.shareHolderTicketIds().size(),
+          publishedShareHolderTickets.size(),
+          false);
+      publishedShareHolderTickets =
+          claimShareHolderTicket(visitorGroup, publishedShareHolderTickets);
+    }
+    if (!publishedShareHolderTickets.isEmpty()) {
+      return new ValidatedDiscounts(publishedShareHolderTickets, Set.of(), Set.of());
+    }
+    Set<UUID> validMemberIds = Set.of();
+    if (!keys.memberIds().isEmpty()) {
+      DatabaseLookupEvent event = lookupStarted();
+      validMemberIds = internetPremiumMembersDatabase.validMemberIds(keys.memberIds());
+      lookupCompleted(
+          event,
+          PricingListener.Lookup.INTERNET_PREMIUM_MEMBERS,
+          keys.memberIds().size(),
+          validMemberIds.size(),
+          false);
+    }
+    Set<DiscountTicket> validDiscountTickets = Set.of();
+    if (!keys.discountTickets().isEmpty()) {
+      DatabaseLookupEvent event = lookupStarted();
+      validDiscountTickets = eventDatabase.validDiscountTickets(keys.discountTickets());
+      lookupCompleted(
+          event,
+          PricingListener.Lookup.DISCOUNT_TICKETS,
+          keys.discountTickets().size(),
+          validDiscountTickets.size(),
+          false);
+    }
+    return new ValidatedDiscounts(
+        publishedShareHolderTickets, validMemberIds, validDiscountTickets);
+  }
+
+  /**
+   * Narrows the published tickets down to the one making the group free, which is the first the
+   * group can claim. Left as they are without {@link ShareHolderTicketClaims}.
+   */
+  private @NotNull Set<UUID> claimShareHolderTicket(
+      @NotNull VisitorGroup visitorGroup, @NotNull Set<UUID> publishedShareHolderTickets) {
+    ShareHolderTicketClaims claims = shareHolderTicketClaims;
+    if (claims == null || publishedShareHolderTickets.isEmpty()) {
+      return publishedShareHolderTickets;
+    }
+    Set<UUID> visitorIds = ShareHolderTicketClaims.visitorIdsOf(visitorGroup);
     for (Visitor visitor : visitorGroup) {
-      PersonalStamp personalStamp = visitor.personalStamp();
-      if (personalStamp != null && personalStamp.count() == 10) {
-        Price price = visitorToPrice.get(visitor.id());
-        if (price != null && halfOfBasePrice.value() < price.value()) {
-          Price discountedPrice = new Price(price.value() - 200);
-          boolean fullyDiscounted = halfOfBasePrice.value() < discountedPrice.value();
-          visitorToPrice.put(visitor.id(), fullyDiscounted ? discountedPrice : halfOfBasePrice);
-          visitorToDiscount
-              .computeIfAbsent(visitor.id(), _ -> new ArrayList<>())
-              .add(
-                  new Discount(
-                      fullyDiscounted
-                          ? new Price(200)
-                          : new Price(price.value() - halfOfBasePrice.value()),
-                      DiscountDescription.of("スタンプ割引", personalStamp)));
+      if (visitor.discount() instanceof ShareHolderTicket s
+          && publishedShareHolderTickets.contains(s.id())
+          && claims.claim(s.id(), visitorIds)) {
+        return Set.of(s.id());
+      }
+    }
+    return Set.of();
+  }
+
+  /**
+   * Returns the snapshot for the current base price and day, replacing the cached one when either
+   * has changed since it was built.
+   */
+  @NotNull
+  PricingSnapshot pricingSnapshot() {
+    Price basePrice = priceConfiguration.getBasePrice();
+    LocalDate today = priceConfiguration.getToday();
+    PricingSnapshot snapshot = pricingSnapshot;
+    if (snapshot == null || !snapshot.isFor(basePrice, today)) {
+      snapshot = PricingSnapshot.of(basePrice, today);
+      pricingSnapshot = snapshot;
+    }
+    return snapshot;
+  }
+
+  @NotNull
+  List<Audience> calculateAdmissionFee(
+      @NotNull VisitorGroup visitorGroup, @NotNull ValidatedDiscounts validatedDiscounts) {
+    return calculateAdmissionFee(validatedDiscounts, pricing -> pricing.apply(visitorGroup));
+  }
+
+  /**
+   * Claims the valid discount tickets once, lets every pricing use all of them, and releases those
+   * the last pricing did not use.
+   */
+  private @NotNull List<Audience> calculateAdmissionFee(
+      @NotNull ValidatedDiscounts validatedDiscounts, @NotNull Repricing repricing) {
+    TicketRedemptions redemptions = ticketRedemptions;
+    if (redemptions == null || validatedDiscounts.validDiscountTickets().isEmpty()) {
+      return repricing.price(group -> price(group, validatedDiscounts));
+    }
+    Set<DiscountTicket> claimed = redemptions.claimAll(validatedDiscounts.validDiscountTickets());
+    Set<DiscountTicket> unused = new HashSet<>(claimed);
+    List<Audience> audiences;
+    try {
+      audiences =
+          repricing.price(
+              group -> {
+                unused.addAll(claimed);
+                return price(
+                    group,
+                    new ValidatedDiscounts(
+                        validatedDiscounts.publishedShareHolderTickets(),
+                        validatedDiscounts.validMemberIds(),
+                        unused,
+                        true));
+              });
+    } catch (RuntimeException e) {
+      redemptions.releaseAll(claimed);
+      throw e;
+    }
+    redemptions.releaseAll(unused);
+    return audiences;
+  }
+
+  private @NotNull List<Audience> price(
+      @NotNull VisitorGroup visitorGroup, @NotNull ValidatedDiscounts validatedDiscounts) {
+    PricingSnapshot snapshot = pricingSnapshot();
+    QuoteCache cache = quoteCache;
+    return cache == null
+        ? price(visitorGroup, validatedDiscounts, snapshot)
+        : cache.quote(
+            snapshot,
+            visitorGroup,
+            validatedDiscounts,
+            () -> price(visitorGroup, validatedDiscounts, snapshot));
+  }
+
+  private @NotNull List<Audience> price(
+      @NotNull VisitorGroup visitorGroup,
+      @NotNull ValidatedDiscounts validatedDiscounts,
+      @NotNull PricingSnapshot snapshot) {
+    PricingScratch scratch = PricingScratch.acquire();
+    try {
+      int size = scratch.load(visitorGroup);
+      Visitor[] visitors = scratch.visitors;
+      for (int index = 0; index < size; index++) {
+        if (visitors[index].discount() instanceof ShareHolderTicket s
+            && validatedDiscounts.isPublishedShareHolderTicket(s.id())) {
+          return shareHolderAudiences(scratch, snapshot, s);
         }
       }
-      for (OptionalDiscount.Offered discountMethod : visitorGroup.allOfferedOptionalDiscounts()) {
-        if (!discountMethod.canApplyTo(visitor)) {
-          continue;
+      priceByVisitorProperties(scratch, snapshot);
+      OptionalDiscountIndex discountIndex = visitorGroup.optionalDiscountIndex();
+      int[] forAll = effectiveForAllDiscounts(discountIndex, validatedDiscounts);
+      PriceTable priceTable = priceTable(snapshot);
+      int forAllCode = PriceTable.forAllOf(discountIndex, forAll);
+      OptionalDiscount first =
+          forAll.length < 1 ? null : discountIndex.offered[forAll[0]].discount();
+      OptionalDiscount second =
+          forAll.length < 2 ? null : discountIndex.offered[forAll[1]].discount();
+      Audience[] audiences = new Audience[size];
+      for (int index = 0; index < size; index++) {
+        if (PriceTable.covers(visitors[index])) {
+          audiences[index] =
+              priceTable.audienceOf(
+                  visitors[index], scratch.discountKinds[index], forAllCode, first, second);
+        } else {
+          applyOptionalDiscounts(
+              scratch, snapshot, validatedDiscounts, discountIndex, forAll, index);
+          audiences[index] = audienceOf(scratch, snapshot, index);
         }
-        OptionalDiscount optionalDiscount = discountMethod.discount();
-        List<Discount> discountList =
-            visitorToDiscount.computeIfAbsent(visitor.id(), _ -> new ArrayList<>());
-        if (discountList.stream()
-            .map(u -> u.description().getSource())
-            .map(Object::getClass)
-            .anyMatch(c -> c.isInstance(optionalDiscount))) {
-          continue;
+      }
+      return List.of(audiences);
+    } finally {
+      scratch.release();
+    }
+  }
+
+  /** Returns the table for the snapshot, building it when the snapshot has been replaced. */
+  @NotNull
+  PriceTable priceTable(@NotNull PricingSnapshot snapshot) {
+    PriceTable table = priceTable;
+    if (table == null || table.snapshot != snapshot) {
+      table = PriceTable.of(snapshot);
+      priceTable = table;
+    }
+    return table;
+  }
+
+  static @NotNull Audience audienceOf(
+      @NotNull PricingScratch scratch, @NotNull PricingSnapshot snapshot, int index) {
+    Visitor visitor = scratch.visitors[index];
+    return new Audience(
+        visitor.id(),
+        nextPersonalStamp(visitor),
+        snapshot.price(scratch.prices[index]),
+        scratch.discountList(index));
+  }
+
+  /** Stamp of the visitor after this visit, starting over from 1 after the tenth. */
+  static @NotNull PersonalStamp nextPersonalStamp(@NotNull Visitor visitor) {
+    PersonalStamp currentPersonalStamp = visitor.personalStamp();
+    return currentPersonalStamp == null || currentPersonalStamp.count() == 10
+        ? PersonalStamps.of(1)
+        : PersonalStamps.of(currentPersonalStamp.count() + 1);
+  }
+
+  /** Stamp of the visitor after a visit which is not counted. */
+  static @NotNull PersonalStamp keptPersonalStamp(@NotNull Visitor visitor) {
+    PersonalStamp personalStamp = visitor.personalStamp();
+    return personalStamp == null ? PersonalStamps.of(0) : personalStamp;
+  }
+
+  private static @NotNull List<Audience> shareHolderAudiences(
+      @NotNull PricingScratch scratch,
+      @NotNull PricingSnapshot snapshot,
+      @NotNull ShareHolderTicket shareHolderTicket) {
+    List<Discount> discountDetails = shareHolderDiscountDetails(snapshot, shareHolderTicket);
+    Audience[] audiences = new Audience[scratch.size];
+    for (int index = 0; index < scratch.size; index++) {
+      audiences[index] = shareHolderAudience(scratch.visitors[index], discountDetails);
+    }
+    return List.of(audiences);
+  }
+
+  static @NotNull List<Discount> shareHolderDiscountDetails(
+      @NotNull PricingSnapshot snapshot, @NotNull ShareHolderTicket shareHolderTicket) {
+    return List.of(
+        new Discount(
+            snapshot.basePrice(),
+            DiscountDescription.of(SHARE_HOLDER_TICKET_TEXT, shareHolderTicket)));
+  }
+
+  /** Audience in a group made free by a shareholder ticket; the personal stamp is not counted. */
+  static @NotNull Audience shareHolderAudience(
+      @NotNull Visitor visitor, @NotNull List<Discount> discountDetails) {
+    return new Audience(
+        visitor.id(),
+        keptPersonalStamp(visitor),
+        PricingSnapshot.ZERO,
+        discountDetails);
+  }
+
+  /**
+   * Prices every visitor by their own discount type. A disability visitor makes the earliest
+   * visitor still at the base price their companion; without one, the next visitor without a
+   * discount type becomes the companion.
+   */
+  static void priceByVisitorProperties(
+      @NotNull PricingScratch scratch, @NotNull PricingSnapshot snapshot) {
+    int basePrice = snapshot.basePrice().value();
+    int eightyPercentOfBasePrice = snapshot.eightyPercentOfBasePrice().value();
+    int[] fullPriceQueue = scratch.fullPriceQueue;
+    int queueHead = 0;
+    int queueTail = 0;
+    boolean companionDiscountAvailable = false;
+    for (int index = 0; index < scratch.size; index++) {
+      DiscountType discountTypeByVisitorProperties = scratch.visitors[index].discount();
+      if (discountTypeByVisitorProperties == null) {
+        if (companionDiscountAvailable) {
+          scratch.price(
+              index,
+              eightyPercentOfBasePrice,
+              snapshot.disabilityDiscount(),
+              DiscountKind.DISABILITIES);
+          companionDiscountAvailable = false;
+        } else {
+          scratch.price(index, basePrice);
+          fullPriceQueue[queueTail++] = index;
         }
-        switch (optionalDiscount) {
-          case ShoppingReceipt receipt -> {
-            Price currentPrice = visitorToPrice.get(visitor.id());
-            if (currentPrice != null
-                && halfOfBasePrice.value() < currentPrice.value()
-                && 5000 <= receipt.totalPayment()) {
-              Price discountedPrice = new Price(currentPrice.value() - 100);
-              boolean higherThanHalfOfBasePrice = halfOfBasePrice.value() < discountedPrice.value();
-              visitorToPrice.put(
-                  visitor.id(), higherThanHalfOfBasePrice ? discountedPrice : halfOfBasePrice);
-              discountList.add(
-                  new Discount(
-                      higherThanHalfOfBasePrice
-                          ? new Price(100)
-                          : new Price(currentPrice.value() - halfOfBasePrice.value()),
-                      DiscountDescription.of("商品購入割引", optionalDiscount)));
+      } else if (discountTypeByVisitorProperties instanceof ShareHolderTicket) {
+        scratch.price(index, basePrice);
+        fullPriceQueue[queueTail++] = index;
+      } else if (discountTypeByVisitorProperties instanceof DiscountTypes discountType) {
+        switch (discountType) {
+          case CHILD ->
+              scratch.price(
+                  index,
+                  snapshot.halfOfBasePrice().value(),
+                  snapshot.childDiscount(),
+                  DiscountKind.CHILD);
+          case DISABILITIES -> {
+            scratch.price(
+                index,
+                eightyPercentOfBasePrice,
+                snapshot.disabilityDiscount(),
+                DiscountKind.DISABILITIES);
+            if (queueHead < queueTail) {
+              scratch.price(
+                  fullPriceQueue[queueHead++],
+                  eightyPercentOfBasePrice,
+                  snapshot.disabilityDiscount(),
+                  DiscountKind.DISABILITIES);
+            } else {
+              companionDiscountAvailable = true;
             }
           }
-          case InternetPremiumMember internetPremiumMember -> {
-            Price currentPrice = visitorToPrice.get(visitor.id());
-            if (currentPrice != null
-                && halfOfBasePrice.value() < currentPrice.value()
-                && internetPremiumMembersDatabase.isValidMemberId(internetPremiumMember.userId())) {
-              Price discountedPrice = new Price(currentPrice.value() - 200);
-              boolean higherThanHalfOfBasePrice = halfOfBasePrice.value() < discountedPrice.value();
-              visitorToPrice.put(
-                  visitor.id(), higherThanHalfOfBasePrice ? discountedPrice : halfOfBasePrice);
-              discountList.add(
-                  new Discount(
-                      higherThanHalfOfBasePrice
-                          ? new Price(200)
-                          : new Price(currentPrice.value() - halfOfBasePrice.value()),
-                      DiscountDescription.of("インターネットプレミアム会員割引", optionalDiscount)));
+          case FEMALES, ELDERLIES -> {
+            if (snapshot.femaleAndElderlyDiscountAvailable()) {
+              scratch.price(
+                  index,
+                  eightyPercentOfBasePrice,
+                  discountType == DiscountTypes.FEMALES
+                      ? snapshot.femaleDiscount()
+                      : snapshot.elderlyDiscount(),
+                  DiscountKind.of(discountType));
+            } else {
+              scratch.price(index, basePrice);
+              fullPriceQueue[queueTail++] = index;
             }
           }
-          case DiscountTicket discountTicket -> {
-            Price currentPrice = visitorToPrice.get(visitor.id());
-            if (eventDatabase.isValidDiscountTicket(discountTicket)
-                && currentPrice != null
-                && halfOfBasePrice.value() < currentPrice.value()
-                && discountTicket.price().value() < currentPrice.value()) {
-              Price discountedPrice =
-                  new Price(currentPrice.value() - discountTicket.price().value());
-              boolean higherThanHalfOfBasePrice = halfOfBasePrice.value() < discountedPrice.value();
-              visitorToPrice.put(
-                  visitor.id(), higherThanHalfOfBasePrice ? discountedPrice : halfOfBasePrice);
-              discountList.add(
-                  new Discount(
-                      higherThanHalfOfBasePrice
-                          ? discountTicket.price()
-                          : new Price(currentPrice.value() - halfOfBasePrice.value()),
-                      DiscountDescription.of("割引チケット", discountTicket)));
-            }
-          }
-          default -> {}
         }
       }
     }
-    List<Audience> audienceList = new ArrayList<>();
-    for (Visitor visitor : visitorGroup) {
-      UUID visitorId = visitor.id();
-      PersonalStamp currentPersonalStamp = visitor.personalStamp();
-      PersonalStamp newPersonalStamp =
-          currentPersonalStamp == null || currentPersonalStamp.count() == 10
-              ? new PersonalStamp(1)
-              : new PersonalStamp(currentPersonalStamp.count() + 1);
-      Price finalPrice = visitorToPrice.get(visitorId);
-      if (finalPrice == null) {
-        //noinspection preview
-        throw new IllegalStateException(
-            STR."error \{visitorId} not found in \{visitorToPrice.keySet()}");
+  }
+
+  /**
+   * Picks, for each kind of discount offered to everyone, the first one that gives anything. Later
+   * ones of the same kind never apply, as only one discount of a kind is given to a visitor and
+   * prices only go down, so they are left out instead of being tried for every visitor.
+   */
+  static int @NotNull [] effectiveForAllDiscounts(
+      @NotNull OptionalDiscountIndex discountIndex,
+      @NotNull ValidatedDiscounts validatedDiscounts) {
+    int shoppingReceipt = -1;
+    int internetPremiumMember = -1;
+    for (int position : discountIndex.forAll) {
+      switch (discountIndex.offered[position].discount()) {
+        case ShoppingReceipt receipt -> {
+          if (shoppingReceipt < 0 && isEffective(receipt)) {
+            shoppingReceipt = position;
+          }
+        }
+        case InternetPremiumMember member -> {
+          if (internetPremiumMember < 0 && validatedDiscounts.isValidMemberId(member.userId())) {
+            internetPremiumMember = position;
+          }
+        }
+        default -> {}
       }
-      List<Discount> discountDetails = visitorToDiscount.get(visitorId);
-      if (discountDetails == null) {
-        //noinspection preview
-        throw new IllegalStateException(
-            STR."error \{visitorId} not found in \{visitorToDiscount.keySet()}");
+    }
+    if (shoppingReceipt < 0) {
+      return internetPremiumMember < 0 ? new int[0] : new int[] {internetPremiumMember};
+    } else if (internetPremiumMember < 0) {
+      return new int[] {shoppingReceipt};
+    }
+    return new int[] {
+      Math.min(shoppingReceipt, internetPremiumMember),
+      Math.max(shoppingReceipt, internetPremiumMember)
+    };
+  }
+
+  /** Whether the receipt is large enough to give a discount. */
+  static boolean isEffective(@NotNull ShoppingReceipt receipt) {
+    return 5000 <= receipt.totalPayment();
+  }
+
+  /**
+   * Applies the stamp of the visitor, then the discounts for everyone and the personal discounts of
+   * the visitor, merged back into the order they were offered in.
+   */
+  static void applyOptionalDiscounts(
+      @NotNull PricingScratch scratch,
+      @NotNull PricingSnapshot snapshot,
+      @NotNull ValidatedDiscounts validatedDiscounts,
+      @NotNull OptionalDiscountIndex discountIndex,
+      int @NotNull [] forAll,
+      int index) {
+    applyPersonalStamp(scratch, snapshot, index);
+    int[] personal = discountIndex.personalPositionsOf(scratch.visitors[index]);
+    int nextForAll = 0;
+    int nextPersonal = 0;
+    while (nextForAll < forAll.length || nextPersonal < personal.length) {
+      int position =
+          nextPersonal == personal.length
+                  || (nextForAll < forAll.length && forAll[nextForAll] < personal[nextPersonal])
+              ? forAll[nextForAll++]
+              : personal[nextPersonal++];
+      applyOptionalDiscount(
+          scratch, snapshot, validatedDiscounts, discountIndex.offered[position].discount(), index);
+    }
+  }
+
+  /** Applies the stamp of the visitor if it is full. */
+  static void applyPersonalStamp(
+      @NotNull PricingScratch scratch, @NotNull PricingSnapshot snapshot, int index) {
+    PersonalStamp personalStamp = scratch.visitors[index].personalStamp();
+    if (personalStamp != null && personalStamp.count() == 10) {
+      applyDiscount(
+          scratch,
+          index,
+          snapshot.halfOfBasePrice().value(),
+          PricingSnapshot.TWO_HUNDRED,
+          DiscountKind.PERSONAL_STAMP,
+          PERSONAL_STAMP_TEXT,
+          personalStamp);
+    }
+  }
+
+  /**
+   * Applies one optional discount to the visitor unless it already has one of the kind. Stamps are
+   * left to {@link #applyPersonalStamp}.
+   */
+  static void applyOptionalDiscount(
+      @NotNull PricingScratch scratch,
+      @NotNull PricingSnapshot snapshot,
+      @NotNull ValidatedDiscounts validatedDiscounts,
+      @NotNull OptionalDiscount optionalDiscount,
+      int index) {
+    DiscountKind kind = DiscountKind.of(optionalDiscount);
+    if (scratch.hasDiscount(index, kind)) {
+      return;
+    }
+    int halfOfBasePrice = snapshot.halfOfBasePrice().value();
+    switch (optionalDiscount) {
+      case ShoppingReceipt receipt ->
+          applyDiscount(
+              scratch,
+              index,
+              halfOfBasePrice,
+              PricingSnapshot.ONE_HUNDRED,
+              kind,
+              SHOPPING_RECEIPT_TEXT,
+              receipt);
+      case InternetPremiumMember internetPremiumMember ->
+          applyDiscount(
+              scratch,
+              index,
+              halfOfBasePrice,
+              PricingSnapshot.TWO_HUNDRED,
+              kind,
+              INTERNET_PREMIUM_MEMBER_TEXT,
+              internetPremiumMember);
+      case DiscountTicket discountTicket -> {
+        // used up only if it takes something off
+        if (discountTicket.price().value() < scratch.prices[index]
+            && halfOfBasePrice < scratch.prices[index]
+            && validatedDiscounts.useDiscountTicket(discountTicket)) {
+          applyDiscount(
+              scratch,
+              index,
+              halfOfBasePrice,
+              discountTicket.price(),
+              kind,
+              DISCOUNT_TICKET_TEXT,
+              discountTicket);
+        }
       }
-      Audience ad = new Audience(visitorId, newPersonalStamp, finalPrice, discountDetails);
-      audienceList.add(ad);
+      default -> {}
+    }
+  }
+
+  /** Takes {@code amount} off the price of the visitor, but never below half of the base price. */
+  private static void applyDiscount(
+      @NotNull PricingScratch scratch,
+      int index,
+      int halfOfBasePrice,
+      @NotNull Price amount,
+      @NotNull DiscountKind kind,
+      @NotNull String text,
+      @NotNull Object source) {
+    int currentPrice = scratch.prices[index];
+    if (currentPrice <= halfOfBasePrice) {
+      return;
+    }
+    int discountedPrice = currentPrice - amount.value();
+    boolean higherThanHalfOfBasePrice = halfOfBasePrice < discountedPrice;
+    scratch.discount(
+        index,
+        higherThanHalfOfBasePrice ? discountedPrice : halfOfBasePrice,
+        new Discount(
+            higherThanHalfOfBasePrice ? amount : new Price(currentPrice - halfOfBasePrice),
+            DiscountDescription.of(text, source)),
+        kind);
+  }
+
+  public @NotNull List<@NotNull AdmissionFeeResult> calculateAdmissionFees(
+      @NotNull Collection<@NotNull VisitorGroup> visitorGroups) {
+    return calculateAdmissionFees(visitorGroups.stream(), ForkJoinPool.commonPool());
+  }
+
+  public @NotNull List<@NotNull AdmissionFeeResult> calculateAdmissionFees(
+      @NotNull Collection<@NotNull VisitorGroup> visitorGroups, @NotNull Executor executor) {
+    return calculateAdmissionFees(visitorGroups.stream(), executor);
+  }
+
+  /**
+   * Calculates admission fees of all groups on the given executor. Results are returned in the
+   * encounter order of {@code visitorGroups}, and a group which fails is reported as {@link
+   * AdmissionFeeResult.Failed} without affecting the other groups.
+   */
+  public @NotNull List<@NotNull AdmissionFeeResult> calculateAdmissionFees(
+      @NotNull Stream<@NotNull VisitorGroup> visitorGroups, @NotNull Executor executor) {
+    List<CompletableFuture<AdmissionFeeResult>> futures =
+        visitorGroups.map(visitorGroup -> submit(visitorGroup, executor)).toList();
+    List<AdmissionFeeResult> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<AdmissionFeeResult> future : futures) {
+      results.add(future.join());
+    }
+    return List.copyOf(results);
+  }
+
+  private @NotNull CompletableFuture<AdmissionFeeResult> submit(
+      @NotNull VisitorGroup visitorGroup, @NotNull Executor executor) {
+    try {
+      return CompletableFuture.<AdmissionFeeResult>supplyAsync(
+              () ->
+                  new AdmissionFeeResult.Calculated(
+                      visitorGroup, calculateAdmissionFee(visitorGroup)),
+              executor)
+          .exceptionally(
+              e ->
+                  new AdmissionFeeResult.Failed(
+                      visitorGroup,
+                      e instanceof CompletionException && e.getCause() != null
+                          ? e.getCause()
+                          : e));
+    } catch (RuntimeException e) {
+      return CompletableFuture.completedFuture(new AdmissionFeeResult.Failed(visitorGroup, e));
     }
-    return List.copyOf(audienceList);
   }
 }
@@ -0,0 +1,381 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link PublishedShareHolderTicketsDatabase} answering from memory-mapped files, so that a new JVM
+ * is ready as soon as the files are mapped.
+ *
+ * <p>The directory holds a base file of tickets sorted by their UUID halves, which is binary
+ * searched in place, and a fixed-size delta file to which newly published tickets are appended.
+ * Once the delta is half full it is merged into a new base file in the background; both files are
+ * replaced by renaming, so lookups holding the previous mappings keep working.
+ *
+ * <p>A failure of the background compaction is rethrown by the next {@link #publish} or by {@link
+ * #close}, which waits for a compaction still running.
+ *
+ * <p>Both files start with a 16 byte header of a magic number, a format version and the number of
+ * tickets, followed by the tickets as pairs of big-endian {@code long}s.
+ */
+public class MappedPublishedShareHolderTicketsDatabase
+    implements PublishedShareHolderTicketsDatabase, AutoCloseable {
+
+  static final int MAGIC = 0x544b5453; // "TKTS"
+  static final int VERSION = 1;
+  static final long HEADER_BYTES = 16;
+  static final long TICKET_BYTES = 16;
+  static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.BIG_ENDIAN);
+  static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.BIG_ENDIAN);
+  static final String BASE_FILE = "tickets.base";
+  static final String DELTA_FILE = "tickets.delta";
+
+  static final Comparator<UUID> ORDER =
+      Comparator.comparingLong(UUID::getMostSignificantBits)
+          .thenComparingLong(UUID::getLeastSignificantBits);
+
+  record Snapshot(
+      @NotNull MemorySegment base,
+      long baseCount,
+      @NotNull MemorySegment delta,
+      long deltaCount) {}
+
+  final @NotNull Path directory;
+  final int deltaCapacity;
+  final @NotNull Executor compactionExecutor;
+  volatile @NotNull Snapshot snapshot;
+  boolean compactionScheduled;
+
+  /** The last compaction scheduled in the background, guarded by {@code this}. */
+  @Nullable CompletableFuture<Void> compaction;
+
+  private MappedPublishedShareHolderTicketsDatabase(
+      @NotNull Path directory,
+      int deltaCapacity,
+      @NotNull Executor compactionExecutor,
+      @NotNull Snapshot snapshot) {
+    this.directory = directory;
+    this.deltaCapacity = deltaCapacity;
+    this.compactionExecutor = compactionExecutor;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Maps the ticket files in {@code directory}, creating empty ones if missing.
+   *
+   * @param deltaCapacity - tickets a new delta file can hold; an existing one keeps its capacity.
+   */
+  public static @NotNull MappedPublishedShareHolderTicketsDatabase open(
+      @NotNull Path directory, int deltaCapacity, @NotNull Executor compactionExecutor)
+      throws IOException {
+    if (deltaCapacity <= 0) {
+      throw new IllegalArgumentException(STR."delta capacity must be positive: \{deltaCapacity}");
+    }
+    Files.createDirectories(directory);
+    Path base = directory.resolve(BASE_FILE);
+    if (Files.notExists(base)) {
+      writeBase(base, new UUID[0]);
+    }
+    Path delta = directory.resolve(DELTA_FILE);
+    if (Files.notExists(delta)) {
+      createDelta(delta, deltaCapacity);
+    }
+    MemorySegment baseSegment = map(base, FileChannel.MapMode.READ_ONLY);
+    MemorySegment deltaSegment = map(delta, FileChannel.MapMode.READ_WRITE);
+    long capacity = (deltaSegment.byteSize() - HEADER_BYTES) / TICKET_BYTES;
+    if (capacity <= 0) {
+      throw new IOException(STR."\{delta} has no room for tickets");
+    }
+    return new MappedPublishedShareHolderTicketsDatabase(
+        directory,
+        (int) capacity,
+        compactionExecutor,
+        new Snapshot(baseSegment, count(baseSegment), deltaSegment, count(deltaSegment)));
+  }
+
+  /** Writes a base file holding {@code tickets}, e.g. for the tickets of a new fiscal year. */
+  public static void createBase(
+      @NotNull Path directory, @NotNull Collection<@NotNull UUID> tickets) throws IOException {
+    Files.createDirectories(directory);
+    writeBase(directory.resolve(BASE_FILE), tickets.toArray(UUID[]::new));
+  }
+
+  @Override
+  public boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+    long most = ticketId.getMostSignificantBits();
+    long least = ticketId.getLeastSignificantBits();
+    Snapshot current = snapshot;
+    return binarySearch(current.base(), current.baseCount(), most, least)
+        || scan(current.delta(), current.deltaCount(), most, least);
+  }
+
+  /**
+   * Appends newly published tickets to the delta file and schedules a compaction once it is half
+   * full. Compacts synchronously when the delta has no room left.
+   *
+   * @throws IOException also if the last compaction in the background failed.
+   */
+  public synchronized void publish(@NotNull Collection<@NotNull UUID> tickets)
+      throws IOException {
+    rethrowFailedCompaction();
+    for (UUID ticket : tickets) {
+      if (snapshot.deltaCount() == deltaCapacity) {
+        compact();
+      }
+      Snapshot current = snapshot;
+      long offset = HEADER_BYTES + current.deltaCount() * TICKET_BYTES;
+      current.delta().set(LONG, offset, ticket.getMostSignificantBits());
+      current.delta().set(LONG, offset + Long.BYTES, ticket.getLeastSignificantBits());
+      snapshot =
+          new Snapshot(
+              current.base(), current.baseCount(), current.delta(), current.deltaCount() + 1);
+    }
+    Snapshot current = snapshot;
+    current.delta().set(LONG, 8, current.deltaCount());
+    current.delta().force();
+    if (deltaCapacity / 2 <= current.deltaCount() && !compactionScheduled) {
+      compactionScheduled = true;
+      compaction = CompletableFuture.runAsync(this::compactInBackground, compactionExecutor);
+    }
+  }
+
+  private void rethrowFailedCompaction() throws IOException {
+    CompletableFuture<Void> failed = compaction;
+    if (failed == null || !failed.isCompletedExceptionally()) {
+      return;
+    }
+    compaction = null;
+    Throwable cause = failed.exceptionNow();
+    throw new IOException(
+        "compaction in the background failed",
+        cause instanceof UncheckedIOException unchecked ? unchecked.getCause() : cause);
+  }
+
+  private void compactInBackground() {
+    try {
+      compact();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Merges the delta into a new base file and starts over with an empty delta. */
+  public synchronized void compact() throws IOException {
+    compactionScheduled = false;
+    Snapshot current = snapshot;
+    if (current.deltaCount() == 0) {
+      return;
+    }
+    UUID[] delta = new UUID[(int) current.deltaCount()];
+    for (int i = 0; i < delta.length; i++) {
+      long offset = HEADER_BYTES + i * TICKET_BYTES;
+      delta[i] =
+          new UUID(
+              current.delta().get(LONG, offset), current.delta().get(LONG, offset + Long.BYTES));
+    }
+    Arrays.sort(delta, ORDER);
+
+    Path base = directory.resolve(BASE_FILE);
+    Path newBase = directory.resolve(BASE_FILE + ".tmp");
+    long baseCount = current.baseCount();
+    long maxCount = baseCount + delta.length;
+    long written = 0;
+    try (FileChannel channel =
+            FileChannel.open(
+                newBase,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Arena arena = Arena.ofConfined()) {
+      MemorySegment target =
+          channel.map(
+              FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + maxCount * TICKET_BYTES, arena);
+      long lastMost = 0;
+      long lastLeast = 0;
+      long b = 0;
+      int d = 0;
+      while (b < baseCount || d < delta.length) {
+        long baseOffset = HEADER_BYTES + b * TICKET_BYTES;
+        boolean fromBase =
+            d == delta.length
+                || b < baseCount
+                    && compare(
+                            current.base().get(LONG, baseOffset),
+                            current.base().get(LONG, baseOffset + Long.BYTES),
+                            delta[d].getMostSignificantBits(),
+                            delta[d].getLeastSignificantBits())
+                        <= 0;
+        long most;
+        long least;
+        if (fromBase) {
+          most = current.base().get(LONG, baseOffset);
+          least = current.base().get(LONG, baseOffset + Long.BYTES);
+          b++;
+        } else {
+          most = delta[d].getMostSignificantBits();
+          least = delta[d].getLeastSignificantBits();
+          d++;
+        }
+        if (written != 0 && most == lastMost && least == lastLeast) {
+          continue;
+        }
+        long offset = HEADER_BYTES + written * TICKET_BYTES;
+        target.set(LONG, offset, most);
+        target.set(LONG, offset + Long.BYTES, least);
+        lastMost = most;
+        lastLeast = least;
+        written++;
+      }
+      writeHeader(target, written);
+      target.force();
+    }
+    try (FileChannel channel = FileChannel.open(newBase, StandardOpenOption.WRITE)) {
+      channel.truncate(HEADER_BYTES + written * TICKET_BYTES);
+      channel.force(true);
+    }
+    Files.move(newBase, base, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+    Path newDelta = directory.resolve(DELTA_FILE + ".tmp");
+    createDelta(newDelta, deltaCapacity);
+    Files.move(
+        newDelta,
+        directory.resolve(DELTA_FILE),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    MemorySegment baseSegment = map(base, FileChannel.MapMode.READ_ONLY);
+    MemorySegment deltaSegment =
+        map(directory.resolve(DELTA_FILE), FileChannel.MapMode.READ_WRITE);
+    snapshot = new Snapshot(baseSegment, written, deltaSegment, 0);
+  }
+
+  /**
+   * Waits for the compaction in the background, if any, and rethrows its failure. The mapped files
+   * are released once the database is unreachable.
+   */
+  @Override
+  public void close() throws IOException {
+    CompletableFuture<Void> pending;
+    synchronized (this) {
+      pending = compaction;
+    }
+    if (pending != null) {
+      pending.exceptionally(_ -> null).join();
+    }
+    synchronized (this) {
+      rethrowFailedCompaction();
+    }
+  }
+
+  static int compare(long most, long least, long otherMost, long otherLeast) {
+    int result = Long.compare(most, otherMost);
+    return result != 0 ? result : Long.compare(least, otherLeast);
+  }
+
+  static boolean binarySearch(@NotNull MemorySegment segment, long count, long most, long least) {
+    long low = 0;
+    long high = count - 1;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      long offset = HEADER_BYTES + middle * TICKET_BYTES;
+      int comparison =
+          compare(segment.get(LONG, offset), segment.get(LONG, offset + Long.BYTES), most, least);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (0 < comparison) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean scan(@NotNull MemorySegment segment, long count, long most, long least) {
+    for (long offset = HEADER_BYTES;
+        offset < HEADER_BYTES + count * TICKET_BYTES;
+        offset += TICKET_BYTES) {
+      if (segment.get(LONG, offset) == most && segment.get(LONG, offset + Long.BYTES) == least) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static @NotNull MemorySegment map(@NotNull Path file, FileChannel.MapMode mode)
+      throws IOException {
+    StandardOpenOption[] options =
+        mode == FileChannel.MapMode.READ_ONLY
+            ? new StandardOpenOption[] {StandardOpenOption.READ}
+            : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE};
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      MemorySegment segment = channel.map(mode, 0, channel.size(), Arena.ofAuto());
+      if (segment.byteSize() < HEADER_BYTES
+          || segment.get(INT, 0) != MAGIC
+          || segment.get(INT, 4) != VERSION) {
+        throw new IOException(STR."\{file} is not a ticket file");
+      }
+      return segment;
+    }
+  }
+
+  private static long count(@NotNull MemorySegment segment) {
+    return segment.get(LONG, 8);
+  }
+
+  private static void writeHeader(@NotNull MemorySegment segment, long count) {
+    segment.set(INT, 0, MAGIC);
+    segment.set(INT, 4, VERSION);
+    segment.set(LONG, 8, count);
+  }
+
+  private static void writeBase(@NotNull Path file, @NotNull UUID @NotNull [] tickets)
+      throws IOException {
+    UUID[] sorted = Arrays.stream(tickets).sorted(ORDER).distinct().toArray(UUID[]::new);
+    write(file, HEADER_BYTES + sorted.length * TICKET_BYTES, sorted);
+  }
+
+  private static void createDelta(@NotNull Path file, int capacity) throws IOException {
+    write(file, HEADER_BYTES + capacity * TICKET_BYTES, new UUID[0]);
+  }
+
+  private static void write(@NotNull Path file, long size, @NotNull UUID @NotNull [] tickets)
+      throws IOException {
+    try (FileChannel channel =
+            FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Arena arena = Arena.ofConfined()) {
+      MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+      for (int i = 0; i < tickets.length; i++) {
+        long offset = HEADER_BYTES + i * TICKET_BYTES;
+        segment.set(LONG, offset, tickets[i].getMostSignificantBits());
+        segment.set(LONG, offset + Long.BYTES, tickets[i].getLeastSignificantBits());
+      }
+      writeHeader(segment, tickets.length);
+      segment.force();
+    }
+  }
+}
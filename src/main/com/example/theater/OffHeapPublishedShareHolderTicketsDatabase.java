@@ -0,0 +1,114 @@
+package com.example.theater;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Collection;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link PublishedShareHolderTicketsDatabase} keeping the tickets outside the heap as pairs of
+ * {@code long}s in an open-addressing table with linear probing.
+ *
+ * <p>A slot of two zeros marks an empty slot, so the nil UUID is tracked by a separate flag. The
+ * table is sized for a load factor of {@value #LOAD_FACTOR_PERCENT}%, which keeps it at about 23
+ * bytes per ticket, and lookups neither allocate nor touch the heap besides the argument.
+ */
+public class OffHeapPublishedShareHolderTicketsDatabase
+    implements PublishedShareHolderTicketsDatabase, AutoCloseable {
+
+  static final long SLOT_BYTES = 2 * Long.BYTES;
+  static final int LOAD_FACTOR_PERCENT = 70;
+
+  final @NotNull Arena arena;
+  final @NotNull MemorySegment table;
+  final long capacity;
+  final int size;
+  final boolean containsNil;
+
+  public OffHeapPublishedShareHolderTicketsDatabase(
+      @NotNull Collection<@NotNull UUID> publishedTickets) {
+    this.capacity = Math.max(2L, publishedTickets.size() * 100L / LOAD_FACTOR_PERCENT + 1);
+    this.arena = Arena.ofShared();
+    this.table = arena.allocate(capacity * SLOT_BYTES, SLOT_BYTES);
+    int count = 0;
+    boolean nil = false;
+    for (UUID ticket : publishedTickets) {
+      long most = ticket.getMostSignificantBits();
+      long least = ticket.getLeastSignificantBits();
+      if (most == 0 && least == 0) {
+        count += nil ? 0 : 1;
+        nil = true;
+      } else if (insert(most, least)) {
+        count++;
+      }
+    }
+    this.size = count;
+    this.containsNil = nil;
+  }
+
+  /** First slot to probe, spread over {@code [0, capacity)} without a division. */
+  private long slotOf(long most, long least) {
+    long h = most ^ Long.rotateLeft(least, 32);
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return Math.unsignedMultiplyHigh(h, capacity);
+  }
+
+  private long nextSlot(long slot) {
+    return slot + 1 == capacity ? 0 : slot + 1;
+  }
+
+  private boolean insert(long most, long least) {
+    for (long slot = slotOf(most, least); ; slot = nextSlot(slot)) {
+      long offset = slot * SLOT_BYTES;
+      long slotMost = table.get(ValueLayout.JAVA_LONG, offset);
+      long slotLeast = table.get(ValueLayout.JAVA_LONG, offset + Long.BYTES);
+      if (slotMost == 0 && slotLeast == 0) {
+        table.set(ValueLayout.JAVA_LONG, offset, most);
+        table.set(ValueLayout.JAVA_LONG, offset + Long.BYTES, least);
+        return true;
+      }
+      if (slotMost == most && slotLeast == least) {
+        return false;
+      }
+    }
+  }
+
+  @Override
+  public boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+    long most = ticketId.getMostSignificantBits();
+    long least = ticketId.getLeastSignificantBits();
+    if (most == 0 && least == 0) {
+      return containsNil;
+    }
+    for (long slot = slotOf(most, least); ; slot = nextSlot(slot)) {
+      long offset = slot * SLOT_BYTES;
+      long slotMost = table.get(ValueLayout.JAVA_LONG, offset);
+      long slotLeast = table.get(ValueLayout.JAVA_LONG, offset + Long.BYTES);
+      if (slotMost == most && slotLeast == least) {
+        return true;
+      }
+      if (slotMost == 0 && slotLeast == 0) {
+        return false;
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Off-heap bytes held by the table. */
+  public long byteSize() {
+    return table.byteSize();
+  }
+
+  /** Releases the table. Lookups must not run concurrently with or after this call. */
+  @Override
+  public void close() {
+    arena.close();
+  }
+}
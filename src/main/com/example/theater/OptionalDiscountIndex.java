@@ -0,0 +1,85 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+/**
+ * Optional discounts of a {@link VisitorGroup}, split into the ones offered to everyone in the
+ * group and the ones offered only to their owner. Discounts are identified by their position in
+ * {@link VisitorGroup#allOfferedOptionalDiscounts()} so that both kinds can be merged back into
+ * the order they were offered in.
+ */
+final class OptionalDiscountIndex {
+
+  private static final int @NotNull [] NONE = new int[0];
+
+  final OptionalDiscount.@NotNull Offered @NotNull [] offered;
+  final int @NotNull [] forAll;
+  final @NotNull Map<@NotNull Visitor, int @NotNull []> personal;
+
+  OptionalDiscountIndex(@NotNull VisitorGroup visitorGroup) {
+    List<OptionalDiscount.Offered> offered = new ArrayList<>();
+    int[] forAll = new int[8];
+    int forAllCount = 0;
+    Map<Visitor, int[]> personal = new HashMap<>();
+    for (Visitor visitor : visitorGroup) {
+      int[] own = NONE;
+      for (OptionalDiscount discount : visitor.optionalDiscounts()) {
+        int position = offered.size();
+        offered.add(new OptionalDiscount.Offered(visitor, discount));
+        if (discount.isForAll()) {
+          if (forAllCount == forAll.length) {
+            forAll = Arrays.copyOf(forAll, forAllCount * 2);
+          }
+          forAll[forAllCount++] = position;
+        } else {
+          own = Arrays.copyOf(own, own.length + 1);
+          own[own.length - 1] = position;
+        }
+      }
+      if (own.length != 0) {
+        // equal visitors share their personal discounts, as OptionalDiscount.Offered#canApplyTo
+        personal.merge(visitor, own, OptionalDiscountIndex::concat);
+      }
+    }
+    this.offered = offered.toArray(OptionalDiscount.Offered[]::new);
+    this.forAll = Arrays.copyOf(forAll, forAllCount);
+    this.personal = personal;
+  }
+
+  private static int @NotNull [] concat(int @NotNull [] earlier, int @NotNull [] later) {
+    int[] positions = Arrays.copyOf(earlier, earlier.length + later.length);
+    System.arraycopy(later, 0, positions, earlier.length, later.length);
+    return positions;
+  }
+
+  /** Positions of the discounts offered only to the visitor, in the order they were offered. */
+  int @NotNull [] personalPositionsOf(@NotNull Visitor visitor) {
+    return personal.getOrDefault(visitor, NONE);
+  }
+
+  @NotNull
+  @Unmodifiable
+  List<OptionalDiscount.Offered> forAll() {
+    return offeredAt(forAll);
+  }
+
+  @NotNull
+  @Unmodifiable
+  List<OptionalDiscount.Offered> personalOf(@NotNull Visitor visitor) {
+    return offeredAt(personalPositionsOf(visitor));
+  }
+
+  private @NotNull List<OptionalDiscount.Offered> offeredAt(int @NotNull [] positions) {
+    OptionalDiscount.Offered[] discounts = new OptionalDiscount.Offered[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      discounts[i] = offered[positions[i]];
+    }
+    return List.of(discounts);
+  }
+}
@@ -0,0 +1,398 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Owns the {@link PersonalStamp} count of every visitor, so that callers no longer keep their own
+ * stamp store. {@link #calculateAdmissionFee(VisitorGroup)} prices a group with the counts of the
+ * ledger in place of the stamps the visitors bring, and stores the new counts of its audiences.
+ * Counts of a visitor the ledger does not know yet start from the stamp the visitor brings.
+ *
+ * <p>Groups are priced without holding any lock. The new counts are stored under striped locks
+ * only if no other group changed the counts of the same visitors meanwhile; otherwise the group
+ * is priced again with the counts that group left, so no visit is lost or counted twice. Tickets
+ * are claimed and the group is reported to the {@link PricingListener} once, however often it is
+ * priced.
+ *
+ * <p>Every changed count is appended to a log file by a background writer, and the log is
+ * rewritten with only the current counts once it holds many more records than visitors. A record
+ * is the visitor id, the count and a CRC32C of both; a torn record at the end of the log is
+ * dropped when the ledger is opened. Counts changed shortly before a crash may be lost unless
+ * {@link #flush()} was called.
+ */
+public final class PersonalStampLedger implements AutoCloseable {
+
+  static final int RECORD_BYTES = 24;
+  static final int STRIPES = 256;
+  static final int COMPACTION_SLACK = 1 << 16;
+
+  private record Update(@NotNull UUID visitorId, int count) {}
+
+  /** Queued by {@link #close()} after the last update. */
+  private static final @NotNull Object CLOSE = new Object();
+
+  final @NotNull Logic logic;
+  final @NotNull Path file;
+  private final @NotNull Map<UUID, Integer> counts;
+  private final @NotNull ReentrantLock @NotNull [] stripes = new ReentrantLock[STRIPES];
+  private final @NotNull BlockingQueue<Object> log = new LinkedBlockingQueue<>();
+  private final @NotNull Thread writer;
+  private volatile boolean closed;
+
+  // owned by the writer thread once started
+  private @NotNull FileChannel channel;
+  private long records;
+  private @Nullable IOException failure;
+
+  private PersonalStampLedger(
+      @NotNull Logic logic,
+      @NotNull Path file,
+      @NotNull Map<UUID, Integer> counts,
+      @NotNull FileChannel channel,
+      long records) {
+    this.logic = logic;
+    this.file = file;
+    this.counts = counts;
+    this.channel = channel;
+    this.records = records;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.writer = Thread.ofPlatform().name("stamp-ledger").daemon().unstarted(this::write);
+  }
+
+  /** Opens the ledger logged to {@code file}, creating it if missing. */
+  public static @NotNull PersonalStampLedger open(@NotNull Logic logic, @NotNull Path file)
+      throws IOException {
+    Map<UUID, Integer> counts = new ConcurrentHashMap<>();
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long records = 0;
+    try {
+      long size = channel.size();
+      long position = 0;
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+      read:
+      while (position + RECORD_BYTES <= size) {
+        buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, position + buffer.position()) == -1) {
+            break read;
+          }
+        }
+        buffer.flip();
+        while (RECORD_BYTES <= buffer.remaining()) {
+          UUID visitorId = new UUID(buffer.getLong(), buffer.getLong());
+          int count = buffer.getInt();
+          if (buffer.getInt() != crcOf(visitorId, count)) {
+            break read;
+          }
+          counts.put(visitorId, count);
+          position += RECORD_BYTES;
+          records++;
+        }
+      }
+      // drops a torn record at the end
+      channel.truncate(position);
+      channel.position(position);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    PersonalStampLedger ledger = new PersonalStampLedger(logic, file, counts, channel, records);
+    ledger.writer.start();
+    return ledger;
+  }
+
+  /** Current count of the visitor, {@code 0} for a visitor the ledger does not know. */
+  public int count(@NotNull UUID visitorId) {
+    Integer count = counts.get(visitorId);
+    return count == null ? 0 : count;
+  }
+
+  /** Number of visitors with a count. */
+  public int size() {
+    return counts.size();
+  }
+
+  /**
+   * Prices the group with the counts of the ledger and stores the new counts of its audiences. A
+   * visitor appearing more than once in the group is counted once, by its first audience.
+   */
+  public @NotNull List<Audience> calculateAdmissionFee(@NotNull VisitorGroup visitorGroup) {
+    List<Visitor> visitors = List.copyOf(visitorGroup.visitors());
+    int[] locks = stripesOf(visitors);
+    return logic.calculateAdmissionFee(
+        visitorGroup,
+        pricing -> {
+          while (true) {
+            Integer[] read = new Integer[visitors.size()];
+            List<Visitor> stamped = new ArrayList<>(visitors.size());
+            for (int index = 0; index < visitors.size(); index++) {
+              Visitor visitor = visitors.get(index);
+              read[index] = counts.get(visitor.id());
+              stamped.add(read[index] == null ? visitor : withStamp(visitor, read[index]));
+            }
+            List<Audience> audiences = pricing.apply(new VisitorGroup(stamped));
+            for (int lock : locks) {
+              stripes[lock].lock();
+            }
+            try {
+              if (closed) {
+                throw new IllegalStateException("ledger is closed");
+              }
+              if (unchanged(visitors, read)) {
+                store(visitors, audiences);
+                return audiences;
+              }
+            } finally {
+              for (int lock : locks) {
+                stripes[lock].unlock();
+              }
+            }
+          }
+        });
+  }
+
+  /** Stripes guarding the visitors, in ascending order so that groups never deadlock. */
+  private static int @NotNull [] stripesOf(@NotNull List<Visitor> visitors) {
+    int[] stripes = new int[visitors.size()];
+    for (int index = 0; index < stripes.length; index++) {
+      int h = visitors.get(index).id().hashCode() * 0x9e3779b9;
+      stripes[index] = h >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES));
+    }
+    return Arrays.stream(stripes).sorted().distinct().toArray();
+  }
+
+  private boolean unchanged(@NotNull List<Visitor> visitors, @Nullable Integer @NotNull [] read) {
+    for (int index = 0; index < visitors.size(); index++) {
+      if (!Objects.equals(counts.get(visitors.get(index).id()), read[index])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void store(@NotNull List<Visitor> visitors, @NotNull List<Audience> audiences) {
+    Set<UUID> stored = new HashSet<>();
+    for (int index = 0; index < visitors.size(); index++) {
+      UUID visitorId = visitors.get(index).id();
+      int count = audiences.get(index).newPersonalStamp().count();
+      if (stored.add(visitorId) && !Objects.equals(counts.put(visitorId, count), count)) {
+        log.add(new Update(visitorId, count));
+      }
+    }
+  }
+
+  /** The visitor with its first stamp replaced by a stamp of {@code count}, or else one added. */
+  private static @NotNull Visitor withStamp(@NotNull Visitor visitor, int count) {
+    PersonalStamp stamp = PersonalStamps.of(count);
+    List<OptionalDiscount> optionalDiscounts = new ArrayList<>(visitor.optionalDiscounts());
+    int index = 0;
+    while (index < optionalDiscounts.size()
+        && !(optionalDiscounts.get(index) instanceof PersonalStamp)) {
+      index++;
+    }
+    if (index < optionalDiscounts.size()) {
+      if (optionalDiscounts.get(index).equals(stamp)) {
+        return visitor;
+      }
+      optionalDiscounts.set(index, stamp);
+    } else {
+      optionalDiscounts.add(stamp);
+    }
+    return new Visitor(visitor.id(), visitor.discount(), List.copyOf(optionalDiscounts), null);
+  }
+
+  /** Waits until every count changed so far is written to the log and forced to the device. */
+  public void flush() {
+    CompletableFuture<Void> flushed = new CompletableFuture<>();
+    // close() holds every stripe, so that nothing is queued after CLOSE
+    stripes[0].lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("ledger is closed");
+      }
+      log.add(flushed);
+    } finally {
+      stripes[0].unlock();
+    }
+    try {
+      flushed.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw new UncheckedIOException(io);
+      }
+      throw e;
+    }
+  }
+
+  /** Loop of the writer thread. */
+  private void write() {
+    List<Object> batch = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+    boolean closing = false;
+    while (!closing) {
+      try {
+        batch.add(log.take());
+      } catch (InterruptedException e) {
+        // only close() stops the writer
+        continue;
+      }
+      log.drainTo(batch, 4095);
+      List<CompletableFuture<?>> flushes = new ArrayList<>();
+      for (Object item : batch) {
+        switch (item) {
+          case Update update -> {
+            buffer.putLong(update.visitorId().getMostSignificantBits());
+            buffer.putLong(update.visitorId().getLeastSignificantBits());
+            buffer.putInt(update.count());
+            buffer.putInt(crcOf(update.visitorId(), update.count()));
+            records++;
+          }
+          case CompletableFuture<?> flushed -> flushes.add(flushed);
+          default -> closing = true;
+        }
+      }
+      batch.clear();
+      try {
+        if (failure == null) {
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          if (!flushes.isEmpty() || closing) {
+            channel.force(false);
+          }
+          if (COMPACTION_SLACK + 2L * counts.size() < records) {
+            compact();
+          }
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+      buffer.clear();
+      for (CompletableFuture<?> flushed : flushes) {
+        if (failure == null) {
+          flushed.complete(null);
+        } else {
+          flushed.completeExceptionally(failure);
+        }
+      }
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      failure = failure == null ? e : failure;
+    }
+  }
+
+  /**
+   * Rewrites the log with the current counts. Counts changed while they are read are also queued,
+   * so they are appended to the new log afterwards.
+   */
+  private void compact() throws IOException {
+    Path compacted = file.resolveSibling(STR."\{file.getFileName()}.tmp");
+    long written = 0;
+    try (FileChannel target =
+        FileChannel.open(
+            compacted,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+      for (Map.Entry<UUID, Integer> entry : counts.entrySet()) {
+        if (!buffer.hasRemaining()) {
+          target.write(buffer.flip());
+          buffer.clear();
+        }
+        buffer.putLong(entry.getKey().getMostSignificantBits());
+        buffer.putLong(entry.getKey().getLeastSignificantBits());
+        buffer.putInt(entry.getValue());
+        buffer.putInt(crcOf(entry.getKey(), entry.getValue()));
+        written++;
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        target.write(buffer);
+      }
+      target.force(false);
+    }
+    channel.close();
+    Files.move(
+        compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    records = written;
+  }
+
+  private static int crcOf(@NotNull UUID visitorId, int count) {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES - Integer.BYTES);
+    record.putLong(visitorId.getMostSignificantBits());
+    record.putLong(visitorId.getLeastSignificantBits());
+    record.putInt(count);
+    CRC32C crc = new CRC32C();
+    crc.update(record.array());
+    return (int) crc.getValue();
+  }
+
+  /** Writes and forces every count changed so far, then closes the log. */
+  @Override
+  public void close() {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+    try {
+      // no group stores counts after CLOSE
+      if (closed) {
+        return;
+      }
+      closed = true;
+      log.add(CLOSE);
+    } finally {
+      for (ReentrantLock stripe : stripes) {
+        stripe.unlock();
+      }
+    }
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+  }
+}
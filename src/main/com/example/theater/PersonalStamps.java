@@ -0,0 +1,21 @@
+package com.example.theater;
+
+import org.jetbrains.annotations.NotNull;
+
+/** Shared {@link PersonalStamp}s for the counts a card goes through. */
+final class PersonalStamps {
+
+  private static final @NotNull PersonalStamp @NotNull [] STAMPS = new PersonalStamp[11];
+
+  static {
+    for (int count = 0; count < STAMPS.length; count++) {
+      STAMPS[count] = new PersonalStamp(count);
+    }
+  }
+
+  private PersonalStamps() {}
+
+  static @NotNull PersonalStamp of(int count) {
+    return 0 <= count && count < STAMPS.length ? STAMPS[count] : new PersonalStamp(count);
+  }
+}
@@ -0,0 +1,225 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Price and discounts of a visitor without discount tickets, looked up from what they start with
+ * and which discounts apply to them instead of applying the discounts one by one. Built from a
+ * {@link PricingSnapshot}, so once per {@link PriceConfiguration} change.
+ *
+ * <p>A visitor is looked up by {@link #codeOf}: the discount kind given by their discount type or
+ * as a companion, whether their stamp is the tenth, and which of the shopping receipt and the
+ * internet premium member discounts for everyone apply, in the order they were offered. Whom those
+ * apply to and who is a companion is decided for the whole group, and visitors with discount
+ * tickets, which are used per visitor, are still priced one discount at a time by {@link Logic}.
+ */
+final class PriceTable {
+
+  /** No discount for everyone applies. */
+  static final int NO_FOR_ALL = 0;
+
+  static final int RECEIPT = 1;
+  static final int MEMBER = 2;
+  static final int RECEIPT_THEN_MEMBER = 3;
+  static final int MEMBER_THEN_RECEIPT = 4;
+
+  /** Discount kinds a visitor can start with, which take the lowest bits of the kinds. */
+  static final int BY_PROPERTY_KINDS =
+      DiscountKind.CHILD.bit()
+          | DiscountKind.DISABILITIES.bit()
+          | DiscountKind.ELDERLIES.bit()
+          | DiscountKind.FEMALES.bit();
+
+  static final int SIZE = (BY_PROPERTY_KINDS + 1) << 4;
+
+  /**
+   * @param byProperty - the discount by discount type or as a companion.
+   * @param stamp - amount taken off by the tenth stamp, if it takes anything.
+   * @param first - amount taken off by the first discount for everyone, if it takes anything.
+   * @param second - amount taken off by the second discount for everyone, if it takes anything.
+   */
+  record Entry(
+      @NotNull Price price,
+      @Nullable Discount byProperty,
+      @Nullable Price stamp,
+      @Nullable Price first,
+      @Nullable Price second) {}
+
+  final @NotNull PricingSnapshot snapshot;
+  private final @Nullable Entry @NotNull [] entries = new Entry[SIZE];
+
+  private PriceTable(@NotNull PricingSnapshot snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  static @NotNull PriceTable of(@NotNull PricingSnapshot snapshot) {
+    PriceTable table = new PriceTable(snapshot);
+    int base = snapshot.basePrice().value();
+    int eighty = snapshot.eightyPercentOfBasePrice().value();
+    table.fill(0, base, null);
+    table.fill(
+        DiscountKind.CHILD.bit(), snapshot.halfOfBasePrice().value(), snapshot.childDiscount());
+    table.fill(DiscountKind.DISABILITIES.bit(), eighty, snapshot.disabilityDiscount());
+    table.fill(DiscountKind.ELDERLIES.bit(), eighty, snapshot.elderlyDiscount());
+    table.fill(DiscountKind.FEMALES.bit(), eighty, snapshot.femaleDiscount());
+    return table;
+  }
+
+  private void fill(int byPropertyKind, int startPrice, @Nullable Discount byProperty) {
+    for (int tenthStamp = 0; tenthStamp < 2; tenthStamp++) {
+      for (int forAll = NO_FOR_ALL; forAll <= MEMBER_THEN_RECEIPT; forAll++) {
+        entries[codeOf(byPropertyKind, tenthStamp == 1, forAll)] =
+            entryOf(startPrice, byProperty, tenthStamp == 1, forAll);
+      }
+    }
+  }
+
+  private @NotNull Entry entryOf(
+      int startPrice, @Nullable Discount byProperty, boolean tenthStamp, int forAll) {
+    int half = snapshot.halfOfBasePrice().value();
+    int[] price = {startPrice};
+    Price stamp = null;
+    if (tenthStamp) {
+      stamp = take(price, half, PricingSnapshot.TWO_HUNDRED);
+    }
+    Price first = null;
+    Price second = null;
+    if (forAll != NO_FOR_ALL) {
+      first = take(price, half, amountOf(firstKindOf(forAll)));
+    }
+    if (forAll == RECEIPT_THEN_MEMBER || forAll == MEMBER_THEN_RECEIPT) {
+      second = take(price, half, amountOf(secondKindOf(forAll)));
+    }
+    return new Entry(snapshot.price(price[0]), byProperty, stamp, first, second);
+  }
+
+  /** Takes the amount off, but never below half of the base price, returning what was taken. */
+  private static @Nullable Price take(int @NotNull [] price, int half, @NotNull Price amount) {
+    if (price[0] <= half) {
+      return null;
+    }
+    int discounted = price[0] - amount.value();
+    if (half < discounted) {
+      price[0] = discounted;
+      return amount;
+    }
+    Price taken = new Price(price[0] - half);
+    price[0] = half;
+    return taken;
+  }
+
+  private static @NotNull Price amountOf(@NotNull DiscountKind kind) {
+    return kind == DiscountKind.SHOPPING_RECEIPT
+        ? PricingSnapshot.ONE_HUNDRED
+        : PricingSnapshot.TWO_HUNDRED;
+  }
+
+  static @NotNull DiscountKind firstKindOf(int forAll) {
+    return forAll == RECEIPT || forAll == RECEIPT_THEN_MEMBER
+        ? DiscountKind.SHOPPING_RECEIPT
+        : DiscountKind.INTERNET_PREMIUM_MEMBER;
+  }
+
+  static @NotNull DiscountKind secondKindOf(int forAll) {
+    return forAll == RECEIPT_THEN_MEMBER
+        ? DiscountKind.INTERNET_PREMIUM_MEMBER
+        : DiscountKind.SHOPPING_RECEIPT;
+  }
+
+  /**
+   * @param discountKinds - kinds given so far, of which only those by discount type or as a
+   *     companion are read.
+   */
+  static int codeOf(int discountKinds, boolean tenthStamp, int forAll) {
+    return (discountKinds & BY_PROPERTY_KINDS) << 4 | (tenthStamp ? 1 << 3 : 0) | forAll;
+  }
+
+  /** Which discounts for everyone apply, from the positions picked by Logic. */
+  static int forAllOf(
+      @NotNull OptionalDiscountIndex discountIndex, int @NotNull [] effectiveForAll) {
+    if (effectiveForAll.length == 0) {
+      return NO_FOR_ALL;
+    }
+    boolean receiptFirst =
+        discountIndex.offered[effectiveForAll[0]].discount() instanceof ShoppingReceipt;
+    if (effectiveForAll.length == 1) {
+      return receiptFirst ? RECEIPT : MEMBER;
+    }
+    return receiptFirst ? RECEIPT_THEN_MEMBER : MEMBER_THEN_RECEIPT;
+  }
+
+  /** Whether the visitor is priced from the table; those with discount tickets are not. */
+  static boolean covers(@NotNull Visitor visitor) {
+    for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+      if (optionalDiscount instanceof DiscountTicket) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  Entry entry(int code) {
+    Entry entry = entries[code];
+    if (entry == null) {
+      throw new IllegalArgumentException(STR."no entry for \{code}");
+    }
+    return entry;
+  }
+
+  /**
+   * Looks up the visitor, binding the discounts to their stamp and to the {@code first} and {@code
+   * second} discounts for everyone.
+   *
+   * @param discountKinds - kinds given to the visitor by their discount type or as a companion.
+   */
+  @NotNull
+  Audience audienceOf(
+      @NotNull Visitor visitor,
+      int discountKinds,
+      int forAll,
+      @Nullable OptionalDiscount first,
+      @Nullable OptionalDiscount second) {
+    PersonalStamp personalStamp = visitor.personalStamp();
+    boolean tenthStamp = personalStamp != null && personalStamp.count() == 10;
+    Entry entry = entry(codeOf(discountKinds, tenthStamp, forAll));
+    Discount[] discounts = new Discount[4];
+    int count = 0;
+    if (entry.byProperty() != null) {
+      discounts[count++] = entry.byProperty();
+    }
+    if (entry.stamp() != null) {
+      discounts[count++] =
+          new Discount(
+              entry.stamp(), DiscountDescription.of(Logic.PERSONAL_STAMP_TEXT, personalStamp));
+    }
+    if (entry.first() != null) {
+      discounts[count++] = forAllDiscount(entry.first(), first);
+    }
+    if (entry.second() != null) {
+      discounts[count++] = forAllDiscount(entry.second(), second);
+    }
+    return new Audience(
+        visitor.id(),
+        Logic.nextPersonalStamp(visitor),
+        entry.price(),
+        List.of(Arrays.copyOf(discounts, count)));
+  }
+
+  private static @NotNull Discount forAllDiscount(
+      @NotNull Price amount, @Nullable OptionalDiscount source) {
+    return switch (source) {
+      case ShoppingReceipt receipt ->
+          new Discount(amount, DiscountDescription.of(Logic.SHOPPING_RECEIPT_TEXT, receipt));
+      case InternetPremiumMember member ->
+          new Discount(
+              amount, DiscountDescription.of(Logic.INTERNET_PREMIUM_MEMBER_TEXT, member));
+      case null, default -> throw new IllegalArgumentException(STR."not for everyone: \{source}");
+    };
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.theater;
+
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives what {@link Logic} does while pricing a group. Called on the pricing thread, so
+ * implementations must be thread safe and return quickly. A group that fails is started but never
+ * finished.
+ */
+public interface PricingListener {
+
+  /** Listener that ignores everything. {@link Logic} skips all measurements when given this one. */
+  @NotNull PricingListener NONE = new PricingListener() {};
+
+  /**
+   * Listener passing everything on to each of {@code listeners} in order, so that e.g. metrics, the
+   * daily settlement and the audit journal all see what is priced.
+   */
+  static @NotNull PricingListener of(@NotNull PricingListener @NotNull ... listeners) {
+    List<PricingListener> all =
+        Arrays.stream(listeners).filter(listener -> listener != NONE).toList();
+    return switch (all.size()) {
+      case 0 -> NONE;
+      case 1 -> all.getFirst();
+      default ->
+          new PricingListener() {
+            @Override
+            public void groupStarted(@NotNull VisitorGroup visitorGroup) {
+              for (PricingListener listener : all) {
+                listener.groupStarted(visitorGroup);
+              }
+            }
+
+            @Override
+            public void lookupCompleted(@NotNull Lookup lookup, int keys, long elapsedNanos) {
+              for (PricingListener listener : all) {
+                listener.lookupCompleted(lookup, keys, elapsedNanos);
+              }
+            }
+
+            @Override
+            public void discountApplied(@NotNull DiscountKind kind, @NotNull Price amount) {
+              for (PricingListener listener : all) {
+                listener.discountApplied(kind, amount);
+              }
+            }
+
+            @Override
+            public void groupFinished(
+                @NotNull VisitorGroup visitorGroup,
+                @NotNull List<Audience> audiences,
+                long elapsedNanos) {
+              for (PricingListener listener : all) {
+                listener.groupFinished(visitorGroup, audiences, elapsedNanos);
+              }
+            }
+          };
+    };
+  }
+
+  enum Lookup {
+    PUBLISHED_SHARE_HOLDER_TICKETS,
+    INTERNET_PREMIUM_MEMBERS,
+    DISCOUNT_TICKETS,
+  }
+
+  default void groupStarted(@NotNull VisitorGroup visitorGroup) {}
+
+  /** A lookup of {@code keys} keys against one database, including the time spent waiting on it. */
+  default void lookupCompleted(@NotNull Lookup lookup, int keys, long elapsedNanos) {}
+
+  /** Called for every discount of every audience, before {@link #groupFinished}. */
+  default void discountApplied(@NotNull DiscountKind kind, @NotNull Price amount) {}
+
+  default void groupFinished(
+      @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences, long elapsedNanos) {}
+}
@@ -0,0 +1,110 @@
+package com.example.theater;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/** {@link PricingListener} that counts into {@link LongAdder}s and {@link LatencyHistogram}s. */
+public final class PricingMetrics implements PricingListener {
+
+  /**
+   * @param groupsStarted - groups started, including those that failed.
+   * @param shareHolderGroups - groups made free by a published shareholder ticket.
+   * @param discountAmounts - total amount taken off by each kind of discount.
+   */
+  public record Snapshot(
+      long groupsStarted,
+      long groupsFinished,
+      long shareHolderGroups,
+      long audiences,
+      @NotNull Map<DiscountKind, Long> discounts,
+      @NotNull Map<DiscountKind, Long> discountAmounts,
+      @NotNull LatencyHistogram.Snapshot groupLatency,
+      @NotNull Map<Lookup, LatencyHistogram.Snapshot> lookupLatencies,
+      @NotNull Map<Lookup, Long> lookupKeys) {}
+
+  private static final @NotNull DiscountKind @NotNull [] KINDS = DiscountKind.values();
+  private static final @NotNull Lookup @NotNull [] LOOKUPS = Lookup.values();
+
+  private final @NotNull LongAdder groupsStarted = new LongAdder();
+  private final @NotNull LongAdder groupsFinished = new LongAdder();
+  private final @NotNull LongAdder shareHolderGroups = new LongAdder();
+  private final @NotNull LongAdder audiences = new LongAdder();
+  private final @NotNull LongAdder @NotNull [] discounts = adders(KINDS.length);
+  private final @NotNull LongAdder @NotNull [] discountAmounts = adders(KINDS.length);
+  private final @NotNull LatencyHistogram groupLatency = new LatencyHistogram();
+  private final @NotNull LatencyHistogram @NotNull [] lookupLatencies =
+      new LatencyHistogram[LOOKUPS.length];
+  private final @NotNull LongAdder @NotNull [] lookupKeys = adders(LOOKUPS.length);
+
+  public PricingMetrics() {
+    for (int lookup = 0; lookup < LOOKUPS.length; lookup++) {
+      lookupLatencies[lookup] = new LatencyHistogram();
+    }
+  }
+
+  private static @NotNull LongAdder @NotNull [] adders(int length) {
+    LongAdder[] adders = new LongAdder[length];
+    for (int i = 0; i < length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  @Override
+  public void groupStarted(@NotNull VisitorGroup visitorGroup) {
+    groupsStarted.increment();
+  }
+
+  @Override
+  public void lookupCompleted(@NotNull Lookup lookup, int keys, long elapsedNanos) {
+    lookupLatencies[lookup.ordinal()].record(elapsedNanos);
+    lookupKeys[lookup.ordinal()].add(keys);
+  }
+
+  @Override
+  public void discountApplied(@NotNull DiscountKind kind, @NotNull Price amount) {
+    discounts[kind.ordinal()].increment();
+    discountAmounts[kind.ordinal()].add(amount.value());
+  }
+
+  @Override
+  public void groupFinished(
+      @NotNull VisitorGroup visitorGroup, @NotNull List<Audience> audiences, long elapsedNanos) {
+    groupsFinished.increment();
+    this.audiences.add(audiences.size());
+    if (!audiences.isEmpty()
+        && DiscountKind.SHARE_HOLDER_TICKET.isIn(audiences.getFirst().appliedDiscountKinds())) {
+      shareHolderGroups.increment();
+    }
+    groupLatency.record(elapsedNanos);
+  }
+
+  /** Counters are read one by one, so groups priced meanwhile may be partly included. */
+  public @NotNull Snapshot snapshot() {
+    Map<DiscountKind, Long> discounts = new EnumMap<>(DiscountKind.class);
+    Map<DiscountKind, Long> discountAmounts = new EnumMap<>(DiscountKind.class);
+    for (DiscountKind kind : KINDS) {
+      discounts.put(kind, this.discounts[kind.ordinal()].sum());
+      discountAmounts.put(kind, this.discountAmounts[kind.ordinal()].sum());
+    }
+    Map<Lookup, LatencyHistogram.Snapshot> lookupLatencies = new EnumMap<>(Lookup.class);
+    Map<Lookup, Long> lookupKeys = new EnumMap<>(Lookup.class);
+    for (Lookup lookup : LOOKUPS) {
+      lookupLatencies.put(lookup, this.lookupLatencies[lookup.ordinal()].snapshot());
+      lookupKeys.put(lookup, this.lookupKeys[lookup.ordinal()].sum());
+    }
+    return new Snapshot(
+        groupsStarted.sum(),
+        groupsFinished.sum(),
+        shareHolderGroups.sum(),
+        audiences.sum(),
+        Map.copyOf(discounts),
+        Map.copyOf(discountAmounts),
+        groupLatency.snapshot(),
+        Map.copyOf(lookupLatencies),
+        Map.copyOf(lookupKeys));
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.theater;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Working state of {@link Logic}, indexed by the position of the visitor in the group. Reused
+ * across calls so that pricing a group allocates only the objects it returns.
+ *
+ * <p>Free scratches are pooled for all threads rather than kept per thread, as a virtual thread
+ * usually prices a single group and would otherwise allocate a scratch for every group. A scratch
+ * is taken with {@link #acquire()} and given back with {@link #release()}.
+ */
+final class PricingScratch {
+
+  /** One discount by visitor property or companion, stamp, receipt, member and ticket. */
+  static final int MAX_DISCOUNTS_PER_VISITOR = 5;
+
+  /** Free scratches, enough for every processor to price a few groups at once. */
+  static final @NotNull AtomicReferenceArray<PricingScratch> POOL =
+      new AtomicReferenceArray<>(4 * Runtime.getRuntime().availableProcessors());
+
+  @NotNull Visitor @NotNull [] visitors = new Visitor[16];
+  int @NotNull [] prices = new int[16];
+  @NotNull Discount @NotNull [] discounts = new Discount[16 * MAX_DISCOUNTS_PER_VISITOR];
+  int @NotNull [] discountCounts = new int[16];
+
+  /** Bitmask of the {@link DiscountKind}s already given to each visitor. */
+  int @NotNull [] discountKinds = new int[16];
+
+  /** Visitors still at the base price, in group order, waiting to become a companion. */
+  int @NotNull [] fullPriceQueue = new int[16];
+
+  int size;
+
+  /** Takes a free scratch from the pool, or a new one if none is free. */
+  static @NotNull PricingScratch acquire() {
+    int slots = POOL.length();
+    // starts where this thread left off, as it most likely gave a scratch back there
+    int start = (int) (Thread.currentThread().threadId() % slots);
+    for (int i = 0; i < slots; i++) {
+      int slot = (start + i) % slots;
+      PricingScratch scratch = POOL.get(slot);
+      if (scratch != null && POOL.compareAndSet(slot, scratch, null)) {
+        return scratch;
+      }
+    }
+    return new PricingScratch();
+  }
+
+  /** Clears the scratch and gives it back to the pool, dropping it if the pool is full. */
+  void release() {
+    clear();
+    int slots = POOL.length();
+    int start = (int) (Thread.currentThread().threadId() % slots);
+    for (int i = 0; i < slots; i++) {
+      int slot = (start + i) % slots;
+      if (POOL.get(slot) == null && POOL.compareAndSet(slot, null, this)) {
+        return;
+      }
+    }
+  }
+
+  int load(@NotNull VisitorGroup visitorGroup) {
+    int capacity = visitorGroup.visitors().size();
+    if (visitors.length < capacity) {
+      capacity = Math.max(capacity, visitors.length * 2);
+      visitors = new Visitor[capacity];
+      prices = new int[capacity];
+      discounts = new Discount[capacity * MAX_DISCOUNTS_PER_VISITOR];
+      discountCounts = new int[capacity];
+      discountKinds = new int[capacity];
+      fullPriceQueue = new int[capacity];
+    }
+    int index = 0;
+    for (Visitor visitor : visitorGroup) {
+      visitors[index++] = visitor;
+    }
+    size = index;
+    return index;
+  }
+
+  /** Loads a group of the single visitor, to price one visitor of a larger group at a time. */
+  void load(@NotNull Visitor visitor) {
+    visitors[0] = visitor;
+    size = 1;
+  }
+
+  void price(int index, int price) {
+    prices[index] = price;
+    discountCounts[index] = 0;
+    discountKinds[index] = 0;
+  }
+
+  void price(int index, int price, @NotNull Discount discount, @NotNull DiscountKind kind) {
+    prices[index] = price;
+    discounts[index * MAX_DISCOUNTS_PER_VISITOR] = discount;
+    discountCounts[index] = 1;
+    discountKinds[index] = kind.bit();
+  }
+
+  void discount(int index, int price, @NotNull Discount discount, @NotNull DiscountKind kind) {
+    prices[index] = price;
+    discounts[index * MAX_DISCOUNTS_PER_VISITOR + discountCounts[index]++] = discount;
+    discountKinds[index] |= kind.bit();
+  }
+
+  boolean hasDiscount(int index, @NotNull DiscountKind kind) {
+    return kind.isIn(discountKinds[index]);
+  }
+
+  @NotNull
+  List<Discount> discountList(int index) {
+    int from = index * MAX_DISCOUNTS_PER_VISITOR;
+    return switch (discountCounts[index]) {
+      case 0 -> List.of();
+      case 1 -> List.of(discounts[from]);
+      case 2 -> List.of(discounts[from], discounts[from + 1]);
+      default -> List.of(Arrays.copyOfRange(discounts, from, from + discountCounts[index]));
+    };
+  }
+
+  /** Drops the references to the priced group so that it can be collected. */
+  void clear() {
+    Arrays.fill(visitors, 0, size, null);
+    Arrays.fill(discounts, 0, size * MAX_DISCOUNTS_PER_VISITOR, null);
+    size = 0;
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.theater;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Prices and discounts derived from a base price on a given day. Built once per {@link
+ * PriceConfiguration} change so that pricing a group needs no arithmetic on the base price and no
+ * calendar checks.
+ */
+record PricingSnapshot(
+    @NotNull Price basePrice,
+    @NotNull LocalDate today,
+    @NotNull Price eightyPercentOfBasePrice,
+    @NotNull Price twentyPercentOfBasePrice,
+    @NotNull Price halfOfBasePrice,
+    boolean femaleAndElderlyDiscountAvailable,
+    @NotNull Discount childDiscount,
+    @NotNull Discount disabilityDiscount,
+    @NotNull Discount femaleDiscount,
+    @NotNull Discount elderlyDiscount) {
+
+  static final @NotNull Price ZERO = new Price(0);
+  static final @NotNull Price ONE_HUNDRED = new Price(100);
+  static final @NotNull Price TWO_HUNDRED = new Price(200);
+
+  static @NotNull PricingSnapshot of(@NotNull Price basePrice, @NotNull LocalDate today) {
+    Price eightyPercentOfBasePrice = new Price(basePrice.value() * 4 / 5);
+    Price twentyPercentOfBasePrice =
+        new Price(basePrice.value() - eightyPercentOfBasePrice.value());
+    Price halfOfBasePrice = new Price(basePrice.value() / 2);
+    boolean femaleAndElderlyDiscountAvailable =
+        today.getDayOfWeek() == DayOfWeek.WEDNESDAY
+            && (today.getMonth() != Month.JANUARY || 3 < today.getDayOfMonth());
+    return new PricingSnapshot(
+        basePrice,
+        today,
+        eightyPercentOfBasePrice,
+        twentyPercentOfBasePrice,
+        halfOfBasePrice,
+        femaleAndElderlyDiscountAvailable,
+        new Discount(
+            halfOfBasePrice, DiscountDescription.of(Logic.CHILD_TEXT, DiscountTypes.CHILD)),
+        new Discount(
+            twentyPercentOfBasePrice,
+            DiscountDescription.of(Logic.DISABILITIES_TEXT, DiscountTypes.DISABILITIES)),
+        new Discount(
+            twentyPercentOfBasePrice,
+            DiscountDescription.of(Logic.FEMALES_TEXT, DiscountTypes.FEMALES)),
+        new Discount(
+            twentyPercentOfBasePrice,
+            DiscountDescription.of(Logic.ELDERLIES_TEXT, DiscountTypes.ELDERLIES)));
+  }
+
+  /** Returns a shared instance for the usual prices so that they are not allocated per visitor. */
+  @NotNull
+  Price price(int value) {
+    if (value == basePrice.value()) {
+      return basePrice;
+    } else if (value == eightyPercentOfBasePrice.value()) {
+      return eightyPercentOfBasePrice;
+    } else if (value == halfOfBasePrice.value()) {
+      return halfOfBasePrice;
+    }
+    return new Price(value);
+  }
+
+  boolean isFor(@NotNull Price basePrice, @NotNull LocalDate today) {
+    return this.basePrice.equals(basePrice) && this.today.equals(today);
+  }
+}
@@ -1,9 +1,35 @@
 package com.example.theater;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.jetbrains.annotations.NotNull;
 
 public interface PublishedShareHolderTicketsDatabase {
 
   boolean isPublishedShareHolderTicket(@NotNull UUID ticketId);
+
+  default @NotNull Set<@NotNull UUID> publishedShareHolderTickets(
+      @NotNull Collection<@NotNull UUID> ticketIds) {
+    Set<UUID> publishedTickets = new HashSet<>();
+    for (UUID ticketId : ticketIds) {
+      if (isPublishedShareHolderTicket(ticketId)) {
+        publishedTickets.add(ticketId);
+      }
+    }
+    return Set.copyOf(publishedTickets);
+  }
+
+  default @NotNull CompletableFuture<Boolean> isPublishedShareHolderTicketAsync(
+      @NotNull UUID ticketId) {
+    return CompletableFuture.supplyAsync(
+        () -> isPublishedShareHolderTicket(ticketId), AsyncLookups.VIRTUAL_THREADS);
+  }
+
+  default @NotNull CompletableFuture<Set<@NotNull UUID>> publishedShareHolderTicketsAsync(
+      @NotNull Collection<@NotNull UUID> ticketIds) {
+    return AsyncLookups.filter(ticketIds, this::isPublishedShareHolderTicketAsync);
+  }
 }
@@ -0,0 +1,385 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Quotes of {@link Logic} memoized by the shape of the group rather than by its visitors. Once the
+ * lookups are resolved, a price depends only on the discount type, the optional discounts and
+ * their validity of each visitor in order, and on the day's {@link PricingSnapshot}, so groups of
+ * the same shape get the same prices and discounts whoever is in them. A cached quote keeps where
+ * the source of each discount was offered in the group, and is rebound to the ids and discounts
+ * of the next group of that shape.
+ *
+ * <p>Quotes are kept per snapshot, and cached ones are dropped when {@link Logic} swaps the
+ * snapshot for a new base price or day. Beyond {@code maxEntries} the least recently used ones
+ * are evicted, from one of {@value #SEGMENTS} segments locked separately. Groups of more than
+ * {@value #MAX_CACHED_VISITORS} visitors seldom repeat and are priced without the cache.
+ */
+public final class QuoteCache {
+
+  static final int SEGMENTS = 16;
+  static final int MAX_CACHED_VISITORS = 16;
+
+  /**
+   * @param hits - quotes rebound from a cached one.
+   * @param misses - quotes calculated and cached.
+   * @param bypasses - quotes calculated without the cache, for groups too large to cache.
+   * @param evictions - cached quotes evicted as least recently used.
+   */
+  public record Stats(long hits, long misses, long bypasses, long evictions, int size) {}
+
+  private static final class Key {
+    final @NotNull PricingSnapshot snapshot;
+    final int @NotNull [] shape;
+    final int hash;
+
+    Key(@NotNull PricingSnapshot snapshot, int @NotNull [] shape) {
+      this.snapshot = snapshot;
+      this.shape = shape;
+      this.hash = hashOf(System.identityHashCode(snapshot), shape);
+    }
+
+    /**
+     * Mixes every element, as shapes differ in a few small numbers and {@link Arrays#hashCode}
+     * would put many of them into the same bucket.
+     */
+    private static int hashOf(int seed, int @NotNull [] shape) {
+      int hash = seed;
+      for (int element : shape) {
+        hash = (hash ^ element) * 0x9e3779b9;
+        hash ^= hash >>> 15;
+      }
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key key
+          && snapshot == key.snapshot
+          && hash == key.hash
+          && Arrays.equals(shape, key.shape);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Discount of a cached quote. Its source is the {@code optionalDiscount}-th optional discount of
+   * the {@code visitor}-th visitor, their shareholder ticket if {@code optionalDiscount} is -1, or
+   * {@code constantSource} if {@code visitor} is -1.
+   */
+  private record DiscountTemplate(
+      @NotNull Price amount,
+      @NotNull String text,
+      @Nullable Object constantSource,
+      int visitor,
+      int optionalDiscount) {}
+
+  /**
+   * @param countsPersonalStamp - whether the visit is counted on the stamp of the visitor, which
+   *     is not the case in a group made free by a shareholder ticket.
+   */
+  private record AudienceTemplate(
+      boolean countsPersonalStamp,
+      @NotNull Price price,
+      @NotNull DiscountTemplate @NotNull [] discounts) {}
+
+  /** Quotes of a segment in access order, guarded by locking the segment. */
+  private final class Segment {
+    final @NotNull LinkedHashMap<Key, AudienceTemplate[]> quotes =
+        new LinkedHashMap<>(16, 0.75f, true);
+    final int capacity;
+
+    Segment(int capacity) {
+      this.capacity = capacity;
+    }
+
+    @NotNull AudienceTemplate @Nullable [] get(@NotNull Key key) {
+      return quotes.get(key);
+    }
+
+    /** Caches the quote, evicting the least recently used one beyond the capacity. */
+    void put(@NotNull Key key, @NotNull AudienceTemplate @NotNull [] template) {
+      quotes.put(key, template);
+      if (capacity < quotes.size()) {
+        Iterator<AudienceTemplate[]> eldest = quotes.values().iterator();
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+
+    void clear() {
+      quotes.clear();
+    }
+
+    int size() {
+      return quotes.size();
+    }
+  }
+
+  private final @NotNull Segment @NotNull [] segments;
+  private final @NotNull LongAdder hits = new LongAdder();
+  private final @NotNull LongAdder misses = new LongAdder();
+  private final @NotNull LongAdder bypasses = new LongAdder();
+  private final @NotNull LongAdder evictions = new LongAdder();
+  private volatile @Nullable PricingSnapshot snapshot;
+
+  public QuoteCache(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+    int segments = Integer.highestOneBit(Math.min(SEGMENTS, maxEntries));
+    this.segments = new Segment[segments];
+    for (int i = 0; i < segments; i++) {
+      this.segments[i] = new Segment((maxEntries + segments - 1) / segments);
+    }
+  }
+
+  /**
+   * Returns the cached quote for the shape of the group rebound to its visitors, or the one
+   * calculated by {@code price}, which is then cached. A discount ticket in a rebound quote is used
+   * up from {@code validatedDiscounts} as {@code price} would have.
+   */
+  @NotNull
+  List<Audience> quote(
+      @NotNull PricingSnapshot snapshot,
+      @NotNull VisitorGroup visitorGroup,
+      @NotNull ValidatedDiscounts validatedDiscounts,
+      @NotNull Supplier<List<Audience>> price) {
+    Visitor[] visitors = visitorGroup.visitors().toArray(Visitor[]::new);
+    if (MAX_CACHED_VISITORS < visitors.length) {
+      bypasses.increment();
+      return price.get();
+    }
+    invalidateIfChanged(snapshot);
+    Key key = new Key(snapshot, shapeOf(visitors, validatedDiscounts));
+    Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (segments.length - 1)];
+    AudienceTemplate[] template;
+    synchronized (segment) {
+      template = segment.get(key);
+    }
+    if (template != null) {
+      hits.increment();
+      return rebind(template, visitors, validatedDiscounts);
+    }
+    misses.increment();
+    List<Audience> audiences = price.get();
+    template = templateOf(audiences, visitors);
+    if (template != null) {
+      synchronized (segment) {
+        // not after the snapshot was swapped, as nothing would ever clear it
+        if (this.snapshot == snapshot) {
+          segment.put(key, template);
+        }
+      }
+    }
+    return audiences;
+  }
+
+  /**
+   * Drops every quote when the snapshot is swapped, as quotes are cached per snapshot and those of
+   * another one are never quoted again.
+   */
+  private void invalidateIfChanged(@NotNull PricingSnapshot snapshot) {
+    if (this.snapshot == snapshot) {
+      return;
+    }
+    synchronized (this) {
+      if (this.snapshot != snapshot) {
+        // swapped first, so that quotes of the old one are either cleared or never put
+        this.snapshot = snapshot;
+        invalidate();
+      }
+    }
+  }
+
+  /** Drops every cached quote. */
+  public void invalidate() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * Encodes what pricing reads of the group: per visitor, the first visitor equal to them, their
+   * discount type, and each optional discount with its validity. Stamps, member ids and receipts
+   * count only as to whether they give a discount, while the price of a discount ticket and which
+   * tickets are equal are kept, as tickets are used per visitor.
+   */
+  static int @NotNull [] shapeOf(
+      @NotNull Visitor @NotNull [] visitors, @NotNull ValidatedDiscounts validatedDiscounts) {
+    int[] shape = new int[2 + 8 * visitors.length];
+    int length = 0;
+    shape[length++] = validatedDiscounts.singleUseDiscountTickets() ? 1 : 0;
+    shape[length++] = visitors.length;
+    List<DiscountTicket> discountTickets = new ArrayList<>();
+    for (int index = 0; index < visitors.length; index++) {
+      Visitor visitor = visitors[index];
+      List<OptionalDiscount> optionalDiscounts = visitor.optionalDiscounts();
+      if (shape.length < length + 3 + 4 * optionalDiscounts.size()) {
+        shape = Arrays.copyOf(shape, 2 * shape.length + 4 * optionalDiscounts.size());
+      }
+      int firstEqual = 0;
+      while (!visitors[firstEqual].equals(visitor)) {
+        firstEqual++;
+      }
+      shape[length++] = firstEqual;
+      shape[length++] =
+          switch (visitor.discount()) {
+            case null -> 0;
+            case DiscountTypes discountType -> 1 + discountType.ordinal();
+            case ShareHolderTicket s ->
+                validatedDiscounts.isPublishedShareHolderTicket(s.id()) ? -2 : -1;
+          };
+      shape[length++] = optionalDiscounts.size();
+      for (OptionalDiscount optionalDiscount : optionalDiscounts) {
+        switch (optionalDiscount) {
+          case PersonalStamp personalStamp -> {
+            // other counts only make the next stamp, which is counted again when rebinding
+            shape[length++] = 1;
+            shape[length++] = personalStamp.count() == 10 ? 1 : 0;
+          }
+          case ShoppingReceipt receipt -> {
+            shape[length++] = 2;
+            shape[length++] = Logic.isEffective(receipt) ? 1 : 0;
+          }
+          case InternetPremiumMember member -> {
+            shape[length++] = 3;
+            shape[length++] = validatedDiscounts.isValidMemberId(member.userId()) ? 1 : 0;
+          }
+          case DiscountTicket discountTicket -> {
+            int same = discountTickets.indexOf(discountTicket);
+            if (same < 0) {
+              same = discountTickets.size();
+              discountTickets.add(discountTicket);
+            }
+            shape[length++] = validatedDiscounts.isValidDiscountTicket(discountTicket) ? 4 : 5;
+            shape[length++] = discountTicket.price().value();
+            shape[length++] = same;
+          }
+        }
+      }
+    }
+    return Arrays.copyOf(shape, length);
+  }
+
+  /**
+   * Finds where the source of each discount was offered in the group, returning {@code null} if a
+   * source is neither there nor a {@link DiscountTypes}, or if a new stamp is not one pricing
+   * gives.
+   */
+  private static @NotNull AudienceTemplate @Nullable [] templateOf(
+      @NotNull List<Audience> audiences, @NotNull Visitor @NotNull [] visitors) {
+    if (audiences.size() != visitors.length) {
+      return null;
+    }
+    AudienceTemplate[] template = new AudienceTemplate[visitors.length];
+    for (int index = 0; index < visitors.length; index++) {
+      Audience audience = audiences.get(index);
+      boolean countsPersonalStamp =
+          audience.newPersonalStamp().equals(Logic.nextPersonalStamp(visitors[index]));
+      if (!countsPersonalStamp
+          && !audience.newPersonalStamp().equals(Logic.keptPersonalStamp(visitors[index]))) {
+        return null;
+      }
+      List<Discount> discountDetails = audience.discountDetails();
+      DiscountTemplate[] discounts = new DiscountTemplate[discountDetails.size()];
+      for (int i = 0; i < discounts.length; i++) {
+        Discount discount = discountDetails.get(i);
+        discounts[i] = discountTemplateOf(discount, visitors);
+        if (discounts[i] == null) {
+          return null;
+        }
+      }
+      template[index] =
+          new AudienceTemplate(countsPersonalStamp, audience.price(), discounts);
+    }
+    return template;
+  }
+
+  private static @Nullable DiscountTemplate discountTemplateOf(
+      @NotNull Discount discount, @NotNull Visitor @NotNull [] visitors) {
+    String text = discount.description().getText();
+    Object source = discount.description().getSource();
+    if (source instanceof DiscountTypes) {
+      return new DiscountTemplate(discount.price(), text, source, -1, -1);
+    }
+    // the first one offered, which is the one pricing picks among identical ones
+    for (int visitor = 0; visitor < visitors.length; visitor++) {
+      if (visitors[visitor].discount() == source) {
+        return new DiscountTemplate(discount.price(), text, null, visitor, -1);
+      }
+      List<OptionalDiscount> optionalDiscounts = visitors[visitor].optionalDiscounts();
+      for (int i = 0; i < optionalDiscounts.size(); i++) {
+        if (optionalDiscounts.get(i) == source) {
+          return new DiscountTemplate(discount.price(), text, null, visitor, i);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static @NotNull List<Audience> rebind(
+      @NotNull AudienceTemplate @NotNull [] template,
+      @NotNull Visitor @NotNull [] visitors,
+      @NotNull ValidatedDiscounts validatedDiscounts) {
+    Audience[] audiences = new Audience[template.length];
+    for (int index = 0; index < template.length; index++) {
+      AudienceTemplate audience = template[index];
+      Discount[] discounts = new Discount[audience.discounts().length];
+      for (int i = 0; i < discounts.length; i++) {
+        DiscountTemplate discount = audience.discounts()[i];
+        Object source = sourceOf(discount, visitors);
+        if (source instanceof DiscountTicket discountTicket) {
+          validatedDiscounts.useDiscountTicket(discountTicket);
+        }
+        discounts[i] =
+            new Discount(discount.amount(), DiscountDescription.of(discount.text(), source));
+      }
+      audiences[index] =
+          new Audience(
+              visitors[index].id(),
+              audience.countsPersonalStamp()
+                  ? Logic.nextPersonalStamp(visitors[index])
+                  : Logic.keptPersonalStamp(visitors[index]),
+              audience.price(),
+              List.of(discounts));
+    }
+    return List.of(audiences);
+  }
+
+  private static @NotNull Object sourceOf(
+      @NotNull DiscountTemplate discount, @NotNull Visitor @NotNull [] visitors) {
+    if (discount.visitor() < 0) {
+      return discount.constantSource();
+    }
+    Visitor visitor = visitors[discount.visitor()];
+    return discount.optionalDiscount() < 0
+        ? visitor.discount()
+        : visitor.optionalDiscounts().get(discount.optionalDiscount());
+  }
+
+  public @NotNull Stats stats() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return new Stats(hits.sum(), misses.sum(), bypasses.sum(), evictions.sum(), size);
+  }
+}
@@ -0,0 +1,644 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Quote for a group edited one visitor or discount at a time at the counter. Every shareholder
+ * ticket, member id and discount ticket is looked up once per session, and an edit reprices only
+ * the visitors whose price can change: the edited visitor, visitors whose companion pairing
+ * changed, and everyone when the discounts for all or the shareholder ticket making the group
+ * free changed. The quote always equals what {@link Logic#calculateAdmissionFee(VisitorGroup)}
+ * would return for {@link #visitorGroup()} at the time of the edit.
+ *
+ * <p>The pairing of disability visitors with companions is kept with every visitor, so adding or
+ * removing a visitor pairs again only the visitors from it on, and editing discounts pairs none
+ * again; adding a visitor at the end is therefore constant time. The first effective receipt and
+ * valid member are kept per visitor, and the discounts for all are found by stopping at the first
+ * visitor having them. What still takes time proportional to the group is: removing a visitor
+ * near the front, finding the edited visitor by id, finding the visitors sharing personal
+ * discounts with a visitor brought twice, finding the shareholder ticket when the group has one,
+ * and copying the quote returned.
+ *
+ * <p>A quote claims nothing: shareholder tickets claimed by another group and discount tickets
+ * already redeemed are left out as {@link Logic} leaves them out, but the session neither claims
+ * nor redeems them. As a discount ticket then discounts only the first visitor who can use it and
+ * can be redeemed by another counter at any time, every visitor is repriced at each edit of a
+ * group with discount tickets when {@link Logic} redeems them.
+ *
+ * <p>Not thread safe; a session belongs to one counter.
+ */
+public final class QuoteSession {
+
+  /** How the discount type of a visitor takes part in pairing disability visitors. */
+  private enum Pairing {
+    /** Priced by its own discount type. */
+    OWN_DISCOUNT,
+    /** Makes the earliest waiting visitor its companion, or leaves the discount to the next. */
+    DISABILITY,
+    /** Waits at the base price to become a companion. */
+    FULL_PRICE,
+    /** Takes a companion discount left by an earlier disability visitor, or waits. */
+    NO_DISCOUNT_TYPE
+  }
+
+  /** A visitor with the quote given at the last edit, {@code null} when it has to be repriced. */
+  private static final class Quoted {
+    @NotNull Visitor visitor;
+    @Nullable Audience audience;
+
+    /** Position in the group, kept from the first visitor paired again on. */
+    int index;
+
+    @NotNull Pairing pairing = Pairing.OWN_DISCOUNT;
+
+    /** State of the full-price queue once this visitor is paired. */
+    int queueHead;
+
+    int queueTail;
+    boolean companionDiscountAvailable;
+
+    /** Position in the full-price queue, {@code -1} if the visitor never waited in it. */
+    int queuePosition = -1;
+
+    /** Whether the visitor took a companion discount left by an earlier disability visitor. */
+    boolean companion;
+
+    int propertyPrice;
+    @Nullable Discount propertyDiscount;
+    @Nullable DiscountKind propertyKind;
+
+    /** Positions of the first effective receipt and valid member in the optional discounts. */
+    int shoppingReceipt = -1;
+
+    int internetPremiumMember = -1;
+
+    Quoted(@NotNull Visitor visitor) {
+      this.visitor = visitor;
+    }
+  }
+
+  /** A discount for all, at {@code position} in the optional discounts of its owner. */
+  private record EffectiveDiscount(
+      @NotNull Quoted owner, int position, @NotNull OptionalDiscount discount) {
+    boolean isOfferedBefore(@NotNull Quoted visitor, int position) {
+      return owner.index < visitor.index || (owner == visitor && this.position < position);
+    }
+  }
+
+  /** {@code from} of {@link #reprice(int)} when no visitor has to be paired again. */
+  private static final int NO_PAIRING = Integer.MAX_VALUE;
+
+  final @NotNull Logic logic;
+  private final @NotNull PricingScratch scratch = new PricingScratch();
+  private final @NotNull List<Quoted> quoted = new ArrayList<>();
+
+  /** Visitors waiting at the base price, by queue position; unused positions are {@code null}. */
+  private @Nullable Quoted @NotNull [] fullPriceQueue = new Quoted[16];
+
+  /** Number of visitors at the front of {@link #fullPriceQueue} who became companions. */
+  private int pairedCompanions;
+
+  private int queuedVisitors;
+
+  /** How many times each visitor is in the group, as equal visitors share personal discounts. */
+  private final @NotNull Map<Visitor, Integer> visitorCounts = new HashMap<>();
+
+  /** Visitors added or edited whose effective receipt and member are not known yet. */
+  private final @NotNull List<Quoted> unchecked = new ArrayList<>();
+
+  private int shareHolderTicketHolders;
+  private int shoppingReceiptHolders;
+  private int internetPremiumMemberHolders;
+
+  private final @NotNull Set<UUID> checkedShareHolderTickets = new HashSet<>();
+  private final @NotNull Set<UUID> checkedMemberIds = new HashSet<>();
+  private final @NotNull Set<DiscountTicket> checkedDiscountTickets = new HashSet<>();
+  private final @NotNull Set<UUID> pendingShareHolderTickets = new HashSet<>();
+  private final @NotNull Set<UUID> pendingMemberIds = new HashSet<>();
+  private final @NotNull Set<DiscountTicket> pendingDiscountTickets = new HashSet<>();
+  private final @NotNull ValidatedDiscounts validatedDiscounts =
+      new ValidatedDiscounts(new HashSet<>(), new HashSet<>(), new HashSet<>());
+
+  private @Nullable PricingSnapshot snapshot;
+  private @Nullable ShareHolderTicket shareHolderTicket;
+  private @NotNull List<Discount> shareHolderDiscountDetails = List.of();
+  private @Nullable List<EffectiveDiscount> effectiveDiscounts;
+  private @NotNull List<Audience> audiences = List.of();
+
+  public QuoteSession(@NotNull Logic logic) {
+    this.logic = logic;
+  }
+
+  public @NotNull VisitorGroup visitorGroup() {
+    List<Visitor> visitors = new ArrayList<>(quoted.size());
+    for (Quoted q : quoted) {
+      visitors.add(q.visitor);
+    }
+    return new VisitorGroup(List.copyOf(visitors));
+  }
+
+  /** Quote as of the last edit. */
+  public @NotNull List<Audience> audiences() {
+    return audiences;
+  }
+
+  public @NotNull List<Audience> addVisitor(@NotNull Visitor visitor) {
+    Quoted q = new Quoted(visitor);
+    quoted.add(q);
+    if (visitor.discount() instanceof ShareHolderTicket) {
+      shareHolderTicketHolders++;
+    }
+    added(q);
+    return reprice(quoted.size() - 1);
+  }
+
+  /** Removes the first visitor with the given id. */
+  public @NotNull List<Audience> removeVisitor(@NotNull UUID visitorId) {
+    int index = indexOf(visitorId);
+    Quoted removed = quoted.remove(index);
+    if (removed.visitor.discount() instanceof ShareHolderTicket) {
+      shareHolderTicketHolders--;
+    }
+    removed(removed);
+    return reprice(index);
+  }
+
+  /** Adds a discount to the first visitor with the given id. */
+  public @NotNull List<Audience> addDiscount(
+      @NotNull UUID visitorId, @NotNull OptionalDiscount optionalDiscount) {
+    Quoted q = quoted.get(indexOf(visitorId));
+    List<OptionalDiscount> optionalDiscounts = new ArrayList<>(q.visitor.optionalDiscounts());
+    optionalDiscounts.add(optionalDiscount);
+    replace(q, withOptionalDiscounts(q.visitor, optionalDiscounts));
+    return reprice(NO_PAIRING);
+  }
+
+  /** Removes a discount from the first visitor with the given id. */
+  public @NotNull List<Audience> removeDiscount(
+      @NotNull UUID visitorId, @NotNull OptionalDiscount optionalDiscount) {
+    Quoted q = quoted.get(indexOf(visitorId));
+    List<OptionalDiscount> optionalDiscounts = new ArrayList<>(q.visitor.optionalDiscounts());
+    if (!optionalDiscounts.remove(optionalDiscount)) {
+      throw new IllegalArgumentException(
+          STR."visitor \{visitorId} does not have \{optionalDiscount}");
+    }
+    replace(q, withOptionalDiscounts(q.visitor, optionalDiscounts));
+    return reprice(NO_PAIRING);
+  }
+
+  private static @NotNull Visitor withOptionalDiscounts(
+      @NotNull Visitor visitor, @NotNull List<OptionalDiscount> optionalDiscounts) {
+    return new Visitor(visitor.id(), visitor.discount(), List.copyOf(optionalDiscounts), null);
+  }
+
+  private int indexOf(@NotNull UUID visitorId) {
+    for (int index = 0; index < quoted.size(); index++) {
+      if (quoted.get(index).visitor.id().equals(visitorId)) {
+        return index;
+      }
+    }
+    throw new IllegalArgumentException(STR."no visitor \{visitorId} in this session");
+  }
+
+  /** Gives the visitor new optional discounts; its discount type and so its pairing stay. */
+  private void replace(@NotNull Quoted q, @NotNull Visitor visitor) {
+    removed(q);
+    q.visitor = visitor;
+    added(q);
+  }
+
+  /** Queues lookups for what the visitor brings and marks it for repricing. */
+  private void added(@NotNull Quoted q) {
+    lookUp(q.visitor);
+    q.audience = null;
+    unchecked.add(q);
+    if (visitorCounts.merge(q.visitor, 1, Integer::sum) > 1) {
+      sharingPersonalDiscountsChanged(q.visitor);
+    }
+  }
+
+  private void removed(@NotNull Quoted q) {
+    if (visitorCounts.computeIfPresent(q.visitor, (visitor, count) -> count == 1 ? null : count - 1)
+        != null) {
+      sharingPersonalDiscountsChanged(q.visitor);
+    }
+    unchecked.remove(q);
+    if (0 <= q.shoppingReceipt) {
+      shoppingReceiptHolders--;
+    }
+    if (0 <= q.internetPremiumMember) {
+      internetPremiumMemberHolders--;
+    }
+    q.shoppingReceipt = -1;
+    q.internetPremiumMember = -1;
+  }
+
+  /** Queues lookups for the shareholder ticket, member ids and discount tickets not checked yet. */
+  private void lookUp(@NotNull Visitor visitor) {
+    if (visitor.discount() instanceof ShareHolderTicket s
+        && checkedShareHolderTickets.add(s.id())) {
+      pendingShareHolderTickets.add(s.id());
+    }
+    for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+      switch (optionalDiscount) {
+        case InternetPremiumMember member -> {
+          if (checkedMemberIds.add(member.userId())) {
+            pendingMemberIds.add(member.userId());
+          }
+        }
+        case DiscountTicket discountTicket -> {
+          if (checkedDiscountTickets.add(discountTicket)) {
+            pendingDiscountTickets.add(discountTicket);
+          }
+        }
+        default -> {}
+      }
+    }
+  }
+
+  /** Marks for repricing the visitors equal to {@code visitor}, which share personal discounts. */
+  private void sharingPersonalDiscountsChanged(@NotNull Visitor visitor) {
+    for (Quoted q : quoted) {
+      if (q.visitor.equals(visitor)) {
+        q.audience = null;
+      }
+    }
+  }
+
+  /**
+   * Reprices the group, pairing again the visitors from {@code from} on, which is {@link
+   * #NO_PAIRING} when no discount type was added or removed.
+   */
+  private @NotNull List<Audience> reprice(int from) {
+    if (!pendingShareHolderTickets.isEmpty()) {
+      validatedDiscounts
+          .publishedShareHolderTickets()
+          .addAll(
+              logic.publishedShareHolderTicketsDatabase.publishedShareHolderTickets(
+                  pendingShareHolderTickets));
+      pendingShareHolderTickets.clear();
+    }
+    PricingSnapshot snapshot = logic.pricingSnapshot();
+    boolean repriceAll = snapshot != this.snapshot;
+    this.snapshot = snapshot;
+    if (repriceAll) {
+      // the pairing of female and elderly visitors depends on the day
+      from = 0;
+    }
+    if (from != NO_PAIRING) {
+      pairFrom(from, snapshot);
+    }
+    ShareHolderTicket shareHolderTicket = shareHolderTicketMakingTheGroupFree();
+    if (!Objects.equals(shareHolderTicket, this.shareHolderTicket)) {
+      repriceAll = true;
+      this.shareHolderTicket = shareHolderTicket;
+    }
+    int size = quoted.size();
+    Audience[] audiences = new Audience[size];
+    if (shareHolderTicket != null) {
+      if (repriceAll) {
+        shareHolderDiscountDetails = Logic.shareHolderDiscountDetails(snapshot, shareHolderTicket);
+        effectiveDiscounts = null;
+      }
+      for (int index = 0; index < size; index++) {
+        Quoted q = quoted.get(index);
+        if (repriceAll || q.audience == null) {
+          q.audience = Logic.shareHolderAudience(q.visitor, shareHolderDiscountDetails);
+        }
+        audiences[index] = q.audience;
+      }
+    } else {
+      repriceWithoutShareHolderTicket(snapshot, repriceAll, audiences);
+    }
+    this.audiences = List.of(audiences);
+    return this.audiences;
+  }
+
+  private @Nullable ShareHolderTicket shareHolderTicketMakingTheGroupFree() {
+    if (shareHolderTicketHolders == 0) {
+      return null;
+    }
+    ShareHolderTicketClaims claims = logic.shareHolderTicketClaims;
+    Set<UUID> visitorIds = null;
+    for (Quoted q : quoted) {
+      if (q.visitor.discount() instanceof ShareHolderTicket s
+          && validatedDiscounts.isPublishedShareHolderTicket(s.id())) {
+        if (claims != null && visitorIds == null) {
+          visitorIds = ShareHolderTicketClaims.visitorIdsOf(visitorGroup());
+        }
+        if (claims == null || claims.isClaimableBy(s.id(), visitorIds)) {
+          return s;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Pairs the visitors from {@code from} on again, starting from the queue the visitor before left,
+   * and marks for repricing every visitor whose price by visitor properties changed, including
+   * earlier visitors who became or stopped being a companion.
+   */
+  private void pairFrom(int from, @NotNull PricingSnapshot snapshot) {
+    int queueHead = 0;
+    int queueTail = 0;
+    boolean companionDiscountAvailable = false;
+    if (0 < from) {
+      Quoted before = quoted.get(from - 1);
+      queueHead = before.queueHead;
+      queueTail = before.queueTail;
+      companionDiscountAvailable = before.companionDiscountAvailable;
+    }
+    int size = quoted.size();
+    if (fullPriceQueue.length < size) {
+      fullPriceQueue = Arrays.copyOf(fullPriceQueue, Math.max(size, fullPriceQueue.length * 2));
+    }
+    for (int index = from; index < size; index++) {
+      Quoted q = quoted.get(index);
+      q.index = index;
+      q.pairing = pairingOf(q.visitor.discount(), snapshot);
+      q.queuePosition = -1;
+      q.companion = false;
+      switch (q.pairing) {
+        case NO_DISCOUNT_TYPE -> {
+          if (companionDiscountAvailable) {
+            q.companion = true;
+            companionDiscountAvailable = false;
+          } else {
+            q.queuePosition = queueTail;
+            fullPriceQueue[queueTail++] = q;
+          }
+        }
+        case FULL_PRICE -> {
+          q.queuePosition = queueTail;
+          fullPriceQueue[queueTail++] = q;
+        }
+        case DISABILITY -> {
+          if (queueHead < queueTail) {
+            queueHead++;
+          } else {
+            companionDiscountAvailable = true;
+          }
+        }
+        case OWN_DISCOUNT -> {}
+      }
+      q.queueHead = queueHead;
+      q.queueTail = queueTail;
+      q.companionDiscountAvailable = companionDiscountAvailable;
+    }
+    if (queueTail < queuedVisitors) {
+      Arrays.fill(fullPriceQueue, queueTail, queuedVisitors, null);
+    }
+    queuedVisitors = queueTail;
+    int pairedBefore = pairedCompanions;
+    pairedCompanions = queueHead;
+    for (int index = from; index < size; index++) {
+      priceByVisitorProperties(quoted.get(index), snapshot);
+    }
+    int changedUntil = Math.min(Math.max(pairedBefore, queueHead), queueTail);
+    for (int position = Math.min(pairedBefore, queueHead); position < changedUntil; position++) {
+      Quoted q = fullPriceQueue[position];
+      if (q != null && q.index < from) {
+        priceByVisitorProperties(q, snapshot);
+      }
+    }
+  }
+
+  private static @NotNull Pairing pairingOf(
+      @Nullable DiscountType discountType, @NotNull PricingSnapshot snapshot) {
+    return switch (discountType) {
+      case null -> Pairing.NO_DISCOUNT_TYPE;
+      case ShareHolderTicket shareHolderTicket -> Pairing.FULL_PRICE;
+      case DiscountTypes type ->
+          switch (type) {
+            case CHILD -> Pairing.OWN_DISCOUNT;
+            case DISABILITIES -> Pairing.DISABILITY;
+            case FEMALES, ELDERLIES ->
+                snapshot.femaleAndElderlyDiscountAvailable()
+                    ? Pairing.OWN_DISCOUNT
+                    : Pairing.FULL_PRICE;
+          };
+    };
+  }
+
+  /** Prices the visitor as {@link Logic#priceByVisitorProperties} would from its pairing. */
+  private void priceByVisitorProperties(@NotNull Quoted q, @NotNull PricingSnapshot snapshot) {
+    int price = snapshot.eightyPercentOfBasePrice().value();
+    Discount discount = snapshot.disabilityDiscount();
+    DiscountKind kind = DiscountKind.DISABILITIES;
+    switch (q.pairing) {
+      case OWN_DISCOUNT -> {
+        DiscountTypes discountType = (DiscountTypes) Objects.requireNonNull(q.visitor.discount());
+        kind = DiscountKind.of(discountType);
+        switch (discountType) {
+          case CHILD -> {
+            price = snapshot.halfOfBasePrice().value();
+            discount = snapshot.childDiscount();
+          }
+          case FEMALES -> discount = snapshot.femaleDiscount();
+          default -> discount = snapshot.elderlyDiscount();
+        }
+      }
+      case DISABILITY -> {}
+      default -> {
+        if (!q.companion && !(0 <= q.queuePosition && q.queuePosition < pairedCompanions)) {
+          price = snapshot.basePrice().value();
+          discount = null;
+          kind = null;
+        }
+      }
+    }
+    if (q.propertyPrice != price || q.propertyDiscount != discount) {
+      q.propertyPrice = price;
+      q.propertyDiscount = discount;
+      q.propertyKind = kind;
+      q.audience = null;
+    }
+  }
+
+  private void repriceWithoutShareHolderTicket(
+      @NotNull PricingSnapshot snapshot,
+      boolean repriceAll,
+      @NotNull Audience @NotNull [] audiences) {
+    if (!pendingMemberIds.isEmpty()) {
+      validatedDiscounts
+          .validMemberIds()
+          .addAll(logic.internetPremiumMembersDatabase.validMemberIds(pendingMemberIds));
+      pendingMemberIds.clear();
+    }
+    if (!pendingDiscountTickets.isEmpty()) {
+      validatedDiscounts
+          .validDiscountTickets()
+          .addAll(logic.eventDatabase.validDiscountTickets(pendingDiscountTickets));
+      pendingDiscountTickets.clear();
+    }
+    for (Quoted q : unchecked) {
+      findEffectiveForAllDiscounts(q);
+    }
+    unchecked.clear();
+    ValidatedDiscounts validatedDiscounts = this.validatedDiscounts;
+    TicketRedemptions redemptions = logic.ticketRedemptions;
+    if (redemptions != null && !validatedDiscounts.validDiscountTickets().isEmpty()) {
+      Set<DiscountTicket> redeemable = new HashSet<>();
+      for (DiscountTicket discountTicket : validatedDiscounts.validDiscountTickets()) {
+        if (!redemptions.isClaimed(discountTicket)) {
+          redeemable.add(discountTicket);
+        }
+      }
+      validatedDiscounts =
+          new ValidatedDiscounts(
+              validatedDiscounts.publishedShareHolderTickets(),
+              validatedDiscounts.validMemberIds(),
+              redeemable,
+              true);
+      repriceAll = true;
+    }
+    List<EffectiveDiscount> effectiveDiscounts = effectiveForAllDiscounts();
+    if (!effectiveDiscounts.equals(this.effectiveDiscounts)) {
+      repriceAll = true;
+      this.effectiveDiscounts = effectiveDiscounts;
+    }
+    for (int index = 0; index < audiences.length; index++) {
+      Quoted q = quoted.get(index);
+      if (repriceAll || q.audience == null) {
+        q.audience = price(q, snapshot, validatedDiscounts, effectiveDiscounts);
+      }
+      audiences[index] = q.audience;
+    }
+  }
+
+  /** Finds the first effective receipt and valid member the visitor brings. */
+  private void findEffectiveForAllDiscounts(@NotNull Quoted q) {
+    List<OptionalDiscount> optionalDiscounts = q.visitor.optionalDiscounts();
+    for (int position = 0; position < optionalDiscounts.size(); position++) {
+      switch (optionalDiscounts.get(position)) {
+        case ShoppingReceipt receipt -> {
+          if (q.shoppingReceipt < 0 && Logic.isEffective(receipt)) {
+            q.shoppingReceipt = position;
+            shoppingReceiptHolders++;
+          }
+        }
+        case InternetPremiumMember member -> {
+          if (q.internetPremiumMember < 0
+              && validatedDiscounts.isValidMemberId(member.userId())) {
+            q.internetPremiumMember = position;
+            internetPremiumMemberHolders++;
+          }
+        }
+        default -> {}
+      }
+    }
+  }
+
+  /**
+   * The first effective receipt and valid member in the group, in the order they were offered, as
+   * {@link Logic#effectiveForAllDiscounts} picks them.
+   */
+  private @NotNull List<EffectiveDiscount> effectiveForAllDiscounts() {
+    Quoted shoppingReceipt = null;
+    Quoted internetPremiumMember = null;
+    boolean findShoppingReceipt = 0 < shoppingReceiptHolders;
+    boolean findInternetPremiumMember = 0 < internetPremiumMemberHolders;
+    for (int index = 0;
+        (findShoppingReceipt || findInternetPremiumMember) && index < quoted.size();
+        index++) {
+      Quoted q = quoted.get(index);
+      if (findShoppingReceipt && 0 <= q.shoppingReceipt) {
+        shoppingReceipt = q;
+        findShoppingReceipt = false;
+      }
+      if (findInternetPremiumMember && 0 <= q.internetPremiumMember) {
+        internetPremiumMember = q;
+        findInternetPremiumMember = false;
+      }
+    }
+    List<EffectiveDiscount> effectiveDiscounts = new ArrayList<>(2);
+    if (shoppingReceipt != null) {
+      effectiveDiscounts.add(effectiveDiscount(shoppingReceipt, shoppingReceipt.shoppingReceipt));
+    }
+    if (internetPremiumMember != null) {
+      EffectiveDiscount member =
+          effectiveDiscount(internetPremiumMember, internetPremiumMember.internetPremiumMember);
+      if (shoppingReceipt != null
+          && member.isOfferedBefore(shoppingReceipt, shoppingReceipt.shoppingReceipt)) {
+        effectiveDiscounts.addFirst(member);
+      } else {
+        effectiveDiscounts.add(member);
+      }
+    }
+    return effectiveDiscounts;
+  }
+
+  private static @NotNull EffectiveDiscount effectiveDiscount(@NotNull Quoted owner, int position) {
+    return new EffectiveDiscount(
+        owner, position, owner.visitor.optionalDiscounts().get(position));
+  }
+
+  /**
+   * Prices the visitor alone from its price by visitor properties, merging the discounts for all
+   * with the personal discounts of the visitor and of equal visitors in the order offered.
+   */
+  private @NotNull Audience price(
+      @NotNull Quoted q,
+      @NotNull PricingSnapshot snapshot,
+      @NotNull ValidatedDiscounts validatedDiscounts,
+      @NotNull List<EffectiveDiscount> forAll) {
+    scratch.load(q.visitor);
+    if (q.propertyDiscount == null) {
+      scratch.price(0, q.propertyPrice);
+    } else {
+      scratch.price(
+          0, q.propertyPrice, q.propertyDiscount, Objects.requireNonNull(q.propertyKind));
+    }
+    Logic.applyPersonalStamp(scratch, snapshot, 0);
+    int nextForAll = 0;
+    for (Quoted sharing : sharingPersonalDiscountsWith(q)) {
+      List<OptionalDiscount> optionalDiscounts = sharing.visitor.optionalDiscounts();
+      for (int position = 0; position < optionalDiscounts.size(); position++) {
+        OptionalDiscount optionalDiscount = optionalDiscounts.get(position);
+        if (optionalDiscount.isForAll()) {
+          continue;
+        }
+        while (nextForAll < forAll.size()
+            && forAll.get(nextForAll).isOfferedBefore(sharing, position)) {
+          Logic.applyOptionalDiscount(
+              scratch, snapshot, validatedDiscounts, forAll.get(nextForAll++).discount(), 0);
+        }
+        Logic.applyOptionalDiscount(scratch, snapshot, validatedDiscounts, optionalDiscount, 0);
+      }
+    }
+    while (nextForAll < forAll.size()) {
+      Logic.applyOptionalDiscount(
+          scratch, snapshot, validatedDiscounts, forAll.get(nextForAll++).discount(), 0);
+    }
+    Audience audience = Logic.audienceOf(scratch, snapshot, 0);
+    scratch.clear();
+    return audience;
+  }
+
+  /** The visitor and the visitors equal to it, in group order. */
+  private @NotNull List<Quoted> sharingPersonalDiscountsWith(@NotNull Quoted q) {
+    if (visitorCounts.getOrDefault(q.visitor, 0) <= 1) {
+      return List.of(q);
+    }
+    List<Quoted> sharing = new ArrayList<>();
+    for (Quoted other : quoted) {
+      if (other.visitor.equals(q.visitor)) {
+        sharing.add(other);
+      }
+    }
+    return sharing;
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.theater;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records which group used each published {@link ShareHolderTicket}, so that a ticket makes only
+ * one group free. A group is identified by the ids of its visitors regardless of their order, and
+ * claiming a ticket again for the same group succeeds, so a group can be priced again after a
+ * timeout or a retry at the counter.
+ *
+ * <p>Claims go to a {@link ConcurrentHashMap}, where a claim of a new ticket is a single CAS and
+ * claims of different tickets rarely contend, so there is no lock shared by all counters.
+ */
+public final class ShareHolderTicketClaims {
+
+  /**
+   * @param claims - tickets claimed by a group for the first time.
+   * @param retries - tickets claimed again by the group that had claimed them.
+   * @param rejections - tickets refused because another group had claimed them.
+   */
+  public record Stats(long claims, long retries, long rejections) {}
+
+  private final @NotNull Map<UUID, Set<UUID>> claims = new ConcurrentHashMap<>();
+  private final @NotNull LongAdder claimed = new LongAdder();
+  private final @NotNull LongAdder retries = new LongAdder();
+  private final @NotNull LongAdder rejections = new LongAdder();
+
+  /**
+   * Claims the ticket for the group of {@code visitorIds}.
+   *
+   * @return {@code false} if another group has claimed it.
+   */
+  public boolean claim(@NotNull UUID ticketId, @NotNull Set<UUID> visitorIds) {
+    Set<UUID> group = Set.copyOf(visitorIds);
+    Set<UUID> owner = claims.putIfAbsent(ticketId, group);
+    if (owner == null) {
+      claimed.increment();
+      return true;
+    }
+    if (owner.equals(group)) {
+      retries.increment();
+      return true;
+    }
+    rejections.increment();
+    return false;
+  }
+
+  /** Claims the ticket for the visitors of the group. */
+  public boolean claim(@NotNull UUID ticketId, @NotNull VisitorGroup visitorGroup) {
+    return claim(ticketId, visitorIdsOf(visitorGroup));
+  }
+
+  /** Gives the ticket back if the group of {@code visitorIds} holds it, e.g. for a voided sale. */
+  public boolean release(@NotNull UUID ticketId, @NotNull Set<UUID> visitorIds) {
+    return claims.remove(ticketId, Set.copyOf(visitorIds));
+  }
+
+  public boolean isClaimed(@NotNull UUID ticketId) {
+    return claims.containsKey(ticketId);
+  }
+
+  /** Whether {@link #claim} would succeed for the group of {@code visitorIds}, without claiming. */
+  public boolean isClaimableBy(@NotNull UUID ticketId, @NotNull Set<UUID> visitorIds) {
+    Set<UUID> owner = claims.get(ticketId);
+    return owner == null || owner.equals(Set.copyOf(visitorIds));
+  }
+
+  static @NotNull Set<UUID> visitorIdsOf(@NotNull VisitorGroup visitorGroup) {
+    List<UUID> visitorIds = new ArrayList<>(visitorGroup.visitors().size());
+    for (Visitor visitor : visitorGroup) {
+      visitorIds.add(visitor.id());
+    }
+    return Set.copyOf(visitorIds);
+  }
+
+  public @NotNull Stats stats() {
+    return new Stats(claimed.sum(), retries.sum(), rejections.sum());
+  }
+}
@@ -0,0 +1,306 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact binary encoding of {@link VisitorGroup}s and {@link Audience}s, read and written directly
+ * on {@link ByteBuffer}s. UUIDs are two longs, the kind of a discount is a tag byte, numbers are
+ * zigzag varints, and discount titles known to {@link Logic} are one-byte dictionary ids.
+ *
+ * <p>Writing past the limit of a buffer throws {@link java.nio.BufferOverflowException}, reading
+ * past it {@link java.nio.BufferUnderflowException}, and an unknown tag or a count that is
+ * negative or larger than the bytes left {@link IllegalArgumentException}, so that a malformed
+ * payload never makes the reader allocate more than its own size. Tags and dictionary ids are
+ * part of the format and must not be renumbered; new ones go at the end.
+ */
+public final class TheaterCodec {
+
+  private TheaterCodec() {}
+
+  // tags of discount types and discount sources
+  private static final byte NONE = 0;
+  private static final byte CHILD = 1;
+  private static final byte DISABILITIES = 2;
+  private static final byte ELDERLIES = 3;
+  private static final byte FEMALES = 4;
+  private static final byte SHARE_HOLDER_TICKET = 5;
+  private static final byte PERSONAL_STAMP = 6;
+  private static final byte SHOPPING_RECEIPT = 7;
+  private static final byte INTERNET_PREMIUM_MEMBER = 8;
+  private static final byte DISCOUNT_TICKET = 9;
+
+  /** Titles by dictionary id. Id {@code 0} is followed by a title not in the dictionary. */
+  private static final @NotNull String @NotNull [] TITLES = {
+    "",
+    Logic.CHILD_TEXT,
+    Logic.DISABILITIES_TEXT,
+    Logic.FEMALES_TEXT,
+    Logic.ELDERLIES_TEXT,
+    Logic.SHARE_HOLDER_TICKET_TEXT,
+    Logic.PERSONAL_STAMP_TEXT,
+    Logic.SHOPPING_RECEIPT_TEXT,
+    Logic.INTERNET_PREMIUM_MEMBER_TEXT,
+    Logic.DISCOUNT_TICKET_TEXT,
+  };
+
+  public static void writeVisitorGroup(
+      @NotNull ByteBuffer buffer, @NotNull VisitorGroup visitorGroup) {
+    writeVarInt(buffer, visitorGroup.visitors().size());
+    for (Visitor visitor : visitorGroup) {
+      writeVisitor(buffer, visitor);
+    }
+  }
+
+  public static @NotNull VisitorGroup readVisitorGroup(@NotNull ByteBuffer buffer) {
+    int size = readSize(buffer);
+    Visitor[] visitors = new Visitor[size];
+    for (int i = 0; i < size; i++) {
+      visitors[i] = readVisitor(buffer);
+    }
+    return new VisitorGroup(List.of(visitors));
+  }
+
+  public static void writeAudiences(@NotNull ByteBuffer buffer, @NotNull List<Audience> audiences) {
+    writeVarInt(buffer, audiences.size());
+    for (Audience audience : audiences) {
+      writeAudience(buffer, audience);
+    }
+  }
+
+  public static @NotNull List<Audience> readAudiences(@NotNull ByteBuffer buffer) {
+    int size = readSize(buffer);
+    Audience[] audiences = new Audience[size];
+    for (int i = 0; i < size; i++) {
+      audiences[i] = readAudience(buffer);
+    }
+    return List.of(audiences);
+  }
+
+  public static void writeVisitor(@NotNull ByteBuffer buffer, @NotNull Visitor visitor) {
+    writeUuid(buffer, visitor.id());
+    DiscountType discountType = visitor.discount();
+    if (discountType == null) {
+      buffer.put(NONE);
+    } else {
+      writeSource(buffer, discountType);
+    }
+    writeVarInt(buffer, visitor.optionalDiscounts().size());
+    for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+      writeSource(buffer, optionalDiscount);
+    }
+  }
+
+  public static @NotNull Visitor readVisitor(@NotNull ByteBuffer buffer) {
+    UUID id = readUuid(buffer);
+    byte tag = buffer.get();
+    DiscountType discountType = null;
+    if (tag != NONE) {
+      if (!(readSource(buffer, tag) instanceof DiscountType type)) {
+        throw new IllegalArgumentException("discount type expected");
+      }
+      discountType = type;
+    }
+    int size = readSize(buffer);
+    OptionalDiscount[] optionalDiscounts = new OptionalDiscount[size];
+    for (int i = 0; i < size; i++) {
+      if (!(readSource(buffer, buffer.get()) instanceof OptionalDiscount optionalDiscount)) {
+        throw new IllegalArgumentException("optional discount expected");
+      }
+      optionalDiscounts[i] = optionalDiscount;
+    }
+    return new Visitor(id, discountType, List.of(optionalDiscounts), null);
+  }
+
+  public static void writeAudience(@NotNull ByteBuffer buffer, @NotNull Audience audience) {
+    writeUuid(buffer, audience.id());
+    writeVarInt(buffer, audience.newPersonalStamp().count());
+    writeVarInt(buffer, audience.price().value());
+    writeVarInt(buffer, audience.appliedDiscountKinds());
+    writeVarInt(buffer, audience.discountDetails().size());
+    for (Discount discount : audience.discountDetails()) {
+      writeDiscount(buffer, discount);
+    }
+  }
+
+  public static @NotNull Audience readAudience(@NotNull ByteBuffer buffer) {
+    UUID id = readUuid(buffer);
+    PersonalStamp newPersonalStamp = readPersonalStamp(buffer);
+    Price price = new Price(readVarInt(buffer));
+    int appliedDiscountKinds = readVarInt(buffer);
+    int size = readSize(buffer);
+    Discount[] discounts = new Discount[size];
+    for (int i = 0; i < size; i++) {
+      discounts[i] = readDiscount(buffer);
+    }
+    Audience audience = new Audience(id, newPersonalStamp, price, List.of(discounts));
+    // still part of the format, so a payload contradicting its own discounts is rejected
+    if (audience.appliedDiscountKinds() != appliedDiscountKinds) {
+      throw new IllegalArgumentException(
+          STR."discount kinds \{appliedDiscountKinds} do not match \{audience.discountDetails()}");
+    }
+    return audience;
+  }
+
+  public static void writeDiscount(@NotNull ByteBuffer buffer, @NotNull Discount discount) {
+    writeVarInt(buffer, discount.price().value());
+    String text = discount.description().getText();
+    int id = dictionaryIdOf(text);
+    buffer.put((byte) id);
+    if (id == 0) {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(buffer, bytes.length);
+      buffer.put(bytes);
+    }
+    writeSource(buffer, discount.description().getSource());
+  }
+
+  public static @NotNull Discount readDiscount(@NotNull ByteBuffer buffer) {
+    Price price = new Price(readVarInt(buffer));
+    int id = Byte.toUnsignedInt(buffer.get());
+    String text;
+    if (id == 0) {
+      byte[] bytes = new byte[readSize(buffer)];
+      buffer.get(bytes);
+      text = new String(bytes, StandardCharsets.UTF_8);
+    } else if (id < TITLES.length) {
+      text = TITLES[id];
+    } else {
+      throw new IllegalArgumentException(STR."unknown title id \{id}");
+    }
+    Object source = readSource(buffer, buffer.get());
+    return new Discount(price, DiscountDescription.of(text, source));
+  }
+
+  private static int dictionaryIdOf(@NotNull String text) {
+    for (int id = 1; id < TITLES.length; id++) {
+      if (TITLES[id].equals(text)) {
+        return id;
+      }
+    }
+    return 0;
+  }
+
+  /** Writes a discount type, an optional discount or the source of a discount with its tag. */
+  private static void writeSource(@NotNull ByteBuffer buffer, @NotNull Object source) {
+    switch (source) {
+      case DiscountTypes.CHILD -> buffer.put(CHILD);
+      case DiscountTypes.DISABILITIES -> buffer.put(DISABILITIES);
+      case DiscountTypes.ELDERLIES -> buffer.put(ELDERLIES);
+      case DiscountTypes.FEMALES -> buffer.put(FEMALES);
+      case ShareHolderTicket shareHolderTicket -> {
+        buffer.put(SHARE_HOLDER_TICKET);
+        writeUuid(buffer, shareHolderTicket.id());
+        writeUuid(buffer, shareHolderTicket.owner());
+      }
+      case PersonalStamp personalStamp -> {
+        buffer.put(PERSONAL_STAMP);
+        writeVarInt(buffer, personalStamp.count());
+      }
+      case ShoppingReceipt shoppingReceipt -> {
+        buffer.put(SHOPPING_RECEIPT);
+        writeVarInt(buffer, shoppingReceipt.totalPayment());
+      }
+      case InternetPremiumMember internetPremiumMember -> {
+        buffer.put(INTERNET_PREMIUM_MEMBER);
+        writeUuid(buffer, internetPremiumMember.userId());
+      }
+      case DiscountTicket discountTicket -> {
+        buffer.put(DISCOUNT_TICKET);
+        writeUuid(buffer, discountTicket.eventId());
+        writeVarInt(buffer, discountTicket.ticketSeqId());
+        writeVarLong(buffer, discountTicket.distributionDate().toEpochDay());
+        writeVarInt(buffer, discountTicket.price().value());
+      }
+      default ->
+          throw new IllegalArgumentException(STR."cannot encode \{source.getClass().getName()}");
+    }
+  }
+
+  private static @NotNull Object readSource(@NotNull ByteBuffer buffer, byte tag) {
+    return switch (tag) {
+      case CHILD -> DiscountTypes.CHILD;
+      case DISABILITIES -> DiscountTypes.DISABILITIES;
+      case ELDERLIES -> DiscountTypes.ELDERLIES;
+      case FEMALES -> DiscountTypes.FEMALES;
+      case SHARE_HOLDER_TICKET -> new ShareHolderTicket(readUuid(buffer), readUuid(buffer));
+      case PERSONAL_STAMP -> readPersonalStamp(buffer);
+      case SHOPPING_RECEIPT -> new ShoppingReceipt(readVarInt(buffer));
+      case INTERNET_PREMIUM_MEMBER -> new InternetPremiumMember(readUuid(buffer));
+      case DISCOUNT_TICKET ->
+          new DiscountTicket(
+              readUuid(buffer),
+              readVarInt(buffer),
+              LocalDate.ofEpochDay(readVarLong(buffer)),
+              new Price(readVarInt(buffer)));
+      default -> throw new IllegalArgumentException(STR."unknown tag \{tag}");
+    };
+  }
+
+  private static @NotNull PersonalStamp readPersonalStamp(@NotNull ByteBuffer buffer) {
+    int count = readVarInt(buffer);
+    return 0 <= count && count <= 10 ? PersonalStamps.of(count) : new PersonalStamp(count);
+  }
+
+  static void writeUuid(@NotNull ByteBuffer buffer, @NotNull UUID uuid) {
+    buffer.putLong(uuid.getMostSignificantBits());
+    buffer.putLong(uuid.getLeastSignificantBits());
+  }
+
+  static @NotNull UUID readUuid(@NotNull ByteBuffer buffer) {
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+
+  /** Zigzag varint, so that small negative numbers stay short too. */
+  static void writeVarInt(@NotNull ByteBuffer buffer, int value) {
+    writeVarLong(buffer, value);
+  }
+
+  static int readVarInt(@NotNull ByteBuffer buffer) {
+    long value = readVarLong(buffer);
+    if ((int) value != value) {
+      throw new IllegalArgumentException(STR."\{value} does not fit in an int");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Count of the elements or bytes that follow, each of which takes at least a byte.
+   *
+   * @throws IllegalArgumentException if negative or larger than the bytes left in the buffer.
+   */
+  private static int readSize(@NotNull ByteBuffer buffer) {
+    int size = readVarInt(buffer);
+    if (size < 0 || buffer.remaining() < size) {
+      throw new IllegalArgumentException(STR."count \{size} with \{buffer.remaining()} bytes left");
+    }
+    return size;
+  }
+
+  static void writeVarLong(@NotNull ByteBuffer buffer, long value) {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7fL) != 0) {
+      buffer.put((byte) ((zigzag & 0x7f) | 0x80));
+      zigzag >>>= 7;
+    }
+    buffer.put((byte) zigzag);
+  }
+
+  static long readVarLong(@NotNull ByteBuffer buffer) {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      zigzag |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IllegalArgumentException("varint longer than 10 bytes");
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.theater;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/** Immutable set of {@link DiscountTicket#ticketSeqId()}s packed into a {@code long[]}. */
+public final class TicketBitmap {
+
+  static final @NotNull TicketBitmap EMPTY = new TicketBitmap(0, new long[0]);
+
+  final int firstSeqId;
+  final long @NotNull [] words;
+
+  private TicketBitmap(int firstSeqId, long @NotNull [] words) {
+    this.firstSeqId = firstSeqId;
+    this.words = words;
+  }
+
+  public static @NotNull TicketBitmap ofRange(int fromInclusive, int toExclusive) {
+    if (toExclusive <= fromInclusive) {
+      return EMPTY;
+    }
+    long size = (long) toExclusive - fromInclusive;
+    long[] words = new long[(int) ((size + 63) >>> 6)];
+    Arrays.fill(words, -1L);
+    if ((size & 63) != 0) {
+      words[words.length - 1] = (1L << size) - 1;
+    }
+    return new TicketBitmap(fromInclusive, words);
+  }
+
+  public static @NotNull TicketBitmap of(int @NotNull ... seqIds) {
+    if (seqIds.length == 0) {
+      return EMPTY;
+    }
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int seqId : seqIds) {
+      min = Math.min(min, seqId);
+      max = Math.max(max, seqId);
+    }
+    long[] words = new long[(int) ((((long) max - min) >>> 6) + 1)];
+    for (int seqId : seqIds) {
+      long index = (long) seqId - min;
+      words[(int) (index >>> 6)] |= 1L << index;
+    }
+    return new TicketBitmap(min, words);
+  }
+
+  public boolean contains(int seqId) {
+    long index = (long) seqId - firstSeqId;
+    if (index < 0 || (index >>> 6) >= words.length) {
+      return false;
+    }
+    return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+  }
+
+  public long byteSize() {
+    return 16L + 8L * words.length;
+  }
+}
@@ -0,0 +1,264 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Single-use redemption of {@link DiscountTicket}s. A ticket is identified by its event and
+ * sequence number, and is claimed by setting its bit in a bitset of the event with a CAS on the
+ * {@code long} word holding it, so that two kiosks never redeem the same ticket and neither waits
+ * for the other.
+ *
+ * <p>Bitsets are split into pages of {@value #PAGE_SEQ_IDS} sequence numbers created on first use.
+ * {@link #persist()} writes the pages of every event to a file, replaced by renaming, and
+ * {@link #open(Path)} reads it back. Tickets claimed after the last {@code persist()} are lost by
+ * a crash, so it is usually scheduled with {@link #persistEvery}.
+ *
+ * <p>The file starts with a 12 byte header of a magic number, a format version and the number of
+ * events. Each event is its UUID and number of pages, each page its index and words, all
+ * big-endian.
+ */
+public final class TicketRedemptions {
+
+  static final int MAGIC = 0x52444d50; // "RDMP"
+  static final int VERSION = 1;
+  static final int PAGE_SHIFT = 16;
+  static final int PAGE_SEQ_IDS = 1 << PAGE_SHIFT;
+  static final int PAGE_WORDS = PAGE_SEQ_IDS / Long.SIZE;
+
+  private static final @NotNull VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+  final @Nullable Path file;
+  private final @NotNull Map<UUID, Map<Integer, long[]>> events = new ConcurrentHashMap<>();
+  private final @NotNull AtomicLong changes = new AtomicLong();
+  private long persistedChanges;
+
+  /** Redemptions kept in memory only. */
+  public TicketRedemptions() {
+    this(null);
+  }
+
+  private TicketRedemptions(@Nullable Path file) {
+    this.file = file;
+  }
+
+  /** Redemptions persisted to {@code file}, reading the tickets claimed there if it exists. */
+  public static @NotNull TicketRedemptions open(@NotNull Path file) throws IOException {
+    TicketRedemptions redemptions = new TicketRedemptions(file);
+    if (Files.exists(file)) {
+      redemptions.read(file);
+    }
+    return redemptions;
+  }
+
+  /**
+   * Claims the ticket for the caller.
+   *
+   * @return {@code false} if it has already been claimed and not released.
+   */
+  public boolean claim(@NotNull DiscountTicket discountTicket) {
+    long[] page = pageOf(discountTicket, true);
+    int word = wordOf(discountTicket.ticketSeqId());
+    long bit = 1L << discountTicket.ticketSeqId();
+    long current;
+    do {
+      current = (long) WORD.getVolatile(page, word);
+      if ((current & bit) != 0) {
+        return false;
+      }
+    } while (!WORD.compareAndSet(page, word, current, current | bit));
+    changes.incrementAndGet();
+    return true;
+  }
+
+  /** Makes a claimed ticket redeemable again. */
+  public void release(@NotNull DiscountTicket discountTicket) {
+    long[] page = pageOf(discountTicket, false);
+    if (page == null) {
+      return;
+    }
+    int word = wordOf(discountTicket.ticketSeqId());
+    long bit = 1L << discountTicket.ticketSeqId();
+    long current;
+    do {
+      current = (long) WORD.getVolatile(page, word);
+      if ((current & bit) == 0) {
+        return;
+      }
+    } while (!WORD.compareAndSet(page, word, current, current & ~bit));
+    changes.incrementAndGet();
+  }
+
+  public boolean isClaimed(@NotNull DiscountTicket discountTicket) {
+    long[] page = pageOf(discountTicket, false);
+    return page != null
+        && ((long) WORD.getVolatile(page, wordOf(discountTicket.ticketSeqId()))
+                & (1L << discountTicket.ticketSeqId()))
+            != 0;
+  }
+
+  /** Claims every ticket it can, returning those claimed. */
+  public @NotNull Set<DiscountTicket> claimAll(@NotNull Collection<DiscountTicket> tickets) {
+    Set<DiscountTicket> claimed = new HashSet<>();
+    for (DiscountTicket discountTicket : tickets) {
+      if (claim(discountTicket)) {
+        claimed.add(discountTicket);
+      }
+    }
+    return claimed;
+  }
+
+  public void releaseAll(@NotNull Collection<DiscountTicket> tickets) {
+    for (DiscountTicket discountTicket : tickets) {
+      release(discountTicket);
+    }
+  }
+
+  /** Releases the tickets redeemed by a quote that was not issued after all. */
+  public void abandon(@NotNull List<Audience> audiences) {
+    for (Audience audience : audiences) {
+      for (Discount discount : audience.discountDetails()) {
+        if (discount.description().getSource() instanceof DiscountTicket discountTicket) {
+          release(discountTicket);
+        }
+      }
+    }
+  }
+
+  private long @Nullable [] pageOf(@NotNull DiscountTicket discountTicket, boolean create) {
+    Map<Integer, long[]> pages =
+        create
+            ? events.computeIfAbsent(discountTicket.eventId(), _ -> new ConcurrentHashMap<>())
+            : events.get(discountTicket.eventId());
+    if (pages == null) {
+      return null;
+    }
+    // unsigned, so that negative sequence numbers get pages of their own
+    int index = discountTicket.ticketSeqId() >>> PAGE_SHIFT;
+    return create ? pages.computeIfAbsent(index, _ -> new long[PAGE_WORDS]) : pages.get(index);
+  }
+
+  private static int wordOf(int seqId) {
+    return (seqId & (PAGE_SEQ_IDS - 1)) >>> 6;
+  }
+
+  /**
+   * Writes the claimed tickets to the file unless nothing changed since the last call. Tickets
+   * claimed or released meanwhile may or may not be included.
+   */
+  public synchronized void persist() throws IOException {
+    if (file == null) {
+      throw new IllegalStateException("redemptions are not persisted");
+    }
+    long changes = this.changes.get();
+    if (changes == persistedChanges) {
+      return;
+    }
+    Path written = file.resolveSibling(STR."\{file.getFileName()}.tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            written,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + PAGE_WORDS * Long.BYTES);
+      // copied, so that the counts in the file match what follows them
+      Map<UUID, Map<Integer, long[]>> events = Map.copyOf(this.events);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(events.size());
+      for (Map.Entry<UUID, Map<Integer, long[]>> event : events.entrySet()) {
+        Map<Integer, long[]> pages = Map.copyOf(event.getValue());
+        buffer.putLong(event.getKey().getMostSignificantBits());
+        buffer.putLong(event.getKey().getLeastSignificantBits());
+        buffer.putInt(pages.size());
+        for (Map.Entry<Integer, long[]> page : pages.entrySet()) {
+          writeFully(channel, buffer.flip());
+          buffer.clear().putInt(page.getKey());
+          for (int word = 0; word < PAGE_WORDS; word++) {
+            buffer.putLong((long) WORD.getVolatile(page.getValue(), word));
+          }
+        }
+        writeFully(channel, buffer.flip());
+        buffer.clear();
+      }
+      writeFully(channel, buffer.flip());
+      channel.force(true);
+    }
+    Files.move(written, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    persistedChanges = changes;
+  }
+
+  /**
+   * Schedules {@link #persist()} every {@code interval}. A failure is thrown from the returned
+   * future and stops the schedule.
+   */
+  public @NotNull ScheduledFuture<?> persistEvery(
+      @NotNull ScheduledExecutorService scheduler, @NotNull Duration interval) {
+    return scheduler.scheduleWithFixedDelay(
+        () -> {
+          try {
+            persist();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        interval.toNanos(),
+        interval.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void read(@NotNull Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (buffer.remaining() < 3 * Integer.BYTES
+        || buffer.getInt() != MAGIC
+        || buffer.getInt() != VERSION) {
+      throw new IOException(STR."\{file} is not a redemption file");
+    }
+    try {
+      for (int events = buffer.getInt(); 0 < events; events--) {
+        UUID eventId = new UUID(buffer.getLong(), buffer.getLong());
+        Map<Integer, long[]> pages = new ConcurrentHashMap<>();
+        for (int count = buffer.getInt(); 0 < count; count--) {
+          long[] page = new long[PAGE_WORDS];
+          pages.put(buffer.getInt(), page);
+          buffer.asLongBuffer().get(page);
+          buffer.position(buffer.position() + PAGE_WORDS * Long.BYTES);
+        }
+        this.events.put(eventId, pages);
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException(STR."\{file} is truncated", e);
+    }
+  }
+}
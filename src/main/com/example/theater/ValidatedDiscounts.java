@@ -0,0 +1,45 @@
+package com.example.theater;
+
+import java.util.Set;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Results of the database lookups for a {@link VisitorGroup}, resolved up front so that pricing
+ * does not go back to the databases per visitor.
+ *
+ * @param singleUseDiscountTickets - whether a discount ticket is removed from {@code
+ *     validDiscountTickets} once used, which then has to be mutable.
+ */
+record ValidatedDiscounts(
+    @NotNull Set<@NotNull UUID> publishedShareHolderTickets,
+    @NotNull Set<@NotNull UUID> validMemberIds,
+    @NotNull Set<@NotNull DiscountTicket> validDiscountTickets,
+    boolean singleUseDiscountTickets) {
+
+  ValidatedDiscounts(
+      @NotNull Set<@NotNull UUID> publishedShareHolderTickets,
+      @NotNull Set<@NotNull UUID> validMemberIds,
+      @NotNull Set<@NotNull DiscountTicket> validDiscountTickets) {
+    this(publishedShareHolderTickets, validMemberIds, validDiscountTickets, false);
+  }
+
+  boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+    return publishedShareHolderTickets.contains(ticketId);
+  }
+
+  boolean isValidMemberId(@NotNull UUID memberId) {
+    return validMemberIds.contains(memberId);
+  }
+
+  boolean isValidDiscountTicket(@NotNull DiscountTicket discountTicket) {
+    return validDiscountTickets.contains(discountTicket);
+  }
+
+  /** Whether the ticket is valid, using it up if tickets are single use. */
+  boolean useDiscountTicket(@NotNull DiscountTicket discountTicket) {
+    return singleUseDiscountTickets
+        ? validDiscountTickets.remove(discountTicket)
+        : validDiscountTickets.contains(discountTicket);
+  }
+}
@@ -0,0 +1,196 @@
+package com.example.theater;
+
+import static java.lang.StringTemplate.STR;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Visitors of many groups in columns, for pricing bookings in bulk without a {@link Visitor} and
+ * its list of optional discounts per visitor. Visitor {@code i} is described by the {@code i}-th
+ * element of every column, and group {@code g} is visitors {@code groupStarts[g]} to {@code
+ * groupStarts[g + 1] - 1}.
+ *
+ * <p>Only what {@link VisitorBatchPricing} reads is kept: member ids are validated and receipts
+ * checked when the batch is built, so a visitor carries only flags of the discounts for everyone
+ * they give. Shareholder and discount tickets need lookups per ticket, so groups with them are
+ * priced by {@link Logic} instead.
+ */
+public final class VisitorBatch {
+
+  /** {@link #discountTypes} of a visitor without a discount type. */
+  public static final byte NO_DISCOUNT_TYPE = 0;
+
+  /** The visitor has a shopping receipt large enough to give the discount. */
+  public static final byte SHOPPING_RECEIPT = 1;
+
+  /** The visitor is a valid internet premium member. */
+  public static final byte INTERNET_PREMIUM_MEMBER = 1 << 1;
+
+  /** The visitor offered their membership before their receipt. */
+  public static final byte MEMBER_BEFORE_RECEIPT = 1 << 2;
+
+  private static final @NotNull DiscountTypes @NotNull [] DISCOUNT_TYPES = DiscountTypes.values();
+
+  final long @NotNull [] mostSignificantBits;
+  final long @NotNull [] leastSignificantBits;
+
+  /** {@link #NO_DISCOUNT_TYPE}, or 1 + the ordinal of the {@link DiscountTypes}. */
+  final byte @NotNull [] discountTypes;
+
+  /** Count of the stamp of each visitor, 0 without one. */
+  final int @NotNull [] stampCounts;
+
+  /**
+   * Bits of {@link #SHOPPING_RECEIPT}, {@link #INTERNET_PREMIUM_MEMBER} and {@link
+   * #MEMBER_BEFORE_RECEIPT}.
+   */
+  final byte @NotNull [] optionalDiscounts;
+
+  final int @NotNull [] groupStarts;
+
+  /**
+   * @param groupStarts - index of the first visitor of each group, followed by the number of
+   *     visitors.
+   */
+  public VisitorBatch(
+      long @NotNull [] mostSignificantBits,
+      long @NotNull [] leastSignificantBits,
+      byte @NotNull [] discountTypes,
+      int @NotNull [] stampCounts,
+      byte @NotNull [] optionalDiscounts,
+      int @NotNull [] groupStarts) {
+    int size = mostSignificantBits.length;
+    if (leastSignificantBits.length != size
+        || discountTypes.length != size
+        || stampCounts.length != size
+        || optionalDiscounts.length != size) {
+      throw new IllegalArgumentException("columns differ in length");
+    }
+    if (groupStarts.length == 0
+        || groupStarts[0] != 0
+        || groupStarts[groupStarts.length - 1] != size) {
+      throw new IllegalArgumentException("groups do not cover the visitors");
+    }
+    for (int group = 1; group < groupStarts.length; group++) {
+      if (groupStarts[group] < groupStarts[group - 1]) {
+        throw new IllegalArgumentException(STR."group \{group} starts before group \{group - 1}");
+      }
+    }
+    for (int index = 0; index < size; index++) {
+      if (discountTypes[index] < 0 || DISCOUNT_TYPES.length < discountTypes[index]) {
+        throw new IllegalArgumentException(
+            STR."unknown discount type \{discountTypes[index]} of visitor \{index}");
+      }
+      if (stampCounts[index] < 0) {
+        throw new IllegalArgumentException(STR."negative stamp count of visitor \{index}");
+      }
+    }
+    this.mostSignificantBits = mostSignificantBits;
+    this.leastSignificantBits = leastSignificantBits;
+    this.discountTypes = discountTypes;
+    this.stampCounts = stampCounts;
+    this.optionalDiscounts = optionalDiscounts;
+    this.groupStarts = groupStarts;
+  }
+
+  /** Whether the group can be put in a batch, which it cannot with any ticket. */
+  public static boolean canHold(@NotNull VisitorGroup visitorGroup) {
+    for (Visitor visitor : visitorGroup) {
+      if (visitor.discount() instanceof ShareHolderTicket) {
+        return false;
+      }
+      for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+        if (optionalDiscount instanceof DiscountTicket) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Puts the groups in a batch, in the order given.
+   *
+   * @param validMemberIds - the member ids in the groups that are valid.
+   * @throws IllegalArgumentException if a group cannot be put in a batch.
+   */
+  public static @NotNull VisitorBatch of(
+      @NotNull Collection<@NotNull VisitorGroup> visitorGroups,
+      @NotNull Set<@NotNull UUID> validMemberIds) {
+    int size = 0;
+    for (VisitorGroup visitorGroup : visitorGroups) {
+      if (!canHold(visitorGroup)) {
+        throw new IllegalArgumentException(STR."\{visitorGroup} has tickets");
+      }
+      size += visitorGroup.visitors().size();
+    }
+    long[] mostSignificantBits = new long[size];
+    long[] leastSignificantBits = new long[size];
+    byte[] discountTypes = new byte[size];
+    int[] stampCounts = new int[size];
+    byte[] optionalDiscounts = new byte[size];
+    int[] groupStarts = new int[visitorGroups.size() + 1];
+    int index = 0;
+    int group = 0;
+    for (VisitorGroup visitorGroup : visitorGroups) {
+      groupStarts[group++] = index;
+      for (Visitor visitor : visitorGroup) {
+        mostSignificantBits[index] = visitor.id().getMostSignificantBits();
+        leastSignificantBits[index] = visitor.id().getLeastSignificantBits();
+        discountTypes[index] =
+            visitor.discount() instanceof DiscountTypes discountType
+                ? (byte) (1 + discountType.ordinal())
+                : NO_DISCOUNT_TYPE;
+        PersonalStamp personalStamp = visitor.personalStamp();
+        stampCounts[index] = personalStamp == null ? 0 : personalStamp.count();
+        optionalDiscounts[index] = optionalDiscountsOf(visitor, validMemberIds);
+        index++;
+      }
+    }
+    groupStarts[group] = index;
+    return new VisitorBatch(
+        mostSignificantBits,
+        leastSignificantBits,
+        discountTypes,
+        stampCounts,
+        optionalDiscounts,
+        groupStarts);
+  }
+
+  private static byte optionalDiscountsOf(
+      @NotNull Visitor visitor, @NotNull Set<@NotNull UUID> validMemberIds) {
+    int flags = 0;
+    for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+      if (optionalDiscount instanceof ShoppingReceipt receipt && Logic.isEffective(receipt)) {
+        flags |= SHOPPING_RECEIPT;
+      } else if (optionalDiscount instanceof InternetPremiumMember member
+          && (flags & INTERNET_PREMIUM_MEMBER) == 0
+          && validMemberIds.contains(member.userId())) {
+        flags |=
+            (flags & SHOPPING_RECEIPT) == 0
+                ? INTERNET_PREMIUM_MEMBER | MEMBER_BEFORE_RECEIPT
+                : INTERNET_PREMIUM_MEMBER;
+      }
+    }
+    return (byte) flags;
+  }
+
+  public int size() {
+    return mostSignificantBits.length;
+  }
+
+  public int groups() {
+    return groupStarts.length - 1;
+  }
+
+  public @NotNull UUID id(int index) {
+    return new UUID(mostSignificantBits[index], leastSignificantBits[index]);
+  }
+
+  static @NotNull DiscountTypes discountTypeOf(byte discountType) {
+    return DISCOUNT_TYPES[discountType - 1];
+  }
+}
@@ -0,0 +1,229 @@
+package com.example.theater;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Prices a {@link VisitorBatch} as {@link Logic} prices its groups one by one. Who becomes a
+ * disability companion and which discounts for everyone apply are decided per group first; the
+ * prices, the discounts never going below half of the base price and the next stamps are then
+ * calculated for as many visitors at once as {@link IntVector#SPECIES_PREFERRED} has lanes.
+ *
+ * <p>Uses the incubating vector API, so it needs {@code --add-modules jdk.incubator.vector}.
+ */
+public final class VisitorBatchPricing {
+
+  /**
+   * Prices of the visitors of a batch, by their index in it.
+   *
+   * @param appliedDiscountKinds - bitmask of {@link DiscountKind}s, as in {@link
+   *     Audience#appliedDiscountKinds()}.
+   */
+  public record Prices(
+      int @NotNull [] prices, int @NotNull [] appliedDiscountKinds, int @NotNull [] newStamps) {}
+
+  private static final @NotNull VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  private static final int EIGHTY_PERCENT_KINDS =
+      DiscountKind.DISABILITIES.bit() | DiscountKind.ELDERLIES.bit() | DiscountKind.FEMALES.bit();
+
+  final @NotNull Logic logic;
+
+  public VisitorBatchPricing(@NotNull Logic logic) {
+    this.logic = logic;
+  }
+
+  /** Puts the groups in a batch, validating all their member ids with one lookup. */
+  public @NotNull VisitorBatch batchOf(@NotNull Collection<@NotNull VisitorGroup> visitorGroups) {
+    Set<UUID> memberIds = new HashSet<>();
+    for (VisitorGroup visitorGroup : visitorGroups) {
+      for (Visitor visitor : visitorGroup) {
+        for (OptionalDiscount optionalDiscount : visitor.optionalDiscounts()) {
+          if (optionalDiscount instanceof InternetPremiumMember member) {
+            memberIds.add(member.userId());
+          }
+        }
+      }
+    }
+    return VisitorBatch.of(
+        visitorGroups,
+        memberIds.isEmpty()
+            ? Set.of()
+            : logic.internetPremiumMembersDatabase.validMemberIds(memberIds));
+  }
+
+  public @NotNull Prices price(@NotNull VisitorBatch batch) {
+    PricingSnapshot snapshot = logic.pricingSnapshot();
+    int size = batch.size();
+    int[] kinds = new int[size];
+    int[] firstAmounts = new int[size];
+    int[] firstKinds = new int[size];
+    int[] secondAmounts = new int[size];
+    int[] secondKinds = new int[size];
+    int[] fullPriceQueue = new int[size];
+    for (int group = 0; group < batch.groups(); group++) {
+      int from = batch.groupStarts[group];
+      int to = batch.groupStarts[group + 1];
+      priceByVisitorProperties(batch, snapshot, from, to, kinds, fullPriceQueue);
+      forAllDiscounts(batch, from, to, firstAmounts, firstKinds, secondAmounts, secondKinds);
+    }
+
+    int[] prices = new int[size];
+    int[] newStamps = new int[size];
+    IntVector basePrice = IntVector.broadcast(SPECIES, snapshot.basePrice().value());
+    IntVector eightyPercentOfBasePrice =
+        IntVector.broadcast(SPECIES, snapshot.eightyPercentOfBasePrice().value());
+    IntVector halfOfBasePrice = IntVector.broadcast(SPECIES, snapshot.halfOfBasePrice().value());
+    for (int index = 0; index < size; index += SPECIES.length()) {
+      VectorMask<Integer> lanes = SPECIES.indexInRange(index, size);
+      IntVector kind = IntVector.fromArray(SPECIES, kinds, index, lanes);
+      IntVector price =
+          basePrice
+              .blend(halfOfBasePrice, kind.compare(VectorOperators.EQ, DiscountKind.CHILD.bit()))
+              .blend(
+                  eightyPercentOfBasePrice,
+                  kind.and(EIGHTY_PERCENT_KINDS).compare(VectorOperators.NE, 0));
+
+      IntVector stamp = IntVector.fromArray(SPECIES, batch.stampCounts, index, lanes);
+      VectorMask<Integer> tenthStamp = stamp.compare(VectorOperators.EQ, 10);
+      VectorMask<Integer> discounted =
+          tenthStamp.and(price.compare(VectorOperators.GT, halfOfBasePrice));
+      price = price.blend(price.sub(200).max(halfOfBasePrice), discounted);
+      kind = kind.lanewise(VectorOperators.OR, DiscountKind.PERSONAL_STAMP.bit(), discounted);
+
+      IntVector amount = IntVector.fromArray(SPECIES, firstAmounts, index, lanes);
+      discounted =
+          amount
+              .compare(VectorOperators.GT, 0)
+              .and(price.compare(VectorOperators.GT, halfOfBasePrice));
+      price = price.blend(price.sub(amount).max(halfOfBasePrice), discounted);
+      kind =
+          kind.lanewise(
+              VectorOperators.OR,
+              IntVector.fromArray(SPECIES, firstKinds, index, lanes),
+              discounted);
+
+      amount = IntVector.fromArray(SPECIES, secondAmounts, index, lanes);
+      discounted =
+          amount
+              .compare(VectorOperators.GT, 0)
+              .and(price.compare(VectorOperators.GT, halfOfBasePrice));
+      price = price.blend(price.sub(amount).max(halfOfBasePrice), discounted);
+      kind =
+          kind.lanewise(
+              VectorOperators.OR,
+              IntVector.fromArray(SPECIES, secondKinds, index, lanes),
+              discounted);
+
+      price.intoArray(prices, index, lanes);
+      kind.intoArray(kinds, index, lanes);
+      stamp.add(1).blend(1, tenthStamp).intoArray(newStamps, index, lanes);
+    }
+    return new Prices(prices, kinds, newStamps);
+  }
+
+  /**
+   * Gives each visitor of the group the kind of their discount by discount type or as a companion,
+   * pairing visitors as {@link Logic#priceByVisitorProperties} does.
+   */
+  private static void priceByVisitorProperties(
+      @NotNull VisitorBatch batch,
+      @NotNull PricingSnapshot snapshot,
+      int from,
+      int to,
+      int @NotNull [] kinds,
+      int @NotNull [] fullPriceQueue) {
+    int queueHead = 0;
+    int queueTail = 0;
+    boolean companionDiscountAvailable = false;
+    for (int index = from; index < to; index++) {
+      byte discountType = batch.discountTypes[index];
+      if (discountType == VisitorBatch.NO_DISCOUNT_TYPE) {
+        if (companionDiscountAvailable) {
+          kinds[index] = DiscountKind.DISABILITIES.bit();
+          companionDiscountAvailable = false;
+        } else {
+          fullPriceQueue[queueTail++] = index;
+        }
+        continue;
+      }
+      DiscountTypes type = VisitorBatch.discountTypeOf(discountType);
+      switch (type) {
+        case CHILD -> kinds[index] = DiscountKind.CHILD.bit();
+        case DISABILITIES -> {
+          kinds[index] = DiscountKind.DISABILITIES.bit();
+          if (queueHead < queueTail) {
+            kinds[fullPriceQueue[queueHead++]] = DiscountKind.DISABILITIES.bit();
+          } else {
+            companionDiscountAvailable = true;
+          }
+        }
+        case FEMALES, ELDERLIES -> {
+          if (snapshot.femaleAndElderlyDiscountAvailable()) {
+            kinds[index] = DiscountKind.of(type).bit();
+          } else {
+            fullPriceQueue[queueTail++] = index;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gives every visitor of the group the amounts and kinds of the first receipt and the first
+   * member discount, in the order they were offered.
+   */
+  private static void forAllDiscounts(
+      @NotNull VisitorBatch batch,
+      int from,
+      int to,
+      int @NotNull [] firstAmounts,
+      int @NotNull [] firstKinds,
+      int @NotNull [] secondAmounts,
+      int @NotNull [] secondKinds) {
+    // positions in offered order: two per visitor, as a visitor offers both at most
+    int receipt = -1;
+    int member = -1;
+    for (int index = from; index < to && (receipt < 0 || member < 0); index++) {
+      byte optionalDiscounts = batch.optionalDiscounts[index];
+      boolean memberFirst = (optionalDiscounts & VisitorBatch.MEMBER_BEFORE_RECEIPT) != 0;
+      if (receipt < 0 && (optionalDiscounts & VisitorBatch.SHOPPING_RECEIPT) != 0) {
+        receipt = 2 * index + (memberFirst ? 1 : 0);
+      }
+      if (member < 0 && (optionalDiscounts & VisitorBatch.INTERNET_PREMIUM_MEMBER) != 0) {
+        member = 2 * index + (memberFirst ? 0 : 1);
+      }
+    }
+    int firstAmount = 0;
+    int firstKind = 0;
+    int secondAmount = 0;
+    int secondKind = 0;
+    if (0 <= receipt && (member < 0 || receipt < member)) {
+      firstAmount = PricingSnapshot.ONE_HUNDRED.value();
+      firstKind = DiscountKind.SHOPPING_RECEIPT.bit();
+      if (0 <= member) {
+        secondAmount = PricingSnapshot.TWO_HUNDRED.value();
+        secondKind = DiscountKind.INTERNET_PREMIUM_MEMBER.bit();
+      }
+    } else if (0 <= member) {
+      firstAmount = PricingSnapshot.TWO_HUNDRED.value();
+      firstKind = DiscountKind.INTERNET_PREMIUM_MEMBER.bit();
+      if (0 <= receipt) {
+        secondAmount = PricingSnapshot.ONE_HUNDRED.value();
+        secondKind = DiscountKind.SHOPPING_RECEIPT.bit();
+      }
+    }
+    Arrays.fill(firstAmounts, from, to, firstAmount);
+    Arrays.fill(firstKinds, from, to, firstKind);
+    Arrays.fill(secondAmounts, from, to, secondAmount);
+    Arrays.fill(secondKinds, from, to, secondKind);
+  }
+}
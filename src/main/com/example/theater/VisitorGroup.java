@@ -1,19 +1,35 @@
 package com.example.theater;
 
+import static java.lang.StringTemplate.STR;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
 /**
- * Represents a group of visitors.
- *
- * @param visitors - all visitor in this group.
+ * Represents a group of visitors. A final class rather than a record so that it can keep the
+ * {@link OptionalDiscountIndex} it builds; equality is still that of its visitors. The visitors are
+ * not to be changed once the group is priced.
  */
-public record VisitorGroup(@NotNull Collection<@NotNull Visitor> visitors)
-    implements Iterable<@NotNull Visitor> {
+public final class VisitorGroup implements Iterable<@NotNull Visitor> {
+
+  private final @NotNull Collection<@NotNull Visitor> visitors;
+
+  /** Built on first use; racing threads build equal indexes with final fields, so no lock. */
+  private @Nullable OptionalDiscountIndex optionalDiscountIndex;
+
+  /** @param visitors - all visitor in this group. */
+  public VisitorGroup(@NotNull Collection<@NotNull Visitor> visitors) {
+    this.visitors = visitors;
+  }
+
+  public @NotNull Collection<@NotNull Visitor> visitors() {
+    return visitors;
+  }
 
   public @NotNull @Unmodifiable Collection<OptionalDiscount> allOptionalDiscounts() {
     List<OptionalDiscount> discounts = new ArrayList<>();
@@ -33,9 +49,38 @@ public record VisitorGroup(@NotNull Collection<@NotNull Visitor> visitors)
     return List.copyOf(discounts);
   }
 
+  /**
+   * Splits the optional discounts of this group into those for everyone and those for their
+   * owner. Built once per group.
+   */
+  @NotNull
+  OptionalDiscountIndex optionalDiscountIndex() {
+    OptionalDiscountIndex optionalDiscountIndex = this.optionalDiscountIndex;
+    if (optionalDiscountIndex == null) {
+      optionalDiscountIndex = new OptionalDiscountIndex(this);
+      this.optionalDiscountIndex = optionalDiscountIndex;
+    }
+    return optionalDiscountIndex;
+  }
+
   @NotNull
   @Override
   public Iterator<@NotNull Visitor> iterator() {
     return visitors.iterator();
   }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof VisitorGroup other && visitors.equals(other.visitors);
+  }
+
+  @Override
+  public int hashCode() {
+    return visitors.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return STR."VisitorGroup[visitors=\{visitors}]";
+  }
 }
@@ -0,0 +1,52 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class AdmissionFeeResultTest {
+
+  @Test
+  void calculateAdmissionFeesIsolatesFailedGroup() {
+    UUID first = UUID.randomUUID();
+    UUID last = UUID.randomUUID();
+    Price basePrice = new Price(1000);
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(basePrice, LocalDate.of(2020, 2, 3)),
+            _ -> true,
+            memberId -> {
+              throw new IllegalStateException(memberId.toString());
+            },
+            _ -> false);
+    List<AdmissionFeeResult> results =
+        logic.calculateAdmissionFees(
+            List.of(
+                new VisitorGroup(List.of(normalVisitor(first, 1))),
+                new VisitorGroup(
+                    List.of(
+                        normalVisitor(
+                            UUID.randomUUID(), 1, new InternetPremiumMember(UUID.randomUUID())))),
+                new VisitorGroup(List.of(child(last, 1)))));
+    assertEquals(3, results.size());
+    List<Audience> firstAudiences =
+        assertInstanceOf(AdmissionFeeResult.Calculated.class, results.get(0)).audiences();
+    AdmissionFeeResult.Failed failed =
+        assertInstanceOf(AdmissionFeeResult.Failed.class, results.get(1));
+    List<Audience> lastAudiences =
+        assertInstanceOf(AdmissionFeeResult.Calculated.class, results.get(2)).audiences();
+    assertAll(
+        () -> assertEquals(first, firstAudiences.getFirst().id()),
+        () -> assertEquals(basePrice, firstAudiences.getFirst().price()),
+        () -> assertInstanceOf(IllegalStateException.class, failed.cause()),
+        () -> assertEquals(last, lastAudiences.getFirst().id()),
+        () -> assertEquals(new Price(500), lastAudiences.getFirst().price()));
+  }
+}
@@ -0,0 +1,96 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.disability;
+import static com.example.theater.LogicTest.normalVisitor;
+import static com.example.theater.LogicTest.shareHolder;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class AsyncLookupTest {
+
+  @Test
+  void calculateAdmissionFeeAsyncMatchesSynchronousCalculation() {
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                disability(UUID.randomUUID(), 10),
+                normalVisitor(UUID.randomUUID(), 3, new InternetPremiumMember(UUID.randomUUID())),
+                child(UUID.randomUUID(), 10),
+                normalVisitor(
+                    UUID.randomUUID(),
+                    1,
+                    new DiscountTicket(UUID.randomUUID(), 7, NEW_YEAR_WEDNESDAY, new Price(150)))));
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> true);
+    List<Audience> expected = logic.calculateAdmissionFee(visitors);
+    List<Audience> actual = logic.calculateAdmissionFeeAsync(visitors).join();
+    assertAll(
+        () ->
+            assertEquals(
+                expected.stream().map(Audience::price).toList(),
+                actual.stream().map(Audience::price).toList()),
+        () ->
+            assertEquals(
+                expected.stream().map(a -> a.discountDetails().size()).toList(),
+                actual.stream().map(a -> a.discountDetails().size()).toList()));
+  }
+
+  @Test
+  void calculateAdmissionFeeAsyncIssuesAllLookupsAtOnce() {
+    // each lookup blocks until all three have started, so sequential lookups would time out
+    CountDownLatch started = new CountDownLatch(3);
+    Set<String> overlapped = ConcurrentHashMap.newKeySet();
+    Function<String, Boolean> lookup =
+        name -> {
+          started.countDown();
+          try {
+            if (started.await(10, TimeUnit.SECONDS)) {
+              overlapped.add(name);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return true;
+        };
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                shareHolder(UUID.randomUUID(), 1),
+                normalVisitor(UUID.randomUUID(), 3, new InternetPremiumMember(UUID.randomUUID())),
+                normalVisitor(
+                    UUID.randomUUID(),
+                    1,
+                    new DiscountTicket(UUID.randomUUID(), 7, NEW_YEAR_WEDNESDAY, new Price(150)))));
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY),
+            _ -> lookup.apply("shareholder tickets"),
+            _ -> lookup.apply("members"),
+            _ -> lookup.apply("discount tickets"));
+    List<Audience> audiences = logic.calculateAdmissionFeeAsync(visitors).join();
+    assertAll(
+        () ->
+            assertEquals(
+                Set.of("shareholder tickets", "members", "discount tickets"), overlapped),
+        () ->
+            assertEquals(
+                List.of(new Price(0), new Price(0), new Price(0)),
+                audiences.stream().map(Audience::price).toList()));
+  }
+}
@@ -0,0 +1,52 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.disability;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class AudienceTest {
+
+  @Test
+  void audienceExposesAppliedDiscountKinds() {
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                disability(UUID.randomUUID(), 10),
+                normalVisitor(
+                    UUID.randomUUID(),
+                    1,
+                    new ShoppingReceipt(5000),
+                    new InternetPremiumMember(UUID.randomUUID()))));
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> false);
+    List<Audience> audiences = logic.calculateAdmissionFee(visitors);
+
+    assertAll(
+        () ->
+            assertEquals(
+                EnumSet.of(
+                    DiscountKind.DISABILITIES,
+                    DiscountKind.PERSONAL_STAMP,
+                    DiscountKind.SHOPPING_RECEIPT,
+                    DiscountKind.INTERNET_PREMIUM_MEMBER),
+                audiences.getFirst().appliedDiscountKindSet()),
+        () ->
+            assertEquals(
+                EnumSet.of(
+                    DiscountKind.DISABILITIES,
+                    DiscountKind.SHOPPING_RECEIPT,
+                    DiscountKind.INTERNET_PREMIUM_MEMBER),
+                audiences.getLast().appliedDiscountKindSet()));
+  }
+}
@@ -0,0 +1,168 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AuditJournalTest {
+
+  @Test
+  void replaysEveryGroupAndRecoversFromTornTail(@TempDir Path directory) throws Exception {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> true);
+    List<VisitorGroup> groups = new CopyOnWriteArrayList<>();
+    try (AuditJournal journal =
+        AuditJournal.open(directory, 4096, new AuditJournal.FsyncPolicy.EveryCommit())) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        threads.add(
+            Thread.ofPlatform()
+                .start(
+                    () -> {
+                      for (int i = 0; i < 50; i++) {
+                        VisitorGroup visitorGroup =
+                            new VisitorGroup(
+                                List.of(
+                                    normalVisitor(i % 11),
+                                    child(3),
+                                    new Visitor(
+                                        UUID.randomUUID(),
+                                        DiscountTypes.DISABILITIES,
+                                        new InternetPremiumMember(UUID.randomUUID()))));
+                        groups.add(visitorGroup);
+                        journal.append(visitorGroup, logic.calculateAdmissionFee(visitorGroup));
+                      }
+                    }));
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    List<AuditJournal.Entry> beforeCrash = new ArrayList<>();
+    AuditJournal.replay(directory, 0, beforeCrash::add);
+    // a crash before the payload of the last entry reached the disk
+    Path last;
+    try (Stream<Path> files = Files.list(directory)) {
+      last = files.sorted().toList().getLast();
+    }
+    ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(last));
+    int lastEntry = 16;
+    for (int next = lastEntry; next < segment.limit() && segment.getInt(next) != 0; ) {
+      lastEntry = next;
+      next += (16 + segment.getInt(next) + 7) & ~7;
+    }
+    int lastByte = lastEntry + 16 + segment.getInt(lastEntry) - 1;
+    try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) ~segment.get(lastByte)}), lastByte);
+    }
+    VisitorGroup afterCrash = new VisitorGroup(List.of(normalVisitor(10)));
+    try (AuditJournal journal =
+        AuditJournal.open(directory, 4096, new AuditJournal.FsyncPolicy.OnRoll())) {
+      journal.append(afterCrash, logic.calculateAdmissionFee(afterCrash));
+    }
+    List<AuditJournal.Entry> entries = new ArrayList<>();
+    AuditJournal.replay(directory, 0, entries::add);
+    List<AuditJournal.Entry> fromLast = new ArrayList<>();
+    AuditJournal.replay(directory, 199, fromLast::add);
+
+    long segments;
+    try (Stream<Path> files = Files.list(directory)) {
+      segments = files.count();
+    }
+    assertAll(
+        () -> assertTrue(1 < segments),
+        () -> assertEquals(200, beforeCrash.size()),
+        () ->
+            assertEquals(
+                Set.copyOf(groups),
+                beforeCrash.stream()
+                    .map(AuditJournal.Entry::visitorGroup)
+                    .collect(Collectors.toSet())),
+        () -> assertEquals(200, entries.size()),
+        () -> assertEquals(beforeCrash.subList(0, 199), entries.subList(0, 199)),
+        () -> {
+          for (int i = 0; i < entries.size(); i++) {
+            AuditJournal.Entry entry = entries.get(i);
+            assertEquals(i, entry.sequence());
+            assertEquals(logic.calculateAdmissionFee(entry.visitorGroup()), entry.audiences());
+          }
+        },
+        () -> assertEquals(List.of(entries.getLast()), fromLast),
+        () -> assertEquals(afterCrash, fromLast.getFirst().visitorGroup()));
+  }
+
+
+  @Test
+  void failedRollOverFailsEveryLaterAppendAndClose(@TempDir Path directory) throws Exception {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> true);
+    VisitorGroup visitorGroup = new VisitorGroup(List.of(normalVisitor(1), child(2)));
+    List<Audience> audiences = logic.calculateAdmissionFee(visitorGroup);
+    AuditJournal journal = AuditJournal.open(directory, 256, new AuditJournal.FsyncPolicy.OnRoll());
+    // whatever entry rolls over, its segment cannot be created
+    for (long sequence = 1; sequence <= 32; sequence++) {
+      Files.createDirectory(
+          directory.resolve(String.format("%020d%s", sequence, AuditJournal.SUFFIX)));
+    }
+    List<Long> committed = new ArrayList<>();
+    UncheckedIOException failed = null;
+    while (failed == null && committed.size() < 32) {
+      try {
+        committed.add(journal.append(visitorGroup, audiences));
+      } catch (UncheckedIOException e) {
+        failed = e;
+      }
+    }
+    UncheckedIOException rollFailure = failed;
+    IOException failure = journal.failure();
+
+    assertAll(
+        () -> assertNotNull(rollFailure),
+        () -> assertFalse(committed.isEmpty()),
+        () -> assertInstanceOf(FileAlreadyExistsException.class, failure),
+        () -> assertSame(failure, rollFailure.getCause()),
+        () ->
+            assertSame(
+                failure,
+                assertThrows(
+                        UncheckedIOException.class, () -> journal.append(visitorGroup, audiences))
+                    .getCause()),
+        () ->
+            assertSame(
+                failure, assertThrows(UncheckedIOException.class, journal::close).getCause()));
+  }
+}
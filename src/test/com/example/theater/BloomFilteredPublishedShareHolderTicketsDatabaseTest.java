@@ -0,0 +1,151 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class BloomFilteredPublishedShareHolderTicketsDatabaseTest {
+
+  static @NotNull List<UUID> tickets(@NotNull Random random, int count) {
+    List<UUID> tickets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tickets.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return tickets;
+  }
+
+  @Test
+  void everyPublishedTicketIsForwardedByEveryLookup() {
+    Random random = new Random(7);
+    List<UUID> published = tickets(random, 5_000);
+    List<UUID> publishedLater = tickets(random, 500);
+    Set<UUID> all = new HashSet<>(published);
+    all.addAll(publishedLater);
+    var database =
+        new BloomFilteredPublishedShareHolderTicketsDatabase(all::contains, published, 0.01);
+    publishedLater.forEach(database::publish);
+    List<UUID> everyTicket = new ArrayList<>(all);
+    assertAll(
+        () -> assertTrue(everyTicket.stream().allMatch(database::isPublishedShareHolderTicket)),
+        () ->
+            assertTrue(
+                everyTicket.stream()
+                    .allMatch(ticket -> database.isPublishedShareHolderTicketAsync(ticket).join())),
+        () -> assertEquals(all, database.publishedShareHolderTickets(everyTicket)),
+        () -> assertEquals(all, database.publishedShareHolderTicketsAsync(everyTicket).join()));
+  }
+
+  @Test
+  void countersAddUpToTheLookupsAndTheDelegateCalls() {
+    Random random = new Random(11);
+    List<UUID> published = tickets(random, 1_000);
+    List<UUID> absent = tickets(random, 10_000);
+    Set<UUID> publishedSet = Set.copyOf(published);
+    AtomicInteger delegateCalls = new AtomicInteger();
+    var database =
+        new BloomFilteredPublishedShareHolderTicketsDatabase(
+            ticket -> {
+              delegateCalls.incrementAndGet();
+              return publishedSet.contains(ticket);
+            },
+            published,
+            0.05);
+    long found = 0;
+    for (UUID ticket : published) {
+      found += database.isPublishedShareHolderTicket(ticket) ? 1 : 0;
+    }
+    for (UUID ticket : absent) {
+      found += database.isPublishedShareHolderTicket(ticket) ? 1 : 0;
+    }
+    long foundBySingleLookups = found;
+    BloomFilteredPublishedShareHolderTicketsDatabase.Stats stats = database.stats();
+    assertAll(
+        () -> assertEquals(1_000, foundBySingleLookups),
+        () -> assertEquals(11_000, stats.skipped() + stats.forwarded()),
+        () -> assertEquals(delegateCalls.get(), stats.forwarded()),
+        () -> assertEquals(stats.forwarded() - 1_000, stats.falsePositives()),
+        () -> assertTrue(stats.skipped() > 9_000, () -> STR."skipped only \{stats}"));
+  }
+
+  @Test
+  void bulkLookupsForwardOnlyTheCandidates() {
+    Random random = new Random(13);
+    List<UUID> published = tickets(random, 100);
+    List<UUID> absent = tickets(random, 1_000);
+    Set<UUID> publishedSet = Set.copyOf(published);
+    List<Integer> forwardedSizes = new ArrayList<>();
+    var delegate =
+        new PublishedShareHolderTicketsDatabase() {
+          @Override
+          public boolean isPublishedShareHolderTicket(@NotNull UUID ticketId) {
+            return publishedSet.contains(ticketId);
+          }
+
+          @Override
+          public @NotNull Set<@NotNull UUID> publishedShareHolderTickets(
+              @NotNull Collection<@NotNull UUID> ticketIds) {
+            forwardedSizes.add(ticketIds.size());
+            return PublishedShareHolderTicketsDatabase.super.publishedShareHolderTickets(
+                ticketIds);
+          }
+        };
+    var database = new BloomFilteredPublishedShareHolderTicketsDatabase(delegate, published, 0.01);
+    List<UUID> lookedUp = new ArrayList<>(published);
+    lookedUp.addAll(absent);
+    Set<UUID> found = database.publishedShareHolderTickets(lookedUp);
+    Set<UUID> foundAmongAbsent = database.publishedShareHolderTickets(absent);
+    BloomFilteredPublishedShareHolderTicketsDatabase.Stats stats = database.stats();
+    assertAll(
+        () -> assertEquals(publishedSet, found),
+        () -> assertEquals(Set.of(), foundAmongAbsent),
+        () -> assertEquals(2_100, stats.skipped() + stats.forwarded()),
+        () ->
+            assertEquals(
+                stats.forwarded(), forwardedSizes.stream().mapToInt(Integer::intValue).sum()),
+        () -> assertEquals(stats.forwarded() - 100, stats.falsePositives()));
+  }
+
+  @Test
+  void unpublishedTicketIsRejectedWithoutTheDelegate() {
+    UUID ticket = UUID.randomUUID();
+    var database =
+        new BloomFilteredPublishedShareHolderTicketsDatabase(
+            _ -> {
+              throw new AssertionError("delegate asked");
+            },
+            List.of(),
+            0.01);
+    assertAll(
+        () -> assertFalse(database.isPublishedShareHolderTicket(ticket)),
+        () -> assertEquals(Set.of(), database.publishedShareHolderTickets(List.of(ticket))),
+        () -> assertEquals(2, database.stats().skipped()));
+  }
+
+  @Test
+  void falsePositiveRateMustBeAProbability() {
+    assertAll(
+        () ->
+            assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                    new BloomFilteredPublishedShareHolderTicketsDatabase(_ -> true, List.of(), 0)),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                    new BloomFilteredPublishedShareHolderTicketsDatabase(_ -> true, List.of(), 1)));
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class BulkLookupTest {
+
+  @Test
+  void validationUsesSingleBulkLookupPerDatabase() {
+    AtomicInteger memberLookups = new AtomicInteger();
+    AtomicInteger ticketLookups = new AtomicInteger();
+    InternetPremiumMembersDatabase membersDatabase =
+        new InternetPremiumMembersDatabase() {
+          @Override
+          public boolean isValidMemberId(@NotNull UUID memberId) {
+            throw new AssertionError("single lookup " + memberId);
+          }
+
+          @Override
+          public @NotNull Set<@NotNull UUID> validMemberIds(
+              @NotNull Collection<@NotNull UUID> memberIds) {
+            memberLookups.incrementAndGet();
+            return Set.copyOf(memberIds);
+          }
+        };
+    EventDatabase eventDatabase =
+        new EventDatabase() {
+          @Override
+          public boolean isValidDiscountTicket(@NotNull DiscountTicket discountTicket) {
+            throw new AssertionError("single lookup " + discountTicket);
+          }
+
+          @Override
+          public @NotNull Set<@NotNull DiscountTicket> validDiscountTickets(
+              @NotNull Collection<@NotNull DiscountTicket> discountTickets) {
+            ticketLookups.incrementAndGet();
+            return Set.copyOf(discountTickets);
+          }
+        };
+    List<Visitor> visitors =
+        Stream.generate(
+                () ->
+                    normalVisitor(
+                        UUID.randomUUID(),
+                        1,
+                        new InternetPremiumMember(UUID.randomUUID()),
+                        new DiscountTicket(
+                            UUID.randomUUID(), 10, NEW_YEAR_WEDNESDAY, new Price(100))))
+            .limit(40)
+            .toList();
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1000), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            membersDatabase,
+            eventDatabase);
+    List<Audience> audiences = logic.calculateAdmissionFee(new VisitorGroup(visitors));
+    assertAll(
+        () -> assertEquals(1, memberLookups.get()),
+        () -> assertEquals(1, ticketLookups.get()),
+        () -> assertTrue(audiences.stream().allMatch(a -> a.price().equals(new Price(700)))));
+  }
+}
@@ -0,0 +1,165 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+class CachingEventDatabaseTest {
+
+  static final @NotNull LocalDate DISTRIBUTED = LocalDate.of(2023, 1, 4);
+
+  /** Bytes of a bitmap of {@link #load}: one word of 64 tickets. */
+  static final long BITMAP_BYTES = TicketBitmap.ofRange(0, 64).byteSize();
+
+  final @NotNull AtomicLong clock = new AtomicLong();
+  final @NotNull List<UUID> loads = new ArrayList<>();
+  final @NotNull UUID unknownEvent = UUID.randomUUID();
+
+  @Nullable
+  TicketBitmap load(@NotNull UUID eventId, @NotNull LocalDate distributionDate) {
+    loads.add(eventId);
+    return eventId.equals(unknownEvent) ? null : TicketBitmap.ofRange(0, 64);
+  }
+
+  @NotNull
+  CachingEventDatabase database(long maxBytes, @NotNull Duration timeToLive) {
+    return new CachingEventDatabase(this::load, maxBytes, timeToLive, clock::get);
+  }
+
+  static @NotNull DiscountTicket ticket(@NotNull UUID eventId, int seqId) {
+    return ticket(eventId, seqId, DISTRIBUTED);
+  }
+
+  static @NotNull DiscountTicket ticket(
+      @NotNull UUID eventId, int seqId, @NotNull LocalDate distributionDate) {
+    return new DiscountTicket(eventId, seqId, distributionDate, new Price(1000));
+  }
+
+  @Test
+  void loadsAnEventOnceAndAnswersFromTheBitmap() {
+    CachingEventDatabase database = database(Long.MAX_VALUE, Duration.ofMinutes(1));
+    UUID event = UUID.randomUUID();
+    assertAll(
+        () -> assertTrue(database.isValidDiscountTicket(ticket(event, 0))),
+        () -> assertTrue(database.isValidDiscountTicket(ticket(event, 63))),
+        () -> assertFalse(database.isValidDiscountTicket(ticket(event, 64))),
+        () -> assertFalse(database.isValidDiscountTicket(ticket(unknownEvent, 0))),
+        () -> assertFalse(database.isValidDiscountTicket(ticket(unknownEvent, 1))),
+        () -> assertEquals(List.of(event, unknownEvent), loads),
+        () -> assertEquals(3, database.stats().hits()),
+        () -> assertEquals(2, database.stats().misses()),
+        () ->
+            assertEquals(
+                BITMAP_BYTES + TicketBitmap.EMPTY.byteSize(), database.stats().bytes()));
+  }
+
+  @Test
+  void distributionDatesAreCachedApart() {
+    CachingEventDatabase database = database(Long.MAX_VALUE, Duration.ofMinutes(1));
+    UUID event = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(event, 0));
+    database.isValidDiscountTicket(ticket(event, 0, DISTRIBUTED.plusDays(1)));
+    database.isValidDiscountTicket(ticket(event, 0, DISTRIBUTED.plusDays(1)));
+    assertAll(
+        () -> assertEquals(List.of(event, event), loads),
+        () -> assertEquals(1, database.stats().hits()));
+  }
+
+  @Test
+  void bitmapsExpireAfterTheTimeToLive() {
+    CachingEventDatabase database = database(Long.MAX_VALUE, Duration.ofNanos(100));
+    UUID event = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(event, 0));
+    clock.set(99);
+    database.isValidDiscountTicket(ticket(event, 0));
+    clock.set(100);
+    database.isValidDiscountTicket(ticket(event, 0));
+    clock.set(199);
+    database.isValidDiscountTicket(ticket(event, 0));
+    assertAll(
+        () -> assertEquals(List.of(event, event), loads),
+        () -> assertEquals(2, database.stats().hits()),
+        () -> assertEquals(BITMAP_BYTES, database.stats().bytes()));
+  }
+
+  @Test
+  void timeToLiveTooLongForNanosNeverExpires() {
+    CachingEventDatabase database =
+        database(Long.MAX_VALUE, Duration.ofSeconds(Long.MAX_VALUE));
+    UUID event = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(event, 0));
+    clock.set(Long.MAX_VALUE - 1);
+    database.isValidDiscountTicket(ticket(event, 0));
+    assertAll(
+        () -> assertEquals(Long.MAX_VALUE, database.timeToLiveNanos),
+        () -> assertEquals(List.of(event), loads));
+  }
+
+  @Test
+  void invalidatedEventsAreLoadedAgain() {
+    CachingEventDatabase database = database(Long.MAX_VALUE, Duration.ofMinutes(1));
+    UUID invalidated = UUID.randomUUID();
+    UUID kept = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(invalidated, 0));
+    database.isValidDiscountTicket(ticket(invalidated, 0, DISTRIBUTED.plusDays(1)));
+    database.isValidDiscountTicket(ticket(kept, 0));
+    database.invalidate(invalidated);
+    long bytesAfterInvalidation = database.stats().bytes();
+    database.isValidDiscountTicket(ticket(invalidated, 0));
+    database.isValidDiscountTicket(ticket(kept, 0));
+    assertAll(
+        () -> assertEquals(BITMAP_BYTES, bytesAfterInvalidation),
+        () -> assertEquals(List.of(invalidated, invalidated, kept, invalidated), loads),
+        () -> assertEquals(1, database.stats().hits()));
+  }
+
+  @Test
+  void bitmapsDistributedBeforeTheDateAreLoadedAgain() {
+    CachingEventDatabase database = database(Long.MAX_VALUE, Duration.ofMinutes(1));
+    UUID event = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(event, 0, DISTRIBUTED.minusDays(1)));
+    database.isValidDiscountTicket(ticket(event, 0));
+    database.invalidateDistributedBefore(DISTRIBUTED);
+    database.isValidDiscountTicket(ticket(event, 0));
+    database.isValidDiscountTicket(ticket(event, 0, DISTRIBUTED.minusDays(1)));
+    assertAll(
+        () -> assertEquals(List.of(event, event, event), loads),
+        () -> assertEquals(1, database.stats().hits()));
+  }
+
+  @Test
+  void leastRecentlyUsedBitmapsAreEvictedFirst() {
+    CachingEventDatabase database = database(3 * BITMAP_BYTES, Duration.ofMinutes(1));
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    UUID third = UUID.randomUUID();
+    UUID fourth = UUID.randomUUID();
+    database.isValidDiscountTicket(ticket(first, 0));
+    database.isValidDiscountTicket(ticket(second, 0));
+    database.isValidDiscountTicket(ticket(third, 0));
+    database.isValidDiscountTicket(ticket(first, 0));
+    database.isValidDiscountTicket(ticket(fourth, 0));
+    long evictionsAfterFourth = database.stats().evictions();
+    loads.clear();
+    database.isValidDiscountTicket(ticket(first, 0));
+    database.isValidDiscountTicket(ticket(third, 0));
+    database.isValidDiscountTicket(ticket(fourth, 0));
+    database.isValidDiscountTicket(ticket(second, 0));
+    assertAll(
+        () -> assertEquals(1, evictionsAfterFourth),
+        () -> assertEquals(List.of(second), loads),
+        () -> assertEquals(2, database.stats().evictions()),
+        () -> assertEquals(3 * BITMAP_BYTES, database.stats().bytes()));
+  }
+}
@@ -0,0 +1,82 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.disability;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class DailySettlementTest {
+
+  @Test
+  void countsEveryGroupOnceAcrossThreadsAndDays() throws Exception {
+    AtomicReference<LocalDate> today = new AtomicReference<>(NONE_NEW_YEAR_WEDNESDAY);
+    PriceConfiguration priceConfiguration =
+        new PriceConfiguration() {
+          @Override
+          public Price getBasePrice() {
+            return new Price(1800);
+          }
+
+          @Override
+          public LocalDate getToday() {
+            return today.get();
+          }
+        };
+    List<DailySettlement.Settlement> closed = new CopyOnWriteArrayList<>();
+    DailySettlement settlement = new DailySettlement(priceConfiguration, closed::add);
+    Logic logic =
+        Logic.builder(priceConfiguration, _ -> false, _ -> true, _ -> true)
+            .pricingListener(settlement)
+            .build();
+    // 1440 + 1440 + 900, with 200 off the adults for the member
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                disability(UUID.randomUUID(), 1),
+                normalVisitor(UUID.randomUUID(), 1, new InternetPremiumMember(UUID.randomUUID())),
+                child(1)));
+    List<Thread> kiosks = new ArrayList<>();
+    for (int kiosk = 0; kiosk < 8; kiosk++) {
+      kiosks.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 500; i++) {
+                      logic.calculateAdmissionFee(visitors);
+                    }
+                  }));
+    }
+    for (Thread kiosk : kiosks) {
+      kiosk.join();
+    }
+    today.set(NONE_NEW_YEAR_NONE_WEDNESDAY);
+    logic.calculateAdmissionFee(visitors);
+    DailySettlement.Settlement nextDay = settlement.snapshot();
+
+    assertAll(
+        () -> assertEquals(1, closed.size()),
+        () -> assertEquals(NONE_NEW_YEAR_WEDNESDAY, closed.getFirst().date()),
+        () -> assertEquals(4000, closed.getFirst().groups()),
+        () -> assertEquals(12000, closed.getFirst().audiences()),
+        () -> assertEquals(4000L * 3380, closed.getFirst().revenue()),
+        () -> assertEquals(8000, closed.getFirst().discounts().get(DiscountKind.DISABILITIES)),
+        () ->
+            assertEquals(
+                4000L * 2 * 200,
+                closed.getFirst().discountAmounts().get(DiscountKind.INTERNET_PREMIUM_MEMBER)),
+        () -> assertEquals(NONE_NEW_YEAR_NONE_WEDNESDAY, nextDay.date()),
+        () -> assertEquals(1, nextDay.groups()),
+        () -> assertEquals(3380, nextDay.revenue()));
+  }
+}
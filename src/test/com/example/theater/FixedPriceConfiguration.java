@@ -0,0 +1,6 @@
+package com.example.theater;
+
+import java.time.LocalDate;
+
+record FixedPriceConfiguration(@Override Price getBasePrice, @Override LocalDate getToday)
+    implements PriceConfiguration {}
@@ -0,0 +1,115 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.normalVisitor;
+import static com.example.theater.LogicTest.shareHolder;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FlightRecorderEventsTest {
+
+  private static final String CALCULATION = "com.example.theater.AdmissionFeeCalculation";
+  private static final String LOOKUP = "com.example.theater.DatabaseLookup";
+
+  @Test
+  void calculationAndLookupsAreRecordedWithTheirFields(@TempDir Path directory) throws Exception {
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                shareHolder(UUID.randomUUID(), -1),
+                normalVisitor(UUID.randomUUID(), 1, new InternetPremiumMember(UUID.randomUUID())),
+                child(1)));
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> false);
+    Logic freeLogic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> true,
+            _ -> true,
+            _ -> false);
+    Path file = directory.resolve("theater.jfr");
+    List<Audience> audiences;
+    try (Recording recording = new Recording()) {
+      recording.enable(AdmissionFeeCalculationEvent.class).withThreshold(Duration.ZERO);
+      recording.enable(DatabaseLookupEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+      audiences = logic.calculateAdmissionFee(visitors);
+      freeLogic.calculateAdmissionFee(visitors);
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    List<RecordedEvent> calculations = eventsNamed(events, CALCULATION);
+    List<RecordedEvent> lookups = eventsNamed(events, LOOKUP);
+
+    assertEquals(2, calculations.size());
+    RecordedEvent priced = calculations.getFirst();
+    RecordedEvent free = calculations.getLast();
+    assertAll(
+        () -> assertEquals(3, priced.getInt("visitors")),
+        () ->
+            assertEquals(
+                audiences.stream().mapToInt(audience -> audience.discountDetails().size()).sum(),
+                priced.getInt("discounts")),
+        () ->
+            assertEquals(
+                audiences.stream().mapToLong(audience -> audience.price().value()).sum(),
+                priced.getLong("totalPrice")),
+        () -> assertFalse(priced.getBoolean("shareHolder")),
+        () -> assertFalse(priced.getBoolean("async")),
+        () -> assertTrue(free.getBoolean("shareHolder")),
+        () -> assertEquals(0, free.getLong("totalPrice")),
+        // the free group needs no member lookup
+        () ->
+            assertEquals(
+                List.of(
+                    List.of("PUBLISHED_SHARE_HOLDER_TICKETS", 1, 0, false),
+                    List.of("INTERNET_PREMIUM_MEMBERS", 1, 1, false),
+                    List.of("PUBLISHED_SHARE_HOLDER_TICKETS", 1, 1, false)),
+                lookups.stream()
+                    .map(
+                        lookup ->
+                            List.of(
+                                lookup.getString("lookup"),
+                                lookup.getInt("keys"),
+                                lookup.getInt("found"),
+                                lookup.getBoolean("async")))
+                    .toList()));
+  }
+
+  @Test
+  void theaterConfigurationEnablesBothEvents() throws Exception {
+    Map<String, String> settings =
+        Configuration.create(Path.of("src/jfr/theater.jfc")).getSettings();
+
+    assertAll(
+        () -> assertEquals("true", settings.get(CALCULATION + "#enabled")),
+        () -> assertEquals("5 ms", settings.get(CALCULATION + "#threshold")),
+        () -> assertEquals("true", settings.get(LOOKUP + "#enabled")),
+        () -> assertEquals("2 ms", settings.get(LOOKUP + "#threshold")));
+  }
+
+  /** Events of the type in the order they were committed, as they all come from this thread. */
+  private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+    return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+  }
+}
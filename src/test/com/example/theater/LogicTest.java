@@ -389,6 +389,44 @@ class LogicTest {
                     .toList()));
   }
 
+  @Test
+  void disabilitiesPairWithTheEarliestFullPriceVisitors() {
+    UUID first = UUID.randomUUID();
+    UUID elderly = UUID.randomUUID();
+    UUID third = UUID.randomUUID();
+    UUID last = UUID.randomUUID();
+    // elderlies pay the full price on a Thursday, so they wait for a disability like the others
+    VisitorGroup visitors =
+        new VisitorGroup(
+            List.of(
+                normalVisitor(first, 2),
+                elderly(elderly, 2),
+                normalVisitor(third, 2),
+                disability(UUID.randomUUID(), 2),
+                disability(UUID.randomUUID(), 2),
+                child(UUID.randomUUID(), 2),
+                normalVisitor(last, 2)));
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1000), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> true,
+            _ -> false,
+            _ -> false);
+    List<Audience> audiences = logic.calculateAdmissionFee(visitors);
+    Map<UUID, Audience> byId =
+        audiences.stream().collect(Collectors.toMap(Audience::id, audience -> audience));
+    assertAll(
+        () ->
+            assertEquals(
+                List.of(800, 800, 1000, 800, 800, 500, 1000),
+                audiences.stream().map(audience -> audience.price().value()).toList()),
+        () -> assertEquals(DiscountKind.DISABILITIES.bit(), byId.get(first).appliedDiscountKinds()),
+        () ->
+            assertEquals(DiscountKind.DISABILITIES.bit(), byId.get(elderly).appliedDiscountKinds()),
+        () -> assertEquals(0, byId.get(third).appliedDiscountKinds()),
+        () -> assertEquals(0, byId.get(last).appliedDiscountKinds()));
+  }
+
   @Test
   void singleDisabilityWithChild() {
     UUID disability = UUID.randomUUID();
@@ -858,6 +896,3 @@ class LogicTest {
         });
   }
 }
-
-record FixedPriceConfiguration(@Override Price getBasePrice, @Override LocalDate getToday)
-    implements PriceConfiguration {}
@@ -0,0 +1,174 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedPublishedShareHolderTicketsDatabaseTest {
+
+  @TempDir Path directory;
+
+  /**
+   * Compactions scheduled in the background, run when the test says so. Those scheduled must be
+   * run before closing, which waits for them.
+   */
+  final @NotNull List<Runnable> compactions = new ArrayList<>();
+
+  @NotNull
+  MappedPublishedShareHolderTicketsDatabase open(int deltaCapacity) throws IOException {
+    return MappedPublishedShareHolderTicketsDatabase.open(
+        directory, deltaCapacity, compactions::add);
+  }
+
+  static @NotNull List<UUID> tickets(int count) {
+    return Stream.generate(UUID::randomUUID).limit(count).toList();
+  }
+
+  void runCompactions() {
+    List<Runnable> scheduled = List.copyOf(compactions);
+    compactions.clear();
+    scheduled.forEach(Runnable::run);
+  }
+
+  @Test
+  void publishedTicketsAreFoundInTheBaseAndTheDelta() throws IOException {
+    List<UUID> base = tickets(100);
+    List<UUID> published = tickets(3);
+    MappedPublishedShareHolderTicketsDatabase.createBase(directory, base);
+    try (var database = open(16)) {
+      database.publish(published);
+      assertAll(
+          () -> assertTrue(base.stream().allMatch(database::isPublishedShareHolderTicket)),
+          () -> assertTrue(published.stream().allMatch(database::isPublishedShareHolderTicket)),
+          () -> assertFalse(database.isPublishedShareHolderTicket(UUID.randomUUID())),
+          () -> assertEquals(100, database.snapshot.baseCount()),
+          () -> assertEquals(3, database.snapshot.deltaCount()),
+          () -> assertTrue(compactions.isEmpty()));
+    }
+  }
+
+  @Test
+  void compactionMergesTheDeltaIntoTheBaseWithoutDuplicates() throws IOException {
+    List<UUID> base = tickets(50);
+    List<UUID> published = new ArrayList<>(tickets(7));
+    published.add(base.getFirst());
+    published.add(published.getFirst());
+    MappedPublishedShareHolderTicketsDatabase.createBase(directory, base);
+    try (var database = open(16)) {
+      database.publish(published);
+      int scheduled = compactions.size();
+      runCompactions();
+      assertAll(
+          () -> assertEquals(1, scheduled),
+          () -> assertEquals(57, database.snapshot.baseCount()),
+          () -> assertEquals(0, database.snapshot.deltaCount()),
+          () -> assertTrue(base.stream().allMatch(database::isPublishedShareHolderTicket)),
+          () -> assertTrue(published.stream().allMatch(database::isPublishedShareHolderTicket)),
+          () -> assertFalse(database.isPublishedShareHolderTicket(UUID.randomUUID())));
+    }
+  }
+
+  @Test
+  void fullDeltaIsCompactedBeforePublishingMore() throws IOException {
+    List<UUID> published = tickets(10);
+    try (var database = open(4)) {
+      database.publish(published);
+      assertAll(
+          () -> assertEquals(8, database.snapshot.baseCount()),
+          () -> assertEquals(2, database.snapshot.deltaCount()),
+          () -> assertTrue(published.stream().allMatch(database::isPublishedShareHolderTicket)));
+      runCompactions();
+    }
+  }
+
+  @Test
+  void reopenedDatabaseFindsTheTicketsOfBothFiles() throws IOException {
+    List<UUID> compacted = tickets(3);
+    List<UUID> published = tickets(2);
+    try (var database = open(8)) {
+      database.publish(compacted);
+      database.compact();
+      database.publish(published);
+    }
+    try (var reopened = open(1)) {
+      assertAll(
+          () -> assertTrue(compacted.stream().allMatch(reopened::isPublishedShareHolderTicket)),
+          () -> assertTrue(published.stream().allMatch(reopened::isPublishedShareHolderTicket)),
+          () -> assertEquals(3, reopened.snapshot.baseCount()),
+          () -> assertEquals(2, reopened.snapshot.deltaCount()),
+          () -> assertEquals(8, reopened.deltaCapacity));
+    }
+  }
+
+  @Test
+  void crashBetweenTheRenamesKeepsEveryTicket() throws IOException {
+    List<UUID> base = tickets(5);
+    List<UUID> published = tickets(3);
+    MappedPublishedShareHolderTicketsDatabase.createBase(directory, base);
+    try (var database = open(8)) {
+      database.publish(published);
+    }
+    // the merged base was renamed into place, but the old delta and a new one were left behind
+    List<UUID> merged = new ArrayList<>(base);
+    merged.addAll(published);
+    MappedPublishedShareHolderTicketsDatabase.createBase(directory, merged);
+    Files.writeString(directory.resolve("tickets.delta.tmp"), "torn");
+
+    try (var reopened = open(8)) {
+      boolean foundBeforeCompaction =
+          merged.stream().allMatch(reopened::isPublishedShareHolderTicket);
+      long deltaBeforeCompaction = reopened.snapshot.deltaCount();
+      reopened.compact();
+      assertAll(
+          () -> assertTrue(foundBeforeCompaction),
+          () -> assertEquals(3, deltaBeforeCompaction),
+          () -> assertEquals(8, reopened.snapshot.baseCount()),
+          () -> assertEquals(0, reopened.snapshot.deltaCount()),
+          () -> assertTrue(merged.stream().allMatch(reopened::isPublishedShareHolderTicket)));
+    }
+  }
+
+  @Test
+  void failedCompactionInTheBackgroundIsRethrown() throws IOException {
+    var database = open(4);
+    database.publish(tickets(2));
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+    runCompactions();
+    IOException onPublish =
+        assertThrows(IOException.class, () -> database.publish(tickets(1)));
+    database.publish(tickets(1));
+    runCompactions();
+    IOException onClose = assertThrows(IOException.class, database::close);
+    assertAll(
+        () -> assertInstanceOf(NoSuchFileException.class, onPublish.getCause()),
+        () -> assertInstanceOf(NoSuchFileException.class, onClose.getCause()));
+  }
+
+  @Test
+  void deltaCapacityMustBePositive() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> open(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> open(-1)),
+        () -> assertFalse(Files.exists(directory.resolve("tickets.delta"))));
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class OffHeapPublishedShareHolderTicketsDatabaseTest {
+
+  static final @NotNull UUID NIL = new UUID(0, 0);
+
+  static @NotNull List<UUID> tickets(@NotNull Random random, int count) {
+    List<UUID> tickets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tickets.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return tickets;
+  }
+
+  @Test
+  void containsEveryPublishedTicketAndNoOther() {
+    Random random = new Random(5);
+    List<UUID> published = tickets(random, 10_000);
+    List<UUID> absent = tickets(random, 10_000);
+    try (var database = new OffHeapPublishedShareHolderTicketsDatabase(published)) {
+      assertAll(
+          () -> assertTrue(published.stream().allMatch(database::isPublishedShareHolderTicket)),
+          () -> assertTrue(absent.stream().noneMatch(database::isPublishedShareHolderTicket)),
+          () -> assertFalse(database.isPublishedShareHolderTicket(NIL)),
+          () -> assertEquals(10_000, database.size()));
+    }
+  }
+
+  @Test
+  void ticketsWithOneHalfZeroAreNotEmptySlots() {
+    UUID mostOnly = new UUID(42, 0);
+    UUID leastOnly = new UUID(0, 42);
+    try (var database = new OffHeapPublishedShareHolderTicketsDatabase(List.of(mostOnly))) {
+      assertAll(
+          () -> assertTrue(database.isPublishedShareHolderTicket(mostOnly)),
+          () -> assertFalse(database.isPublishedShareHolderTicket(leastOnly)),
+          () -> assertFalse(database.isPublishedShareHolderTicket(NIL)));
+    }
+  }
+
+  @Test
+  void duplicatesAreCountedOnce() {
+    UUID ticket = UUID.randomUUID();
+    UUID other = UUID.randomUUID();
+    try (var database =
+        new OffHeapPublishedShareHolderTicketsDatabase(
+            List.of(ticket, other, ticket, NIL, ticket, NIL))) {
+      assertAll(
+          () -> assertEquals(3, database.size()),
+          () -> assertTrue(database.isPublishedShareHolderTicket(ticket)),
+          () -> assertTrue(database.isPublishedShareHolderTicket(other)));
+    }
+  }
+
+  @Test
+  void nilTicketIsTrackedApartFromEmptySlots() {
+    UUID ticket = UUID.randomUUID();
+    try (var withNil = new OffHeapPublishedShareHolderTicketsDatabase(List.of(NIL, ticket));
+        var withoutNil = new OffHeapPublishedShareHolderTicketsDatabase(List.of(ticket))) {
+      assertAll(
+          () -> assertTrue(withNil.isPublishedShareHolderTicket(NIL)),
+          () -> assertTrue(withNil.isPublishedShareHolderTicket(ticket)),
+          () -> assertEquals(2, withNil.size()),
+          () -> assertFalse(withoutNil.isPublishedShareHolderTicket(NIL)),
+          () -> assertEquals(1, withoutNil.size()));
+    }
+  }
+
+  @Test
+  void emptyTableContainsNothing() {
+    try (var database = new OffHeapPublishedShareHolderTicketsDatabase(List.of())) {
+      assertAll(
+          () -> assertFalse(database.isPublishedShareHolderTicket(UUID.randomUUID())),
+          () -> assertFalse(database.isPublishedShareHolderTicket(NIL)),
+          () -> assertEquals(0, database.size()),
+          () ->
+              assertEquals(
+                  2 * OffHeapPublishedShareHolderTicketsDatabase.SLOT_BYTES,
+                  database.byteSize()));
+    }
+  }
+
+  @Test
+  void lookupsFailOnceClosed() {
+    UUID ticket = UUID.randomUUID();
+    var database = new OffHeapPublishedShareHolderTicketsDatabase(List.of(ticket));
+    database.close();
+    assertThrows(
+        IllegalStateException.class, () -> database.isPublishedShareHolderTicket(ticket));
+  }
+}
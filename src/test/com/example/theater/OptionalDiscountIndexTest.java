@@ -0,0 +1,57 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class OptionalDiscountIndexTest {
+
+  @Test
+  void optionalDiscountIndexSplitsForAllFromPersonalDiscounts() {
+    ShoppingReceipt tooSmall = new ShoppingReceipt(4999);
+    ShoppingReceipt enough = new ShoppingReceipt(5000);
+    DiscountTicket ticket =
+        new DiscountTicket(UUID.randomUUID(), 1, NEW_YEAR_WEDNESDAY, new Price(100));
+    Visitor withTicket = normalVisitor(UUID.randomUUID(), 1, tooSmall, ticket);
+    Visitor withReceipt = normalVisitor(UUID.randomUUID(), 1, enough);
+    VisitorGroup visitors = new VisitorGroup(List.of(withTicket, withReceipt));
+    OptionalDiscountIndex index = visitors.optionalDiscountIndex();
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> false,
+            _ -> true);
+    List<Audience> audiences = logic.calculateAdmissionFee(visitors);
+
+    assertAll(
+        () ->
+            assertEquals(
+                List.of(tooSmall, enough),
+                index.forAll().stream().map(OptionalDiscount.Offered::discount).toList()),
+        () ->
+            assertEquals(
+                List.of(new PersonalStamp(1), ticket),
+                index.personalOf(withTicket).stream()
+                    .map(OptionalDiscount.Offered::discount)
+                    .toList()),
+        () -> assertEquals(new Price(1600), audiences.getFirst().price()),
+        () -> assertEquals(new Price(1700), audiences.getLast().price()));
+  }
+
+
+  @Test
+  void optionalDiscountIndexIsBuiltOncePerGroup() {
+    VisitorGroup visitors =
+        new VisitorGroup(List.of(normalVisitor(UUID.randomUUID(), 1, new ShoppingReceipt(5000))));
+
+    assertSame(visitors.optionalDiscountIndex(), visitors.optionalDiscountIndex());
+  }
+}
@@ -0,0 +1,157 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersonalStampLedgerTest {
+
+  @Test
+  void countsConcurrentVisitsOfTheSameMembers(@TempDir Path directory)
+      throws Exception {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> false,
+            _ -> false);
+    Path file = directory.resolve("stamps.log");
+    List<UUID> members = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    UUID cardHolder = UUID.randomUUID();
+    AtomicInteger stampDiscounts = new AtomicInteger();
+    try (PersonalStampLedger ledger = PersonalStampLedger.open(logic, file)) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        threads.add(
+            Thread.ofPlatform()
+                .start(
+                    () -> {
+                      for (int i = 0; i < 25; i++) {
+                        // the cards they bring are stale, the ledger knows better
+                        VisitorGroup visitorGroup =
+                            new VisitorGroup(
+                                members.stream().map(id -> normalVisitor(id, 0)).toList());
+                        for (Audience audience : ledger.calculateAdmissionFee(visitorGroup)) {
+                          if (DiscountKind.PERSONAL_STAMP.isIn(audience.appliedDiscountKinds())) {
+                            stampDiscounts.incrementAndGet();
+                          }
+                        }
+                      }
+                    }));
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      ledger.calculateAdmissionFee(new VisitorGroup(List.of(normalVisitor(cardHolder, 7))));
+      ledger.flush();
+    }
+    // a crash while the next record was being written
+    Files.write(file, new byte[] {1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+    try (PersonalStampLedger ledger = PersonalStampLedger.open(logic, file)) {
+      List<Audience> audiences =
+          ledger.calculateAdmissionFee(
+              new VisitorGroup(List.of(normalVisitor(members.getFirst(), 3))));
+      assertAll(
+          () -> assertEquals(4, ledger.size()),
+          // 200 visits each: stamps 1 to 10 twenty times, with the stamp discount from the 11th
+          () -> assertEquals(3 * 19, stampDiscounts.get()),
+          () -> assertEquals(10, ledger.count(members.get(1))),
+          () -> assertEquals(10, ledger.count(members.get(2))),
+          () -> assertEquals(8, ledger.count(cardHolder)),
+          () -> assertEquals(new Price(1600), audiences.getFirst().price()),
+          () -> assertEquals(1, ledger.count(members.getFirst())));
+    }
+  }
+
+
+  @Test
+  void reportsAndRedeemsOnceHoweverOftenAGroupIsPricedAgain(@TempDir Path directory)
+      throws Exception {
+    DailySettlement settlement =
+        new DailySettlement(new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY));
+    TicketRedemptions redemptions = new TicketRedemptions();
+    Logic logic =
+        Logic.builder(
+                new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+                _ -> false,
+                _ -> false,
+                _ -> true)
+            .pricingListener(settlement)
+            .ticketRedemptions(redemptions)
+            .build();
+    List<UUID> members = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    DiscountTicket ticket =
+        new DiscountTicket(UUID.randomUUID(), 1, NONE_NEW_YEAR_WEDNESDAY, new Price(400));
+    AtomicLong revenue = new AtomicLong();
+    AtomicInteger ticketDiscounts = new AtomicInteger();
+    try (PersonalStampLedger ledger =
+        PersonalStampLedger.open(logic, directory.resolve("stamps.log"))) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        threads.add(
+            Thread.ofPlatform()
+                .start(
+                    () -> {
+                      for (int i = 0; i < 25; i++) {
+                        // every group wants the same ticket and the counts of the same members
+                        VisitorGroup visitorGroup =
+                            new VisitorGroup(
+                                List.of(
+                                    normalVisitor(members.get(0), 0, ticket),
+                                    normalVisitor(members.get(1), 0),
+                                    normalVisitor(members.get(2), 0)));
+                        for (Audience audience : ledger.calculateAdmissionFee(visitorGroup)) {
+                          revenue.addAndGet(audience.price().value());
+                          if (DiscountKind.DISCOUNT_TICKET.isIn(audience.appliedDiscountKinds())) {
+                            ticketDiscounts.incrementAndGet();
+                          }
+                        }
+                      }
+                    }));
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    DailySettlement.Settlement settled = settlement.snapshot();
+
+    assertAll(
+        () -> assertEquals(1, ticketDiscounts.get()),
+        () -> assertTrue(redemptions.isClaimed(ticket)),
+        () -> assertEquals(200, settled.groups()),
+        () -> assertEquals(600, settled.audiences()),
+        () -> assertEquals(revenue.get(), settled.revenue()),
+        () -> assertEquals(1L, settled.discounts().get(DiscountKind.DISCOUNT_TICKET)));
+  }
+
+  @Test
+  void flushAfterCloseFailsInsteadOfWaiting(@TempDir Path directory) throws Exception {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> false,
+            _ -> false);
+    PersonalStampLedger ledger = PersonalStampLedger.open(logic, directory.resolve("stamps.log"));
+    ledger.calculateAdmissionFee(new VisitorGroup(List.of(normalVisitor(3))));
+    ledger.close();
+
+    assertThrows(IllegalStateException.class, ledger::flush);
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+class PriceTableTest {
+
+  @Test
+  void agreesWithDiscountsAppliedOneByOne() {
+    UUID validMemberId = UUID.randomUUID();
+    ValidatedDiscounts validated =
+        new ValidatedDiscounts(Set.of(), Set.of(validMemberId), Set.of());
+    ShoppingReceipt receipt = new ShoppingReceipt(5000);
+    InternetPremiumMember member = new InternetPremiumMember(validMemberId);
+    List<List<OptionalDiscount>> forAllDiscounts =
+        List.of(
+            List.of(),
+            List.of(receipt),
+            List.of(new ShoppingReceipt(4999)),
+            List.of(member),
+            List.of(new InternetPremiumMember(UUID.randomUUID())),
+            List.of(receipt, member),
+            List.of(member, receipt));
+    List<DiscountType> types = new ArrayList<>(List.of(DiscountTypes.values()));
+    types.add(null);
+    Set<Integer> codes = new HashSet<>();
+    List<Executable> assertions = new ArrayList<>();
+    for (int basePrice : List.of(1800, 1000, 500, 300, 100, 1)) {
+      for (LocalDate today : List.of(NONE_NEW_YEAR_WEDNESDAY, NONE_NEW_YEAR_NONE_WEDNESDAY)) {
+        PricingSnapshot snapshot = PricingSnapshot.of(new Price(basePrice), today);
+        PriceTable table = PriceTable.of(snapshot);
+        for (DiscountType type : types) {
+          for (boolean companion : List.of(false, true)) {
+            for (int stamp : List.of(-1, 9, 10)) {
+              for (List<OptionalDiscount> discounts : forAllDiscounts) {
+                List<OptionalDiscount> optionalDiscounts = new ArrayList<>(discounts);
+                if (0 <= stamp) {
+                  optionalDiscounts.addFirst(new PersonalStamp(stamp));
+                }
+                Visitor visitor = new Visitor(UUID.randomUUID(), type, optionalDiscounts, null);
+                Visitor disability = new Visitor(UUID.randomUUID(), DiscountType.DISABILITIES);
+                VisitorGroup group =
+                    new VisitorGroup(
+                        companion ? List.of(disability, visitor) : List.of(visitor));
+                PricingScratch scratch = new PricingScratch();
+                int index = scratch.load(group) - 1;
+                Logic.priceByVisitorProperties(scratch, snapshot);
+                OptionalDiscountIndex discountIndex = group.optionalDiscountIndex();
+                int[] forAll = Logic.effectiveForAllDiscounts(discountIndex, validated);
+                int forAllCode = PriceTable.forAllOf(discountIndex, forAll);
+                int kinds = scratch.discountKinds[index];
+                codes.add(PriceTable.codeOf(kinds, stamp == 10, forAllCode));
+                Audience actual =
+                    table.audienceOf(
+                        visitor,
+                        kinds,
+                        forAllCode,
+                        forAll.length < 1 ? null : discountIndex.offered[forAll[0]].discount(),
+                        forAll.length < 2 ? null : discountIndex.offered[forAll[1]].discount());
+                Logic.applyOptionalDiscounts(
+                    scratch, snapshot, validated, discountIndex, forAll, index);
+                Audience expected = Logic.audienceOf(scratch, snapshot, index);
+                assertions.add(() -> assertEquals(expected, actual, visitor::toString));
+              }
+            }
+          }
+        }
+      }
+    }
+    // by discount type or as a companion, or none, with or without the tenth stamp, and five
+    // combinations of the discounts for everyone
+    assertions.add(() -> assertEquals(5 * 2 * 5, codes.size()));
+    assertAll(assertions);
+  }
+}
@@ -0,0 +1,94 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class PricingListenerTest {
+
+  @Test
+  void combinedListenersEachSeeEverythingInOrder() {
+    PriceConfiguration configuration =
+        new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY);
+    PricingMetrics metrics = new PricingMetrics();
+    DailySettlement settlement = new DailySettlement(configuration);
+    List<String> calls = new ArrayList<>();
+    PricingListener recorder =
+        new PricingListener() {
+          @Override
+          public void groupStarted(@NotNull VisitorGroup visitorGroup) {
+            calls.add("started");
+          }
+
+          @Override
+          public void lookupCompleted(@NotNull Lookup lookup, int keys, long elapsedNanos) {
+            calls.add(STR."\{lookup} of \{keys}");
+          }
+
+          @Override
+          public void discountApplied(@NotNull DiscountKind kind, @NotNull Price amount) {
+            calls.add(STR."\{kind} of \{amount.value()}");
+          }
+
+          @Override
+          public void groupFinished(
+              @NotNull VisitorGroup visitorGroup,
+              @NotNull List<Audience> audiences,
+              long elapsedNanos) {
+            calls.add(STR."finished with \{audiences.size()}");
+          }
+        };
+    PricingListener all = PricingListener.of(metrics, PricingListener.NONE, settlement, recorder);
+    Logic logic =
+        Logic.builder(configuration, _ -> false, _ -> true, _ -> true)
+            .pricingListener(all)
+            .build();
+    UUID memberId = UUID.randomUUID();
+
+    List<Audience> audiences =
+        logic.calculateAdmissionFee(
+            new VisitorGroup(
+                List.of(
+                    normalVisitor(UUID.randomUUID(), 1, new InternetPremiumMember(memberId)),
+                    child(2))));
+    PricingMetrics.Snapshot measured = metrics.snapshot();
+    DailySettlement.Settlement settled = settlement.snapshot();
+
+    assertAll(
+        () ->
+            assertEquals(
+                List.of(
+                    "started",
+                    "INTERNET_PREMIUM_MEMBERS of 1",
+                    "INTERNET_PREMIUM_MEMBER of 200",
+                    // the child is at half of the base price already
+                    "CHILD of 900",
+                    "finished with 2"),
+                calls),
+        () -> assertEquals(1, measured.groupsFinished()),
+        () -> assertEquals(2, measured.audiences()),
+        () -> assertEquals(1, settled.groups()),
+        () ->
+            assertEquals(
+                audiences.stream().mapToLong(audience -> audience.price().value()).sum(),
+                settled.revenue()));
+  }
+
+  @Test
+  void combiningLeavesOutListenersThatIgnoreEverything() {
+    PricingMetrics metrics = new PricingMetrics();
+    assertAll(
+        () -> assertSame(PricingListener.NONE, PricingListener.of()),
+        () -> assertSame(PricingListener.NONE, PricingListener.of(PricingListener.NONE)),
+        () -> assertSame(metrics, PricingListener.of(PricingListener.NONE, metrics)));
+  }
+}
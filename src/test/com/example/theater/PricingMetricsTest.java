@@ -0,0 +1,69 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.disability;
+import static com.example.theater.LogicTest.normalVisitor;
+import static com.example.theater.LogicTest.shareHolder;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class PricingMetricsTest {
+
+  @Test
+  void pricingMetricsCountGroupsDiscountsAndLookups() {
+    PricingMetrics metrics = new PricingMetrics();
+    Logic logic =
+        Logic.builder(
+                new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+                _ -> true,
+                _ -> true,
+                _ -> true)
+            .pricingListener(metrics)
+            .build();
+    logic.calculateAdmissionFee(
+        new VisitorGroup(
+            List.of(
+                disability(UUID.randomUUID(), 1),
+                normalVisitor(
+                    UUID.randomUUID(),
+                    1,
+                    new InternetPremiumMember(UUID.randomUUID()),
+                    new DiscountTicket(
+                        UUID.randomUUID(), 1, NEW_YEAR_WEDNESDAY, new Price(100))))));
+    logic.calculateAdmissionFee(
+        new VisitorGroup(List.of(shareHolder(UUID.randomUUID(), 1), normalVisitor(1))));
+    PricingMetrics.Snapshot snapshot = metrics.snapshot();
+
+    assertAll(
+        () -> assertEquals(2, snapshot.groupsStarted()),
+        () -> assertEquals(2, snapshot.groupsFinished()),
+        () -> assertEquals(1, snapshot.shareHolderGroups()),
+        () -> assertEquals(4, snapshot.audiences()),
+        () -> assertEquals(2, snapshot.discounts().get(DiscountKind.DISABILITIES)),
+        () -> assertEquals(720, snapshot.discountAmounts().get(DiscountKind.DISABILITIES)),
+        () -> assertEquals(2, snapshot.discounts().get(DiscountKind.INTERNET_PREMIUM_MEMBER)),
+        () -> assertEquals(2, snapshot.discounts().get(DiscountKind.SHARE_HOLDER_TICKET)),
+        () -> assertEquals(2, snapshot.groupLatency().count()),
+        () ->
+            assertEquals(
+                1,
+                snapshot
+                    .lookupLatencies()
+                    .get(PricingListener.Lookup.PUBLISHED_SHARE_HOLDER_TICKETS)
+                    .count()),
+        () ->
+            assertEquals(
+                1,
+                snapshot
+                    .lookupLatencies()
+                    .get(PricingListener.Lookup.INTERNET_PREMIUM_MEMBERS)
+                    .count()),
+        () ->
+            assertEquals(1, snapshot.lookupKeys().get(PricingListener.Lookup.DISCOUNT_TICKETS)));
+  }
+}
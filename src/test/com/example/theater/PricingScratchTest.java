@@ -0,0 +1,39 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class PricingScratchTest {
+
+  @Test
+  void virtualThreadsReuseScratchesReleasedByEarlierOnes() throws Exception {
+    VisitorGroup visitorGroup =
+        new VisitorGroup(List.of(LogicTest.normalVisitor(1), LogicTest.child(2)));
+    int threads = 4 * PricingScratch.POOL.length();
+    Set<PricingScratch> used = Collections.newSetFromMap(new IdentityHashMap<>());
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < threads; i++) {
+        used.add(
+            executor
+                .submit(
+                    () -> {
+                      PricingScratch scratch = PricingScratch.acquire();
+                      scratch.load(visitorGroup);
+                      scratch.release();
+                      return scratch;
+                    })
+                .get());
+      }
+    }
+
+    // a scratch per thread without the pool; other tests pricing meanwhile may add a few
+    assertTrue(used.size() < threads / 2, () -> used.size() + " scratches");
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class PricingSnapshotTest {
+
+  /** Configuration changed by the test between calculations. */
+  private static final class ChangingPriceConfiguration implements PriceConfiguration {
+    Price basePrice = new Price(1800);
+    LocalDate today = NEW_YEAR_WEDNESDAY;
+
+    @Override
+    public Price getBasePrice() {
+      return basePrice;
+    }
+
+    @Override
+    public LocalDate getToday() {
+      return today;
+    }
+  }
+
+  @Test
+  void snapshotIsReplacedWhenTheDayOrBasePriceChanges() {
+    ChangingPriceConfiguration configuration = new ChangingPriceConfiguration();
+    Logic logic = new Logic(configuration, _ -> false, _ -> false, _ -> false);
+    VisitorGroup female =
+        new VisitorGroup(List.of(new Visitor(UUID.randomUUID(), DiscountType.FEMALES)));
+
+    PricingSnapshot newYearWednesday = logic.pricingSnapshot();
+    Price onNewYearWednesday = logic.calculateAdmissionFee(female).getFirst().price();
+    configuration.today = NONE_NEW_YEAR_WEDNESDAY;
+    PricingSnapshot wednesday = logic.pricingSnapshot();
+    Price onWednesday = logic.calculateAdmissionFee(female).getFirst().price();
+    configuration.basePrice = new Price(2000);
+    PricingSnapshot higherBasePrice = logic.pricingSnapshot();
+    Price atHigherBasePrice = logic.calculateAdmissionFee(female).getFirst().price();
+
+    assertAll(
+        () -> assertSame(higherBasePrice, logic.pricingSnapshot()),
+        () -> assertNotSame(newYearWednesday, wednesday),
+        () -> assertNotSame(wednesday, higherBasePrice),
+        // January 1st to 3rd have no discount for females and elderlies even on a Wednesday
+        () -> assertFalse(newYearWednesday.femaleAndElderlyDiscountAvailable()),
+        () -> assertEquals(new Price(1800), onNewYearWednesday),
+        () -> assertTrue(wednesday.femaleAndElderlyDiscountAvailable()),
+        () -> assertEquals(new Price(1440), onWednesday),
+        () -> assertEquals(new Price(2000), higherBasePrice.basePrice()),
+        () -> assertEquals(new Price(1600), atHigherBasePrice));
+  }
+
+  @Test
+  void femaleAndElderlyDiscountIsOnlyOnWednesdaysAfterJanuaryThird() {
+    assertAll(
+        () -> assertFalse(femaleAndElderlyDiscountAvailableOn(NEW_YEAR_WEDNESDAY)),
+        () -> assertFalse(femaleAndElderlyDiscountAvailableOn(NEW_YEAR_NONE_WEDNESDAY)),
+        () -> assertTrue(femaleAndElderlyDiscountAvailableOn(NONE_NEW_YEAR_WEDNESDAY)),
+        () -> assertFalse(femaleAndElderlyDiscountAvailableOn(NONE_NEW_YEAR_NONE_WEDNESDAY)),
+        () -> assertTrue(femaleAndElderlyDiscountAvailableOn(LocalDate.of(2020, 1, 8))));
+  }
+
+  private static boolean femaleAndElderlyDiscountAvailableOn(LocalDate today) {
+    return PricingSnapshot.of(new Price(1800), today).femaleAndElderlyDiscountAvailable();
+  }
+
+  @Test
+  void priceMatchesUncachedPrices() {
+    for (int basePrice : new int[] {999, 1000, 1800, 1999}) {
+      PricingSnapshot snapshot = PricingSnapshot.of(new Price(basePrice), NONE_NEW_YEAR_WEDNESDAY);
+      for (int value = 0; value <= basePrice + 1; value++) {
+        assertEquals(new Price(value), snapshot.price(value), () -> STR."base price \{basePrice}");
+      }
+      assertAll(
+          () -> assertEquals(new Price(basePrice * 4 / 5), snapshot.eightyPercentOfBasePrice()),
+          () -> assertEquals(new Price(basePrice / 2), snapshot.halfOfBasePrice()),
+          () -> assertSame(snapshot.basePrice(), snapshot.price(basePrice)),
+          () -> assertSame(snapshot.eightyPercentOfBasePrice(), snapshot.price(basePrice * 4 / 5)),
+          () -> assertSame(snapshot.halfOfBasePrice(), snapshot.price(basePrice / 2)));
+    }
+  }
+}
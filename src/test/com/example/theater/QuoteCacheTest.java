@@ -0,0 +1,153 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class QuoteCacheTest {
+
+  @Test
+  void quotesGroupsOfTheSameShapeAsLogicDoes() {
+    Random random = new Random(23);
+    Set<UUID> validMemberIds = Set.of(UUID.randomUUID(), UUID.randomUUID());
+    List<UUID> memberIds = List.of(validMemberIds.iterator().next(), UUID.randomUUID());
+    List<DiscountTicket> tickets = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      tickets.add(
+          new DiscountTicket(
+              new UUID(0, 1), i, NONE_NEW_YEAR_WEDNESDAY, new Price(100 * (1 + i % 3))));
+    }
+    Set<DiscountTicket> validTickets = Set.copyOf(tickets.subList(0, 6));
+    QuoteCache cache = new QuoteCache(4096);
+    List<VisitorGroup> groups = new ArrayList<>();
+    for (int g = 0; g < 2000; g++) {
+      List<Visitor> visitors = new ArrayList<>();
+      for (int v = random.nextInt(1, 5); 0 < v; v--) {
+        if (!visitors.isEmpty() && random.nextInt(10) == 0) {
+          visitors.add(visitors.getLast());
+          continue;
+        }
+        List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+        optionalDiscounts.add(new PersonalStamp(random.nextInt(11)));
+        if (random.nextInt(4) == 0) {
+          optionalDiscounts.add(new ShoppingReceipt(random.nextInt(4000, 6000)));
+        }
+        if (random.nextInt(4) == 0) {
+          optionalDiscounts.add(new InternetPremiumMember(memberIds.get(random.nextInt(2))));
+        }
+        if (random.nextInt(4) == 0) {
+          optionalDiscounts.add(tickets.get(random.nextInt(tickets.size())));
+        }
+        DiscountType type =
+            switch (random.nextInt(8)) {
+              case 0 -> DiscountType.CHILD;
+              case 1 -> DiscountType.DISABILITIES;
+              case 2 -> DiscountType.FEMALES;
+              case 3 -> DiscountType.SENIOR_CITIZENS;
+              case 4 -> new ShareHolderTicket(new UUID(0, random.nextInt(4)), UUID.randomUUID());
+              default -> null;
+            };
+        visitors.add(new Visitor(UUID.randomUUID(), type, optionalDiscounts, null));
+      }
+      groups.add(new VisitorGroup(visitors));
+    }
+
+    List<List<Audience>> expected = new ArrayList<>();
+    List<List<Audience>> actual = new ArrayList<>();
+    int next = 0;
+    // the cache is dropped when the day changes to a Wednesday halfway
+    for (LocalDate today : List.of(NONE_NEW_YEAR_NONE_WEDNESDAY, NONE_NEW_YEAR_WEDNESDAY)) {
+      PriceConfiguration configuration = new FixedPriceConfiguration(new Price(1800), today);
+      PublishedShareHolderTicketsDatabase published = id -> id.getLeastSignificantBits() == 0;
+      Logic logic =
+          Logic.builder(configuration, published, validMemberIds::contains, validTickets::contains)
+              .ticketRedemptions(new TicketRedemptions())
+              .build();
+      Logic cached =
+          Logic.builder(configuration, published, validMemberIds::contains, validTickets::contains)
+              .ticketRedemptions(new TicketRedemptions())
+              .quoteCache(cache)
+              .build();
+      for (VisitorGroup group : groups.subList(next, next + 1000)) {
+        expected.add(logic.calculateAdmissionFee(group));
+        actual.add(cached.calculateAdmissionFee(group));
+      }
+      next += 1000;
+    }
+
+    QuoteCache.Stats stats = cache.stats();
+    assertAll(
+        () -> assertEquals(expected, actual),
+        () -> assertEquals(2000, stats.hits() + stats.misses()),
+        () -> assertTrue(0 < stats.hits(), stats::toString),
+        () -> assertEquals(0, stats.evictions()));
+  }
+
+
+  @Test
+  void dropsTheQuotesOfASnapshotOnceItIsSwapped() {
+    QuoteCache cache = new QuoteCache(64);
+    Logic logic = cachingLogic(new Price(1800), cache);
+    Logic cheaper = cachingLogic(new Price(1000), cache);
+    VisitorGroup adult = new VisitorGroup(List.of(normalVisitor(1)));
+
+    logic.calculateAdmissionFee(adult);
+    logic.calculateAdmissionFee(new VisitorGroup(List.of(child(1))));
+    logic.calculateAdmissionFee(new VisitorGroup(List.of(normalVisitor(1), child(1))));
+    int cached = cache.stats().size();
+    cheaper.calculateAdmissionFee(adult);
+    QuoteCache.Stats swapped = cache.stats();
+    List<Audience> audiences = logic.calculateAdmissionFee(adult);
+    QuoteCache.Stats swappedBack = cache.stats();
+
+    assertAll(
+        () -> assertEquals(3, cached),
+        () -> assertEquals(1, swapped.size()),
+        () -> assertEquals(4, swapped.misses()),
+        () -> assertEquals(1, swappedBack.size()),
+        () -> assertEquals(5, swappedBack.misses()),
+        () -> assertEquals(new Price(1800), audiences.getFirst().price()));
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedQuote() {
+    QuoteCache cache = new QuoteCache(1);
+    Logic logic = cachingLogic(new Price(1800), cache);
+    VisitorGroup adult = new VisitorGroup(List.of(normalVisitor(1)));
+
+    logic.calculateAdmissionFee(adult);
+    logic.calculateAdmissionFee(adult);
+    logic.calculateAdmissionFee(new VisitorGroup(List.of(child(1))));
+    logic.calculateAdmissionFee(adult);
+    QuoteCache.Stats stats = cache.stats();
+
+    assertAll(
+        () -> assertEquals(1, stats.hits()),
+        () -> assertEquals(3, stats.misses()),
+        () -> assertEquals(2, stats.evictions()),
+        () -> assertEquals(1, stats.size()));
+  }
+
+  private static @NotNull Logic cachingLogic(@NotNull Price basePrice, @NotNull QuoteCache cache) {
+    return Logic.builder(
+            new FixedPriceConfiguration(basePrice, NONE_NEW_YEAR_NONE_WEDNESDAY),
+            _ -> false,
+            _ -> false,
+            _ -> false)
+        .quoteCache(cache)
+        .build();
+  }
+}
@@ -0,0 +1,215 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class QuoteSessionTest {
+
+  @Test
+  void sessionMatchesFullRecalculation() {
+    AtomicInteger memberLookups = new AtomicInteger();
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_WEDNESDAY),
+            ticketId -> ticketId.getLeastSignificantBits() % 4 == 0,
+            memberId -> {
+              memberLookups.incrementAndGet();
+              return memberId.getLeastSignificantBits() % 2 == 0;
+            },
+            discountTicket -> discountTicket.ticketSeqId() % 3 != 0);
+    QuoteSession session = new QuoteSession(logic);
+    Random random = new Random(20240616);
+    UUID[] members = new UUID[5];
+    for (int i = 0; i < members.length; i++) {
+      members[i] = new UUID(0, i);
+    }
+    DiscountType[] types = {
+      null, null, DiscountType.CHILD, DiscountType.DISABILITIES, DiscountType.FEMALES, null
+    };
+    for (int step = 0; step < 400; step++) {
+      List<Visitor> visitors = List.copyOf(session.visitorGroup().visitors());
+      int operation = visitors.isEmpty() ? 0 : random.nextInt(5);
+      OptionalDiscount optionalDiscount =
+          switch (random.nextInt(4)) {
+            case 0 -> new ShoppingReceipt(random.nextInt(4000, 6000));
+            case 1 -> new InternetPremiumMember(members[random.nextInt(members.length)]);
+            case 2 -> new PersonalStamp(random.nextInt(11));
+            default ->
+                new DiscountTicket(
+                    members[0], random.nextInt(10), NEW_YEAR_WEDNESDAY, new Price(100));
+          };
+      Visitor target = visitors.isEmpty() ? null : visitors.get(random.nextInt(visitors.size()));
+      List<Audience> audiences =
+          switch (operation) {
+            case 0, 1 ->
+                session.addVisitor(
+                    new Visitor(
+                        UUID.randomUUID(),
+                        random.nextInt(12) == 0
+                            ? new ShareHolderTicket(new UUID(0, random.nextInt(8)), members[0])
+                            : types[random.nextInt(types.length)],
+                        optionalDiscount));
+            case 2 -> session.removeVisitor(target.id());
+            case 3 -> session.addDiscount(target.id(), optionalDiscount);
+            default ->
+                target.optionalDiscounts().isEmpty()
+                    ? session.addDiscount(target.id(), optionalDiscount)
+                    : session.removeDiscount(target.id(), target.optionalDiscounts().getFirst());
+          };
+      assertEquals(
+          comparable(logic.calculateAdmissionFee(session.visitorGroup())),
+          comparable(audiences),
+          STR."step \{step}");
+    }
+    int fullRecalculationLookups = memberLookups.get();
+    memberLookups.set(0);
+    QuoteSession other = new QuoteSession(logic);
+    for (UUID member : members) {
+      other.addVisitor(new Visitor(UUID.randomUUID(), null, new InternetPremiumMember(member)));
+      other.addVisitor(new Visitor(UUID.randomUUID(), null, new InternetPremiumMember(member)));
+    }
+    assertAll(
+        () -> assertTrue(0 < fullRecalculationLookups),
+        () -> assertEquals(members.length, memberLookups.get()));
+  }
+
+  @Test
+  void sessionMatchesFullRecalculationForRepeatedVisitorsWithoutWednesdayDiscounts() {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+            ticketId -> true,
+            memberId -> memberId.getLeastSignificantBits() % 2 == 0,
+            discountTicket -> true);
+    QuoteSession session = new QuoteSession(logic);
+    Random random = new Random(20240617);
+    DiscountType[] types = {
+      null, null, DiscountType.DISABILITIES, DiscountType.FEMALES, DiscountType.SENIOR_CITIZENS
+    };
+    for (int step = 0; step < 400; step++) {
+      List<Visitor> visitors = List.copyOf(session.visitorGroup().visitors());
+      OptionalDiscount optionalDiscount =
+          switch (random.nextInt(3)) {
+            case 0 -> new ShoppingReceipt(random.nextInt(4000, 6000));
+            case 1 -> new InternetPremiumMember(new UUID(0, random.nextInt(4)));
+            default ->
+                new DiscountTicket(
+                    new UUID(0, 0), random.nextInt(4), NEW_YEAR_WEDNESDAY, new Price(300));
+          };
+      Visitor target = visitors.isEmpty() ? null : visitors.get(random.nextInt(visitors.size()));
+      for (Visitor visitor : visitors) {
+        // edits go to the first visitor with the id
+        if (visitor.id().equals(target.id())) {
+          target = visitor;
+          break;
+        }
+      }
+      List<Audience> audiences =
+          switch (visitors.isEmpty() ? 0 : random.nextInt(5)) {
+            case 0 ->
+                session.addVisitor(
+                    new Visitor(
+                        UUID.randomUUID(), types[random.nextInt(types.length)], optionalDiscount));
+            // the same visitor again shares its personal discounts
+            case 1 -> session.addVisitor(target);
+            case 2 -> session.removeVisitor(target.id());
+            case 3 -> session.addDiscount(target.id(), optionalDiscount);
+            default ->
+                target.optionalDiscounts().isEmpty()
+                    ? session.addDiscount(target.id(), optionalDiscount)
+                    : session.removeDiscount(target.id(), target.optionalDiscounts().getLast());
+          };
+      assertEquals(
+          comparable(logic.calculateAdmissionFee(session.visitorGroup())),
+          comparable(audiences),
+          STR."step \{step}");
+    }
+  }
+
+  @Test
+  void quoteLeavesOutClaimedTicketsWithoutClaimingAny() {
+    TicketRedemptions redemptions = new TicketRedemptions();
+    ShareHolderTicketClaims claims = new ShareHolderTicketClaims();
+    Logic logic =
+        Logic.builder(
+                new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+                _ -> true,
+                _ -> true,
+                _ -> true)
+            .ticketRedemptions(redemptions)
+            .shareHolderTicketClaims(claims)
+            .build();
+    UUID event = UUID.randomUUID();
+    DiscountTicket redeemed =
+        new DiscountTicket(event, 1, NEW_YEAR_WEDNESDAY, new Price(300));
+    DiscountTicket fresh =
+        new DiscountTicket(event, 2, NEW_YEAR_WEDNESDAY, new Price(300));
+    redemptions.claim(redeemed);
+    ShareHolderTicket claimedElsewhere =
+        new ShareHolderTicket(UUID.randomUUID(), UUID.randomUUID());
+    claims.claim(claimedElsewhere.id(), Set.of(UUID.randomUUID()));
+    ShareHolderTicket unclaimed = new ShareHolderTicket(UUID.randomUUID(), UUID.randomUUID());
+
+    QuoteSession session = new QuoteSession(logic);
+    session.addVisitor(new Visitor(UUID.randomUUID(), null, redeemed));
+    session.addVisitor(new Visitor(UUID.randomUUID(), null, fresh));
+    session.addVisitor(new Visitor(UUID.randomUUID(), null, fresh));
+    List<Audience> withTickets =
+        session.addVisitor(new Visitor(UUID.randomUUID(), claimedElsewhere));
+    UUID holder = UUID.randomUUID();
+    List<Audience> free = session.addVisitor(new Visitor(holder, unclaimed));
+    boolean claimedByQuotes = redemptions.isClaimed(fresh) || claims.isClaimed(unclaimed.id());
+    List<Audience> issuedFree = logic.calculateAdmissionFee(session.visitorGroup());
+
+    List<Audience> withoutHolder = session.removeVisitor(holder);
+    List<Audience> issued = logic.calculateAdmissionFee(session.visitorGroup());
+    List<Audience> afterIssue = session.addVisitor(new Visitor(UUID.randomUUID(), null));
+    assertAll(
+        () ->
+            assertEquals(
+                List.of(1800, 1500, 1800, 1800),
+                withTickets.stream().map(audience -> audience.price().value()).toList()),
+        () -> assertTrue(free.stream().allMatch(audience -> audience.price().value() == 0)),
+        () -> assertFalse(claimedByQuotes),
+        () -> assertEquals(comparable(issuedFree), comparable(free)),
+        () -> assertEquals(comparable(issued), comparable(withoutHolder)),
+        () -> assertTrue(redemptions.isClaimed(fresh)),
+        () ->
+            assertEquals(
+                List.of(1800, 1800, 1800, 1800, 1800),
+                afterIssue.stream().map(audience -> audience.price().value()).toList()));
+  }
+
+  private static @NotNull List<List<Object>> comparable(@NotNull List<Audience> audiences) {
+    return audiences.stream()
+        .map(
+            audience ->
+                List.of(
+                    audience.id(),
+                    audience.newPersonalStamp(),
+                    audience.price(),
+                    audience.appliedDiscountKinds(),
+                    audience.discountDetails().stream()
+                        .map(
+                            discount ->
+                                List.of(
+                                    discount.price(),
+                                    discount.description().getText(),
+                                    discount.description().getSource()))
+                        .toList()))
+        .toList();
+  }
+}
@@ -0,0 +1,67 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.normalVisitor;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ShareHolderTicketClaimsTest {
+
+  @Test
+  void shareHolderTicketMakesOnlyTheGroupClaimingItFree() throws Exception {
+    ShareHolderTicketClaims claims = new ShareHolderTicketClaims();
+    Logic logic =
+        Logic.builder(
+                new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+                _ -> true,
+                _ -> false,
+                _ -> false)
+            .shareHolderTicketClaims(claims)
+            .build();
+    UUID owner = UUID.randomUUID();
+    ShareHolderTicket ticket = new ShareHolderTicket(UUID.randomUUID(), owner);
+    Visitor holder = new Visitor(owner, ticket);
+    Visitor friend = normalVisitor(-1);
+    List<Audience> first = logic.calculateAdmissionFee(new VisitorGroup(List.of(holder, friend)));
+    // the counter timed out and sends the same group again, in another order
+    List<Audience> retried =
+        logic.calculateAdmissionFeeAsync(new VisitorGroup(List.of(friend, holder))).join();
+    List<Audience> another =
+        logic.calculateAdmissionFee(new VisitorGroup(List.of(holder, normalVisitor(-1))));
+
+    // counters racing for a fresh ticket with groups of their own
+    ShareHolderTicket contended = new ShareHolderTicket(UUID.randomUUID(), owner);
+    AtomicInteger freeGroups = new AtomicInteger();
+    List<Thread> counters = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      counters.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    List<Audience> audiences =
+                        logic.calculateAdmissionFee(
+                            new VisitorGroup(
+                                List.of(new Visitor(owner, contended), normalVisitor(-1))));
+                    if (audiences.getLast().price().value() == 0) {
+                      freeGroups.incrementAndGet();
+                    }
+                  }));
+    }
+    for (Thread counter : counters) {
+      counter.join();
+    }
+
+    assertAll(
+        () -> assertEquals(List.of(0, 0), first.stream().map(a -> a.price().value()).toList()),
+        () -> assertEquals(List.of(0, 0), retried.stream().map(a -> a.price().value()).toList()),
+        () -> assertEquals(new Price(1800), another.getLast().price()),
+        () -> assertEquals(1, freeGroups.get()),
+        () -> assertEquals(new ShareHolderTicketClaims.Stats(2, 1, 8), claims.stats()));
+  }
+}
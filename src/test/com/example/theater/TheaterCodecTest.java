@@ -0,0 +1,187 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class TheaterCodecTest {
+
+  static final @NotNull LocalDate WEDNESDAY = LocalDate.of(2023, 1, 4);
+
+  static @NotNull VisitorGroup everyKindOfVisitor() {
+    UUID owner = UUID.randomUUID();
+    return new VisitorGroup(
+        List.of(
+            new Visitor(UUID.randomUUID(), null),
+            new Visitor(UUID.randomUUID(), DiscountTypes.CHILD, new PersonalStamp(10)),
+            new Visitor(
+                UUID.randomUUID(),
+                DiscountTypes.DISABILITIES,
+                new ShoppingReceipt(5000),
+                new InternetPremiumMember(UUID.randomUUID())),
+            new Visitor(UUID.randomUUID(), DiscountTypes.ELDERLIES, new PersonalStamp(0)),
+            new Visitor(
+                UUID.randomUUID(),
+                DiscountTypes.FEMALES,
+                new DiscountTicket(UUID.randomUUID(), 123_456, WEDNESDAY, new Price(1000))),
+            new Visitor(
+                owner,
+                new ShareHolderTicket(UUID.randomUUID(), owner),
+                new PersonalStamp(3),
+                new ShoppingReceipt(-1))));
+  }
+
+  static <T> T roundTrip(
+      @NotNull T value,
+      @NotNull BiConsumer<ByteBuffer, T> write,
+      @NotNull Function<ByteBuffer, T> read) {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    write.accept(buffer, value);
+    buffer.flip();
+    T decoded = read.apply(buffer);
+    assertEquals(0, buffer.remaining());
+    return decoded;
+  }
+
+  @Test
+  void visitorGroupRoundTrip() {
+    VisitorGroup visitorGroup = everyKindOfVisitor();
+    assertEquals(
+        visitorGroup,
+        roundTrip(
+            visitorGroup, TheaterCodec::writeVisitorGroup, TheaterCodec::readVisitorGroup));
+  }
+
+  @Test
+  void audiencesRoundTrip() {
+    Logic logic =
+        new Logic(
+            new FixedPriceConfiguration(new Price(1800), WEDNESDAY),
+            _ -> false,
+            _ -> true,
+            _ -> true);
+    List<Visitor> withoutShareHolder =
+        List.copyOf(everyKindOfVisitor().visitors()).subList(0, 5);
+    List<Audience> audiences = new ArrayList<>();
+    audiences.addAll(logic.calculateAdmissionFee(new VisitorGroup(withoutShareHolder)));
+    audiences.addAll(
+        new Logic(
+                new FixedPriceConfiguration(new Price(1800), WEDNESDAY),
+                _ -> true,
+                _ -> true,
+                _ -> true)
+            .calculateAdmissionFee(everyKindOfVisitor()));
+    audiences.add(
+        new Audience(
+            UUID.randomUUID(),
+            new PersonalStamp(11),
+            new Price(-300),
+            List.of(
+                new Discount(
+                    new Price(Integer.MAX_VALUE),
+                    DiscountDescription.of("特別割引", DiscountTypes.FEMALES)))));
+
+    assertEquals(
+        audiences,
+        roundTrip(
+            List.copyOf(audiences), TheaterCodec::writeAudiences, TheaterCodec::readAudiences));
+  }
+
+  @Test
+  void encodingIsCompact() {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    TheaterCodec.writeVisitor(buffer, new Visitor(UUID.randomUUID(), null, new PersonalStamp(3)));
+    int visitor = buffer.position();
+    buffer.clear();
+    TheaterCodec.writeDiscount(
+        buffer,
+        new Discount(
+            new Price(200),
+            DiscountDescription.of("インターネットプレミアム会員割引", new ShoppingReceipt(6000))));
+
+    assertAll(
+        // id, no discount type, one stamp of 3
+        () -> assertEquals(16 + 1 + 1 + 2, visitor),
+        // price, title id, receipt of 6000
+        () -> assertEquals(2 + 1 + 1 + 2, buffer.position()));
+  }
+
+  @Test
+  void unknownTagIsRejected() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    TheaterCodec.writeUuid(buffer, UUID.randomUUID());
+    buffer.put((byte) 42);
+    buffer.flip();
+    assertThrows(IllegalArgumentException.class, () -> TheaterCodec.readVisitor(buffer));
+  }
+
+  @Test
+  void discountKindsContradictingTheDiscountsAreRejected() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    TheaterCodec.writeUuid(buffer, UUID.randomUUID());
+    TheaterCodec.writeVarInt(buffer, 1);
+    TheaterCodec.writeVarInt(buffer, 900);
+    TheaterCodec.writeVarInt(buffer, DiscountKind.FEMALES.bit());
+    TheaterCodec.writeVarInt(buffer, 1);
+    TheaterCodec.writeDiscount(
+        buffer, new Discount(new Price(900), DiscountDescription.of("子供割引", DiscountTypes.CHILD)));
+    buffer.flip();
+    assertThrows(IllegalArgumentException.class, () -> TheaterCodec.readAudience(buffer));
+  }
+
+  @Test
+  void truncatedPayloadIsRejected() {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    TheaterCodec.writeVisitorGroup(buffer, everyKindOfVisitor());
+    buffer.flip();
+    for (int length = 0; length < buffer.limit(); length++) {
+      ByteBuffer truncated = buffer.slice(0, length);
+      RuntimeException e =
+          assertThrows(RuntimeException.class, () -> TheaterCodec.readVisitorGroup(truncated));
+      assertTrue(
+          e instanceof BufferUnderflowException || e instanceof IllegalArgumentException,
+          e::toString);
+    }
+  }
+
+  @Test
+  void badLengthIsRejected() {
+    ByteBuffer negative = ByteBuffer.allocate(64);
+    TheaterCodec.writeVarInt(negative, -1);
+    negative.flip();
+    ByteBuffer huge = ByteBuffer.allocate(64);
+    TheaterCodec.writeVarInt(huge, Integer.MAX_VALUE);
+    huge.flip();
+    ByteBuffer title = ByteBuffer.allocate(64);
+    TheaterCodec.writeVarInt(title, 100);
+    // a title not in the dictionary, longer than the rest of the payload
+    title.put((byte) 0);
+    TheaterCodec.writeVarInt(title, 1 << 30);
+    title.flip();
+
+    assertAll(
+        () ->
+            assertThrows(
+                IllegalArgumentException.class, () -> TheaterCodec.readVisitorGroup(negative)),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class, () -> TheaterCodec.readAudiences(huge.duplicate())),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> TheaterCodec.readVisitorGroup(huge.duplicate())),
+        () -> assertThrows(IllegalArgumentException.class, () -> TheaterCodec.readDiscount(title)));
+  }
+}
@@ -0,0 +1,90 @@
+package com.example.theater;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TicketBitmapTest {
+
+  @Test
+  void ofRangeContainsFirstAndLastTicketOnly() {
+    TicketBitmap bitmap = TicketBitmap.ofRange(10, 138);
+    assertAll(
+        () -> assertTrue(bitmap.contains(10)),
+        () -> assertTrue(bitmap.contains(73)),
+        () -> assertTrue(bitmap.contains(137)),
+        () -> assertFalse(bitmap.contains(9)),
+        () -> assertFalse(bitmap.contains(138)),
+        () -> assertFalse(bitmap.contains(Integer.MIN_VALUE)),
+        () -> assertFalse(bitmap.contains(Integer.MAX_VALUE)),
+        () -> assertEquals(16 + 8 * 2, bitmap.byteSize()));
+  }
+
+  @Test
+  void ofRangeEndingOnAWordBoundary() {
+    TicketBitmap bitmap = TicketBitmap.ofRange(0, 64);
+    assertAll(
+        () -> assertTrue(bitmap.contains(0)),
+        () -> assertTrue(bitmap.contains(63)),
+        () -> assertFalse(bitmap.contains(64)),
+        () -> assertFalse(bitmap.contains(-1)),
+        () -> assertEquals(16 + 8, bitmap.byteSize()));
+  }
+
+  @Test
+  void ofRangeAtTheEndsOfInt() {
+    TicketBitmap highest = TicketBitmap.ofRange(Integer.MAX_VALUE - 3, Integer.MAX_VALUE);
+    TicketBitmap lowest = TicketBitmap.ofRange(Integer.MIN_VALUE, Integer.MIN_VALUE + 3);
+    assertAll(
+        () -> assertTrue(highest.contains(Integer.MAX_VALUE - 3)),
+        () -> assertTrue(highest.contains(Integer.MAX_VALUE - 1)),
+        () -> assertFalse(highest.contains(Integer.MAX_VALUE)),
+        () -> assertFalse(highest.contains(Integer.MIN_VALUE)),
+        () -> assertTrue(lowest.contains(Integer.MIN_VALUE)),
+        () -> assertTrue(lowest.contains(Integer.MIN_VALUE + 2)),
+        () -> assertFalse(lowest.contains(Integer.MIN_VALUE + 3)),
+        () -> assertFalse(lowest.contains(Integer.MAX_VALUE)));
+  }
+
+  @Test
+  void emptyRangeContainsNothing() {
+    assertAll(
+        () -> assertFalse(TicketBitmap.ofRange(5, 5).contains(5)),
+        () -> assertFalse(TicketBitmap.ofRange(6, 5).contains(5)),
+        () -> assertFalse(TicketBitmap.of().contains(0)),
+        () -> assertEquals(TicketBitmap.EMPTY.byteSize(), TicketBitmap.ofRange(6, 5).byteSize()));
+  }
+
+  @Test
+  void ofContainsExactlyTheGivenTickets() {
+    TicketBitmap bitmap = TicketBitmap.of(1000, 5, 69, 5);
+    assertAll(
+        () -> assertTrue(bitmap.contains(5)),
+        () -> assertTrue(bitmap.contains(69)),
+        () -> assertTrue(bitmap.contains(1000)),
+        () -> assertFalse(bitmap.contains(4)),
+        () -> assertFalse(bitmap.contains(6)),
+        () -> assertFalse(bitmap.contains(68)),
+        () -> assertFalse(bitmap.contains(999)),
+        () -> assertFalse(bitmap.contains(1001)),
+        () -> assertEquals(16 + 8 * 16, bitmap.byteSize()));
+  }
+
+  @Test
+  void ofTheHighestAndLowestTickets() {
+    TicketBitmap highest = TicketBitmap.of(Integer.MAX_VALUE);
+    TicketBitmap lowest = TicketBitmap.of(Integer.MIN_VALUE, Integer.MIN_VALUE + 63);
+    assertAll(
+        () -> assertTrue(highest.contains(Integer.MAX_VALUE)),
+        () -> assertFalse(highest.contains(Integer.MAX_VALUE - 1)),
+        () -> assertFalse(highest.contains(Integer.MIN_VALUE)),
+        () -> assertTrue(lowest.contains(Integer.MIN_VALUE)),
+        () -> assertTrue(lowest.contains(Integer.MIN_VALUE + 63)),
+        () -> assertFalse(lowest.contains(Integer.MIN_VALUE + 1)),
+        () -> assertFalse(lowest.contains(Integer.MIN_VALUE + 64)),
+        () -> assertEquals(16 + 8, lowest.byteSize()));
+  }
+}
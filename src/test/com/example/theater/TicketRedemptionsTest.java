@@ -0,0 +1,60 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TicketRedemptionsTest {
+
+  @Test
+  void redeemsATicketOnceUntilTheQuoteIsAbandoned(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("redemptions");
+    TicketRedemptions redemptions = TicketRedemptions.open(file);
+    Logic logic =
+        Logic.builder(
+                new FixedPriceConfiguration(new Price(1800), NONE_NEW_YEAR_NONE_WEDNESDAY),
+                _ -> false,
+                _ -> false,
+                _ -> true)
+            .ticketRedemptions(redemptions)
+            .build();
+    DiscountTicket ticket =
+        new DiscountTicket(UUID.randomUUID(), 70_000, NONE_NEW_YEAR_NONE_WEDNESDAY, new Price(300));
+    DiscountTicket childTicket =
+        new DiscountTicket(ticket.eventId(), -1, NONE_NEW_YEAR_NONE_WEDNESDAY, new Price(300));
+    Visitor holder = new Visitor(UUID.randomUUID(), null, ticket);
+
+    List<Audience> first =
+        logic.calculateAdmissionFee(
+            new VisitorGroup(
+                List.of(
+                    new Visitor(UUID.randomUUID(), DiscountTypes.CHILD, childTicket),
+                    holder,
+                    new Visitor(UUID.randomUUID(), null, ticket))));
+    List<Audience> elsewhere = logic.calculateAdmissionFee(new VisitorGroup(List.of(holder)));
+    redemptions.persist();
+    boolean persisted = TicketRedemptions.open(file).isClaimed(ticket);
+    redemptions.abandon(first);
+    List<Audience> afterAbandoned = logic.calculateAdmissionFee(new VisitorGroup(List.of(holder)));
+
+    assertAll(
+        () ->
+            assertEquals(
+                List.of(new Price(900), new Price(1500), new Price(1800)),
+                first.stream().map(Audience::price).toList()),
+        () -> assertEquals(new Price(1800), elsewhere.getFirst().price()),
+        () -> assertTrue(persisted),
+        () -> assertEquals(new Price(1500), afterAbandoned.getFirst().price()),
+        () -> assertTrue(redemptions.isClaimed(ticket)),
+        // at half price already, so the ticket was not used up
+        () -> assertFalse(redemptions.isClaimed(childTicket)));
+  }
+}
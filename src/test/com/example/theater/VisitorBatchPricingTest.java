@@ -0,0 +1,92 @@
+package com.example.theater;
+
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_NONE_WEDNESDAY;
+import static com.example.theater.LogicTest.NONE_NEW_YEAR_WEDNESDAY;
+import static com.example.theater.LogicTest.child;
+import static com.example.theater.LogicTest.shareHolder;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+class VisitorBatchPricingTest {
+
+  @Test
+  void pricesABatchAsLogicPricesEachGroup() {
+    Random random = new Random(25);
+    List<UUID> memberIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+    List<VisitorGroup> groups = new ArrayList<>();
+    for (int g = 0; g < 500; g++) {
+      List<Visitor> visitors = new ArrayList<>();
+      for (int v = random.nextInt(0, 9); 0 < v; v--) {
+        List<OptionalDiscount> optionalDiscounts = new ArrayList<>();
+        if (random.nextInt(4) != 0) {
+          optionalDiscounts.add(new PersonalStamp(random.nextInt(11)));
+        }
+        for (int d = random.nextInt(4); 0 < d; d--) {
+          optionalDiscounts.add(
+              random.nextBoolean()
+                  ? new ShoppingReceipt(random.nextInt(4500, 5500))
+                  : new InternetPremiumMember(memberIds.get(random.nextInt(2))));
+        }
+        int type = random.nextInt(DiscountTypes.values().length + 3);
+        visitors.add(
+            new Visitor(
+                UUID.randomUUID(),
+                type < DiscountTypes.values().length ? DiscountTypes.values()[type] : null,
+                optionalDiscounts,
+                null));
+      }
+      groups.add(new VisitorGroup(visitors));
+    }
+
+    List<Executable> assertions = new ArrayList<>();
+    for (LocalDate today : List.of(NONE_NEW_YEAR_NONE_WEDNESDAY, NONE_NEW_YEAR_WEDNESDAY)) {
+      for (int basePrice : List.of(1800, 500)) {
+        Logic logic =
+            new Logic(
+                new FixedPriceConfiguration(new Price(basePrice), today),
+                _ -> false,
+                memberIds.getFirst()::equals,
+                _ -> false);
+        VisitorBatchPricing pricing = new VisitorBatchPricing(logic);
+        VisitorBatch batch = pricing.batchOf(groups);
+        VisitorBatchPricing.Prices prices = pricing.price(batch);
+        List<List<Object>> expected = new ArrayList<>();
+        List<List<Object>> actual = new ArrayList<>();
+        int index = 0;
+        for (VisitorGroup group : groups) {
+          for (Audience audience : logic.calculateAdmissionFee(group)) {
+            expected.add(
+                List.of(
+                    audience.id(),
+                    audience.price().value(),
+                    audience.appliedDiscountKinds(),
+                    audience.newPersonalStamp().count()));
+            actual.add(
+                List.of(
+                    batch.id(index),
+                    prices.prices()[index],
+                    prices.appliedDiscountKinds()[index],
+                    prices.newStamps()[index]));
+            index++;
+          }
+        }
+        assertions.add(() -> assertEquals(expected, actual, STR."\{today} \{basePrice}"));
+      }
+    }
+    assertions.add(
+        () ->
+            assertFalse(
+                VisitorBatch.canHold(
+                    new VisitorGroup(List.of(shareHolder(UUID.randomUUID(), 1), child(1))))));
+    assertAll(assertions);
+  }
+}